@@ -19,6 +19,8 @@ package org.springframework.cloud.deployer.thin;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.springframework.boot.loader.thin.DependencyResolver;
+import org.springframework.boot.loader.thin.ResolverMetrics;
 import org.springframework.boot.loader.thin.ThinJarLauncher;
 import org.springframework.cloud.deployer.spi.app.AppDeployer;
 import org.springframework.cloud.deployer.spi.core.AppDeploymentRequest;
@@ -105,6 +107,14 @@ public class AbstractThinJarSupport {
 		}
 	}
 
+	/**
+	 * Statistics for the dependency resolution of all the apps deployed in this JVM.
+	 * @return the resolver metrics
+	 */
+	public ResolverMetrics getResolverMetrics() {
+		return DependencyResolver.metrics();
+	}
+
 	protected ThinJarAppWrapper getWrapper(String id) {
 		return apps.get(id);
 	}
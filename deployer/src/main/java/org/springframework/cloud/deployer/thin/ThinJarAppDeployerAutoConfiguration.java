@@ -3,6 +3,8 @@ package org.springframework.cloud.deployer.thin;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.loader.thin.DependencyResolver;
+import org.springframework.boot.loader.thin.ResolverMetrics;
 import org.springframework.cloud.deployer.spi.app.AppDeployer;
 import org.springframework.cloud.deployer.spi.task.TaskLauncher;
 import org.springframework.context.annotation.Bean;
@@ -25,4 +27,10 @@ public class ThinJarAppDeployerAutoConfiguration {
 	public TaskLauncher taskLauncher() {
 		return new ThinJarTaskLauncher();
 	}
+
+	@Bean
+	@ConditionalOnMissingBean(ResolverMetrics.class)
+	public ResolverMetrics resolverMetrics() {
+		return DependencyResolver.metrics();
+	}
 }
\ No newline at end of file
@@ -17,13 +17,18 @@
 package org.springframework.boot.experimental.gradle;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.Callable;
 
 import org.gradle.api.Action;
@@ -68,6 +73,10 @@ import org.springframework.util.StringUtils;
  * <li>"thinPom": runs automatically if you apply the Maven plugin. Generates a
  * pom.xml
  * and puts it in the main build output.</li>
+ * <li>"thinTrim": runs the project jar and analyzes the bytecode of the application
+ * and its dependencies, adding suggested exclusions for unreachable dependencies to
+ * "src/main/resources/META-INF/thin.properties". The same naming convention applies
+ * to multiple jar tasks.</li>
  * </ul>
  *
  * @author Andy Wilkinson
@@ -96,6 +105,7 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 					if (project.getTasksByName("thinResolve" + suffix, true).isEmpty()) {
 						Task thinResolvePrepare = createResolvePrepareTask(project, suffix);
 						Task thinResolveTask = createResolveTask(project, suffix);
+						Task thinTrimTask = createTrimTask(project, suffix);
 
 						if (hasBootRepackage) {
 							Task bootRepackage = project.getTasks().getByName("bootRepackage");
@@ -105,6 +115,7 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 							thinResolvePrepare.dependsOn(thinJar);
 						}
 						thinResolveTask.dependsOn(thinResolvePrepare);
+						thinTrimTask.dependsOn(thinResolvePrepare);
 					}
 				}
 			}
@@ -313,6 +324,71 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 		});
 	}
 
+	private Task createTrimTask(final Project project, final String suffix) {
+		final File report = new File(project.getBuildDir(), "thin/trim" + suffix + ".properties");
+		return project.getTasks().create("thinTrim" + suffix, Exec.class).doFirst(new Action<Task>() {
+			@Override
+			public void execute(Task task) {
+				Exec exec = (Exec) task;
+
+				final Jar thinJar;
+				if (project.getTasks().findByName("thinJar") != null) {
+					thinJar = (Jar) project.getTasks().getByName("thinJar");
+				} else {
+					thinJar = (Jar) project.getTasks().getByName("jar");
+				}
+				final String prepareTask = "thinResolvePrepare" + suffix;
+				Copy copy = (Copy) project.getTasks().getByName(prepareTask);
+				exec.setWorkingDir(
+						copy.getOutputs().getFiles().getSingleFile());
+				exec.setCommandLine(Jvm.current().getJavaExecutable());
+				report.delete();
+				List<String> args = new ArrayList<>(Arrays.asList(
+						"-Dthin.root=.", "-jar",
+						"../spring-boot-thin-wrapper.jar"));
+				args.add(1, "-Dthin.archive=" + thinJar.getArchivePath());
+				args.add(1, "-Dthin.trim=" + report.getAbsolutePath());
+				String thinRepo = getThinRepo(project);
+				if (thinRepo != null) {
+					args.add(1, "-Dthin.repo=" + thinRepo);
+				}
+				exec.args(args);
+			}
+		}).doLast(new Action<Task>() {
+			@Override
+			public void execute(Task task) {
+				File target = project.file("src/main/resources/META-INF/thin.properties");
+				try {
+					Properties suggested = new Properties();
+					try (InputStream stream = new FileInputStream(report)) {
+						suggested.load(stream);
+					}
+					Properties props = new Properties();
+					if (target.exists()) {
+						try (InputStream stream = new FileInputStream(target)) {
+							props.load(stream);
+						}
+					}
+					for (String key : suggested.stringPropertyNames()) {
+						if (key.startsWith("exclusions.") && !props.containsKey(key)) {
+							props.setProperty(key, suggested.getProperty(key));
+						}
+					}
+					target.getParentFile().mkdirs();
+					try (OutputStream stream = new FileOutputStream(target)) {
+						props.store(stream, "Enhanced by thin gradle plugin");
+					}
+					project.getLogger().lifecycle("Unreachable dependencies: "
+							+ suggested.getProperty("trim.jars") + " ("
+							+ suggested.getProperty("trim.saved.classes") + " classes, "
+							+ suggested.getProperty("trim.saved.bytes") + " bytes)");
+				} catch (IOException e) {
+					throw new RuntimeException("Cannot update " + target, e);
+				}
+			}
+		});
+	}
+
 	private String getThinRepo(Project project) {
 		if (System.getProperty("thin.repo") != null) {
 			return System.getProperty("thin.repo");
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ArtifactDescriptorReader} that keeps the descriptors of release artifacts
+ * (dependencies, managed dependencies, repositories etc.) in a compact binary file per
+ * artifact on disk, so that the effective model of a POM (with its whole parent chain
+ * and imported BOMs) only has to be built once. Release POMs are immutable, so an
+ * entry is only invalidated when the checksum of the POM in the local repository
+ * changes. The cache is switched on by a session config property with the directory
+ * name ({@link #DIRECTORY}). Reads (cached or not) are timed for the
+ * {@link ResolutionTrace} in the session config, if there is one.
+ *
+ * @author Dave Syer
+ *
+ */
+class CachingArtifactDescriptorReader implements ArtifactDescriptorReader {
+
+	/**
+	 * Session config property for the directory to keep descriptors in.
+	 */
+	static final String DIRECTORY = "thin.cache.descriptors.directory";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(CachingArtifactDescriptorReader.class);
+
+	private static final int MAGIC = 0x7468696e;
+
+	private static final int VERSION = 1;
+
+	private static final String LOCAL = "";
+
+	private final ArtifactDescriptorReader delegate;
+
+	@Inject
+	CachingArtifactDescriptorReader(@Named("default") ArtifactDescriptorReader delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ArtifactDescriptorResult readArtifactDescriptor(
+			RepositorySystemSession session, ArtifactDescriptorRequest request)
+			throws ArtifactDescriptorException {
+		ResolutionTrace trace = ResolutionTrace.get(session);
+		if (trace == null) {
+			return readDescriptor(session, request);
+		}
+		long start = trace.now();
+		ArtifactDescriptorResult result = null;
+		try {
+			result = readDescriptor(session, request);
+			return result;
+		}
+		finally {
+			trace.descriptor(request.getArtifact(), start, result);
+		}
+	}
+
+	private ArtifactDescriptorResult readDescriptor(RepositorySystemSession session,
+			ArtifactDescriptorRequest request) throws ArtifactDescriptorException {
+		String directory = ConfigUtils.getString(session, null, DIRECTORY);
+		Artifact artifact = request.getArtifact();
+		if (directory == null || !isRelease(artifact)) {
+			return this.delegate.readArtifactDescriptor(session, request);
+		}
+		String key = key(session, request);
+		Object cached = session.getCache() == null ? null
+				: session.getCache().get(session, ReleaseRepositoryCache.SHARED + key);
+		if (cached instanceof ArtifactDescriptorResult) {
+			return copy(request, (ArtifactDescriptorResult) cached);
+		}
+		File file = new File(directory, artifact.getArtifactId() + "-"
+				+ artifact.getVersion() + "-" + key.substring(0, 16) + ".desc");
+		File pom = pom(session, request);
+		String checksum = pom == null ? null : checksum(pom);
+		if (checksum != null && file.exists()) {
+			ArtifactDescriptorResult result = read(file, checksum, session, request);
+			if (result != null) {
+				log.debug("Cached descriptor: " + artifact);
+				remember(session, key, result);
+				return result;
+			}
+		}
+		ArtifactDescriptorResult result = this.delegate.readArtifactDescriptor(session,
+				request);
+		if (result.getExceptions().isEmpty() && result.getRelocations().isEmpty()) {
+			if (pom == null) {
+				pom = pom(session, request);
+				checksum = pom == null ? null : checksum(pom);
+			}
+			if (checksum != null) {
+				write(file, checksum, result);
+			}
+			remember(session, key, result);
+		}
+		return result;
+	}
+
+	private void remember(RepositorySystemSession session, String key,
+			ArtifactDescriptorResult result) {
+		if (session.getCache() != null) {
+			session.getCache().put(session, ReleaseRepositoryCache.SHARED + key, result);
+		}
+	}
+
+	private ArtifactDescriptorResult copy(ArtifactDescriptorRequest request,
+			ArtifactDescriptorResult cached) {
+		ArtifactDescriptorResult result = new ArtifactDescriptorResult(request);
+		result.setArtifact(cached.getArtifact());
+		result.setRepository(cached.getRepository());
+		result.setDependencies(new ArrayList<>(cached.getDependencies()));
+		result.setManagedDependencies(new ArrayList<>(cached.getManagedDependencies()));
+		result.setRepositories(new ArrayList<>(cached.getRepositories()));
+		result.setAliases(new ArrayList<>(cached.getAliases()));
+		result.setProperties(new LinkedHashMap<>(cached.getProperties()));
+		return result;
+	}
+
+	private boolean isRelease(Artifact artifact) {
+		String version = artifact.getVersion();
+		return !artifact.isSnapshot() && !version.isEmpty() && !"LATEST".equals(version)
+				&& !"RELEASE".equals(version) && version.indexOf('[') < 0
+				&& version.indexOf('(') < 0 && version.indexOf(',') < 0;
+	}
+
+	private File pom(RepositorySystemSession session, ArtifactDescriptorRequest request) {
+		Artifact artifact = request.getArtifact();
+		Artifact pom = new DefaultArtifact(artifact.getGroupId(),
+				artifact.getArtifactId(), "", "pom", artifact.getVersion());
+		LocalArtifactResult result = session.getLocalRepositoryManager().find(session,
+				new LocalArtifactRequest(pom, request.getRepositories(),
+						request.getRequestContext()));
+		return result.isAvailable() && result.getFile() != null ? result.getFile() : null;
+	}
+
+	/**
+	 * The key for a descriptor depends on the coordinates and on anything else that can
+	 * change the effective model (the repositories that parents and imports come from,
+	 * and the things that activate profiles).
+	 */
+	private String key(RepositorySystemSession session,
+			ArtifactDescriptorRequest request) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(request.getArtifact()).append(";");
+		builder.append(request.getArtifact().getProperties()).append(";");
+		for (RemoteRepository repository : request.getRepositories()) {
+			builder.append(repository.getId()).append("=").append(repository.getUrl())
+					.append(";");
+		}
+		builder.append(System.getProperty("java.specification.version")).append(";");
+		builder.append(System.getProperty("os.name")).append(";");
+		builder.append(System.getProperty("os.arch")).append(";");
+		builder.append(new TreeMap<>(session.getUserProperties()));
+		return Digests.sha1(builder.toString());
+	}
+
+	private String checksum(File file) {
+		try {
+			return Digests.sha1(Files.readAllBytes(file.toPath()));
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private ArtifactDescriptorResult read(File file, String checksum,
+			RepositorySystemSession session, ArtifactDescriptorRequest request) {
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION
+					|| !checksum.equals(input.readUTF())) {
+				return null;
+			}
+			ArtifactDescriptorResult result = new ArtifactDescriptorResult(request);
+			result.setArtifact(readArtifact(input));
+			String repository = input.readUTF();
+			result.setRepository(repository(session, request, repository));
+			result.setDependencies(readDependencies(input));
+			result.setManagedDependencies(readDependencies(input));
+			int count = input.readInt();
+			List<RemoteRepository> repositories = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				repositories.add(readRepository(input));
+			}
+			result.setRepositories(repositories);
+			count = input.readInt();
+			List<Artifact> aliases = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				aliases.add(readArtifact(input));
+			}
+			result.setAliases(aliases);
+			count = input.readInt();
+			Map<String, Object> properties = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				properties.put(input.readUTF(), input.readUTF());
+			}
+			result.setProperties(properties);
+			return result;
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("Cannot read cached descriptor: " + file, e);
+			return null;
+		}
+	}
+
+	private ArtifactRepository repository(RepositorySystemSession session,
+			ArtifactDescriptorRequest request, String id) {
+		if (LOCAL.equals(id)) {
+			return session.getLocalRepository();
+		}
+		for (RemoteRepository repository : request.getRepositories()) {
+			if (repository.getId().equals(id)) {
+				return repository;
+			}
+		}
+		return null;
+	}
+
+	private void write(File file, String checksum, ArtifactDescriptorResult result) {
+		File parent = file.getParentFile();
+		parent.mkdirs();
+		try {
+			File temp = File.createTempFile(file.getName(), ".tmp", parent);
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeUTF(checksum);
+				writeArtifact(output, result.getArtifact());
+				ArtifactRepository repository = result.getRepository();
+				output.writeUTF(repository instanceof RemoteRepository
+						? repository.getId() : LOCAL);
+				writeDependencies(output, result.getDependencies());
+				writeDependencies(output, result.getManagedDependencies());
+				output.writeInt(result.getRepositories().size());
+				for (RemoteRepository remote : result.getRepositories()) {
+					writeRepository(output, remote);
+				}
+				output.writeInt(result.getAliases().size());
+				for (Artifact alias : result.getAliases()) {
+					writeArtifact(output, alias);
+				}
+				output.writeInt(result.getProperties().size());
+				for (Map.Entry<String, Object> entry : result.getProperties().entrySet()) {
+					output.writeUTF(entry.getKey());
+					output.writeUTF(String.valueOf(entry.getValue()));
+				}
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException e) {
+				Files.move(temp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("Cannot write cached descriptor: " + file, e);
+		}
+	}
+
+	private void writeArtifact(DataOutputStream output, Artifact artifact)
+			throws IOException {
+		output.writeUTF(artifact.getGroupId());
+		output.writeUTF(artifact.getArtifactId());
+		output.writeUTF(artifact.getClassifier());
+		output.writeUTF(artifact.getExtension());
+		output.writeUTF(artifact.getVersion());
+		writeMap(output, artifact.getProperties());
+	}
+
+	private Artifact readArtifact(DataInputStream input) throws IOException {
+		return new DefaultArtifact(input.readUTF(), input.readUTF(), input.readUTF(),
+				input.readUTF(), input.readUTF(), readMap(input), (File) null);
+	}
+
+	private void writeDependencies(DataOutputStream output, List<Dependency> dependencies)
+			throws IOException {
+		output.writeInt(dependencies.size());
+		for (Dependency dependency : dependencies) {
+			writeArtifact(output, dependency.getArtifact());
+			output.writeUTF(dependency.getScope());
+			Boolean optional = dependency.getOptional();
+			output.writeByte(optional == null ? 0 : optional ? 2 : 1);
+			Collection<Exclusion> exclusions = dependency.getExclusions();
+			output.writeInt(exclusions.size());
+			for (Exclusion exclusion : exclusions) {
+				output.writeUTF(exclusion.getGroupId());
+				output.writeUTF(exclusion.getArtifactId());
+				output.writeUTF(exclusion.getClassifier());
+				output.writeUTF(exclusion.getExtension());
+			}
+		}
+	}
+
+	private List<Dependency> readDependencies(DataInputStream input) throws IOException {
+		int count = input.readInt();
+		List<Dependency> dependencies = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Artifact artifact = readArtifact(input);
+			String scope = input.readUTF();
+			byte flag = input.readByte();
+			Boolean optional = flag == 0 ? null : flag == 2;
+			int size = input.readInt();
+			List<Exclusion> exclusions = new ArrayList<>(size);
+			for (int j = 0; j < size; j++) {
+				exclusions.add(new Exclusion(input.readUTF(), input.readUTF(),
+						input.readUTF(), input.readUTF()));
+			}
+			dependencies.add(new Dependency(artifact, scope, optional, exclusions));
+		}
+		return dependencies;
+	}
+
+	private void writeRepository(DataOutputStream output, RemoteRepository repository)
+			throws IOException {
+		output.writeUTF(repository.getId());
+		output.writeUTF(repository.getContentType());
+		output.writeUTF(repository.getUrl());
+		writePolicy(output, repository.getPolicy(false));
+		writePolicy(output, repository.getPolicy(true));
+		output.writeBoolean(repository.isRepositoryManager());
+	}
+
+	private RemoteRepository readRepository(DataInputStream input) throws IOException {
+		return new RemoteRepository.Builder(input.readUTF(), input.readUTF(),
+				input.readUTF()).setReleasePolicy(readPolicy(input))
+						.setSnapshotPolicy(readPolicy(input))
+						.setRepositoryManager(input.readBoolean()).build();
+	}
+
+	private void writePolicy(DataOutputStream output, RepositoryPolicy policy)
+			throws IOException {
+		output.writeBoolean(policy.isEnabled());
+		output.writeUTF(policy.getUpdatePolicy());
+		output.writeUTF(policy.getChecksumPolicy());
+	}
+
+	private RepositoryPolicy readPolicy(DataInputStream input) throws IOException {
+		return new RepositoryPolicy(input.readBoolean(), input.readUTF(),
+				input.readUTF());
+	}
+
+	private void writeMap(DataOutputStream output, Map<String, String> map)
+			throws IOException {
+		output.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			output.writeUTF(entry.getKey());
+			output.writeUTF(entry.getValue());
+		}
+	}
+
+	private Map<String, String> readMap(DataInputStream input) throws IOException {
+		int count = input.readInt();
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < count; i++) {
+			map.put(input.readUTF(), input.readUTF());
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuildingResult;
+import org.apache.maven.model.building.ModelCache;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.building.Result;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ModelBuilder} that keeps the dependency management of imported release BOMs
+ * in a compact binary file per BOM on disk, so that the next time a model imports one
+ * (e.g. from <code>boms.*</code> in the thin properties) it is not fetched, parsed,
+ * inherited and interpolated again. Release POMs are immutable, so an entry is only
+ * invalidated when the checksum of the POM in the local repository changes. The
+ * directory comes with the root model source (a
+ * {@link DependencyResolver.PropertiesModelSource}), so models built for artifact
+ * descriptors are not affected.
+ *
+ * @author Dave Syer
+ *
+ */
+class CachingModelBuilder implements ModelBuilder {
+
+	/**
+	 * The name of the model cache tag for imported dependency management (see
+	 * <code>ModelCacheTag.IMPORT</code>).
+	 */
+	private static final String IMPORT = "import";
+
+	private static final Logger log = LoggerFactory.getLogger(CachingModelBuilder.class);
+
+	private static final int MAGIC = 0x74686962;
+
+	private static final int VERSION = 1;
+
+	private final ModelBuilder delegate;
+
+	CachingModelBuilder(ModelBuilder delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ModelBuildingResult build(ModelBuildingRequest request)
+			throws ModelBuildingException {
+		ModelSource source = request.getModelSource();
+		if (source instanceof DependencyResolver.PropertiesModelSource) {
+			File directory = ((DependencyResolver.PropertiesModelSource) source)
+					.getBoms();
+			if (directory != null) {
+				request.setModelCache(
+						new BomModelCache(request.getModelCache(), directory, request));
+			}
+		}
+		return this.delegate.build(request);
+	}
+
+	@Override
+	public ModelBuildingResult build(ModelBuildingRequest request,
+			ModelBuildingResult result) throws ModelBuildingException {
+		return this.delegate.build(request, result);
+	}
+
+	@Override
+	public Result<? extends Model> buildRawModel(File pomFile, int validationLevel,
+			boolean locationTracking) {
+		return this.delegate.buildRawModel(pomFile, validationLevel, locationTracking);
+	}
+
+	private static boolean isRelease(String version) {
+		return version != null && !version.isEmpty() && !version.endsWith("SNAPSHOT")
+				&& !"LATEST".equals(version) && !"RELEASE".equals(version)
+				&& version.indexOf('$') < 0 && version.indexOf('[') < 0
+				&& version.indexOf('(') < 0 && version.indexOf(',') < 0;
+	}
+
+	/**
+	 * A {@link ModelCache} for one build that looks for imported dependency management
+	 * on disk (and saves it there), and otherwise delegates to the cache from the
+	 * original request (if there is one).
+	 */
+	private static class BomModelCache implements ModelCache {
+
+		private final ModelCache delegate;
+
+		private final File directory;
+
+		private final ModelResolver resolver;
+
+		private final String context;
+
+		BomModelCache(ModelCache delegate, File directory, ModelBuildingRequest request) {
+			this.delegate = delegate;
+			this.directory = directory;
+			this.resolver = request.getModelResolver();
+			this.context = context(request.getUserProperties());
+		}
+
+		@Override
+		public Object get(String groupId, String artifactId, String version,
+				String tag) {
+			Object value = this.delegate == null ? null
+					: this.delegate.get(groupId, artifactId, version, tag);
+			if (value != null || !IMPORT.equals(tag) || !isRelease(version)) {
+				return value;
+			}
+			File file = file(groupId, artifactId, version);
+			if (!file.exists()) {
+				return null;
+			}
+			String checksum = checksum(groupId, artifactId, version);
+			if (checksum == null) {
+				return null;
+			}
+			DependencyManagement management = read(file, checksum);
+			if (management != null) {
+				log.debug("Cached BOM: " + groupId + ":" + artifactId + ":" + version);
+				if (this.delegate != null) {
+					this.delegate.put(groupId, artifactId, version, tag, management);
+				}
+			}
+			return management;
+		}
+
+		@Override
+		public void put(String groupId, String artifactId, String version, String tag,
+				Object data) {
+			if (this.delegate != null) {
+				this.delegate.put(groupId, artifactId, version, tag, data);
+			}
+			if (!IMPORT.equals(tag) || !isRelease(version)
+					|| !(data instanceof DependencyManagement)) {
+				return;
+			}
+			String checksum = checksum(groupId, artifactId, version);
+			if (checksum != null) {
+				write(file(groupId, artifactId, version), checksum,
+						(DependencyManagement) data);
+			}
+		}
+
+		private File file(String groupId, String artifactId, String version) {
+			String key = Digests
+					.sha1(groupId + ":" + artifactId + ":" + version + ";" + this.context);
+			return new File(this.directory,
+					artifactId + "-" + version + "-" + key.substring(0, 16) + ".bom");
+		}
+
+		/**
+		 * The things (apart from the coordinates) that can change the dependency
+		 * management of a BOM: the properties that activate profiles or override the
+		 * ones in the POM. The thin launcher's own properties don't.
+		 */
+		private static String context(Properties properties) {
+			Map<String, String> map = new TreeMap<>();
+			if (properties != null) {
+				for (String name : properties.stringPropertyNames()) {
+					if (!name.startsWith("boms.") && !name.startsWith("dependencies.")
+							&& !name.startsWith("exclusions.")
+							&& !name.startsWith("thin.") && !"computed".equals(name)) {
+						map.put(name, properties.getProperty(name));
+					}
+				}
+			}
+			return System.getProperty("java.specification.version") + ";"
+					+ System.getProperty("os.name") + ";"
+					+ System.getProperty("os.arch") + ";" + map;
+		}
+
+		private String checksum(String groupId, String artifactId, String version) {
+			if (this.resolver == null) {
+				return null;
+			}
+			try {
+				ModelSource source = this.resolver.resolveModel(groupId, artifactId,
+						version);
+				if (!(source instanceof FileModelSource)) {
+					return null;
+				}
+				return Digests.sha1(Files
+						.readAllBytes(((FileModelSource) source).getFile().toPath()));
+			}
+			catch (UnresolvableModelException | IOException e) {
+				return null;
+			}
+		}
+
+		private DependencyManagement read(File file, String checksum) {
+			try (DataInputStream input = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)))) {
+				if (input.readInt() != MAGIC || input.readInt() != VERSION
+						|| !checksum.equals(input.readUTF())) {
+					return null;
+				}
+				DependencyManagement management = new DependencyManagement();
+				int count = input.readInt();
+				for (int i = 0; i < count; i++) {
+					Dependency dependency = new Dependency();
+					dependency.setGroupId(readString(input));
+					dependency.setArtifactId(readString(input));
+					dependency.setVersion(readString(input));
+					dependency.setType(readString(input));
+					dependency.setClassifier(readString(input));
+					dependency.setScope(readString(input));
+					dependency.setOptional(readString(input));
+					dependency.setSystemPath(readString(input));
+					int size = input.readInt();
+					for (int j = 0; j < size; j++) {
+						Exclusion exclusion = new Exclusion();
+						exclusion.setGroupId(readString(input));
+						exclusion.setArtifactId(readString(input));
+						dependency.addExclusion(exclusion);
+					}
+					management.addDependency(dependency);
+				}
+				return management;
+			}
+			catch (IOException | RuntimeException e) {
+				log.debug("Cannot read cached BOM: " + file, e);
+				return null;
+			}
+		}
+
+		private void write(File file, String checksum, DependencyManagement management) {
+			File parent = file.getParentFile();
+			parent.mkdirs();
+			try {
+				File temp = File.createTempFile(file.getName(), ".tmp", parent);
+				try (DataOutputStream output = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(temp)))) {
+					output.writeInt(MAGIC);
+					output.writeInt(VERSION);
+					output.writeUTF(checksum);
+					output.writeInt(management.getDependencies().size());
+					for (Dependency dependency : management.getDependencies()) {
+						writeString(output, dependency.getGroupId());
+						writeString(output, dependency.getArtifactId());
+						writeString(output, dependency.getVersion());
+						writeString(output, dependency.getType());
+						writeString(output, dependency.getClassifier());
+						writeString(output, dependency.getScope());
+						writeString(output, dependency.getOptional());
+						writeString(output, dependency.getSystemPath());
+						output.writeInt(dependency.getExclusions().size());
+						for (Exclusion exclusion : dependency.getExclusions()) {
+							writeString(output, exclusion.getGroupId());
+							writeString(output, exclusion.getArtifactId());
+						}
+					}
+				}
+				try {
+					Files.move(temp.toPath(), file.toPath(),
+							StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch (IOException e) {
+					Files.move(temp.toPath(), file.toPath(),
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			catch (IOException | RuntimeException e) {
+				log.debug("Cannot write cached BOM: " + file, e);
+			}
+		}
+
+		private static void writeString(DataOutputStream output, String value)
+				throws IOException {
+			output.writeBoolean(value != null);
+			if (value != null) {
+				output.writeUTF(value);
+			}
+		}
+
+		private static String readString(DataInputStream input) throws IOException {
+			return input.readBoolean() ? input.readUTF() : null;
+		}
+
+	}
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.VersionRangeResolver;
+import org.eclipse.aether.impl.VersionResolver;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.resolution.VersionRequest;
+import org.eclipse.aether.resolution.VersionResolutionException;
+import org.eclipse.aether.resolution.VersionResult;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+import org.eclipse.aether.version.VersionScheme;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link VersionRangeResolver} and {@link VersionResolver} that remembers the results
+ * for dynamic versions (ranges, <code>LATEST</code> and <code>RELEASE</code>) in a small
+ * file per version on disk, so that the next time they are needed (in this or another
+ * process) the repository metadata does not have to be read (or downloaded) again until
+ * the entry expires. Other versions go straight to the default resolvers. The cache is
+ * switched on by session config properties with the directory name ({@link #DIRECTORY})
+ * and the time to live ({@link #TTL}, {@link Long#MAX_VALUE} to keep the first result
+ * for good), and can be bypassed (but is still updated) with {@link #REFRESH}.
+ *
+ * @author Dave Syer
+ *
+ */
+class CachingVersionResolver implements VersionRangeResolver, VersionResolver {
+
+	/**
+	 * Session config property for the directory to keep versions in.
+	 */
+	static final String DIRECTORY = "thin.cache.versions.directory";
+
+	/**
+	 * Session config property for the time (in milliseconds) to remember a version for.
+	 */
+	static final String TTL = "thin.cache.versions.ttl";
+
+	/**
+	 * Session config property to ignore cached versions (and resolve them again).
+	 */
+	static final String REFRESH = "thin.cache.versions.refresh";
+
+	/**
+	 * Session config property for the {@link ResolverMetrics} to record cache hits in.
+	 */
+	static final String METRICS = "thin.cache.versions.metrics";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(CachingVersionResolver.class);
+
+	private static final String LOCAL = "";
+
+	private final VersionScheme scheme = new GenericVersionScheme();
+
+	private final VersionRangeResolver ranges;
+
+	private final VersionResolver versions;
+
+	@Inject
+	CachingVersionResolver(@Named("default") VersionRangeResolver ranges,
+			@Named("default") VersionResolver versions) {
+		this.ranges = ranges;
+		this.versions = versions;
+	}
+
+	@Override
+	public VersionRangeResult resolveVersionRange(RepositorySystemSession session,
+			VersionRangeRequest request) throws VersionRangeResolutionException {
+		Artifact artifact = request.getArtifact();
+		File file = file(session, artifact, request.getRepositories());
+		if (file == null || !isRange(artifact.getVersion())) {
+			return this.ranges.resolveVersionRange(session, request);
+		}
+		Properties cached = read(session, file);
+		if (cached != null) {
+			try {
+				VersionRangeResult result = new VersionRangeResult(request);
+				result.setVersionConstraint(
+						this.scheme.parseVersionConstraint(artifact.getVersion()));
+				String values = cached.getProperty("versions", "");
+				for (String value : values.split(",")) {
+					if (value.isEmpty()) {
+						continue;
+					}
+					Version version = this.scheme.parseVersion(value);
+					result.addVersion(version);
+					result.setRepository(version, repository(session,
+							request.getRepositories(),
+							cached.getProperty("repository." + value)));
+				}
+				if (!result.getVersions().isEmpty()) {
+					hit(session, artifact, values);
+					return result;
+				}
+			}
+			catch (InvalidVersionSpecificationException e) {
+				log.debug("Cannot read cached versions: " + file, e);
+			}
+		}
+		VersionRangeResult result = this.ranges.resolveVersionRange(session, request);
+		if (isComplete(result.getExceptions()) && !result.getVersions().isEmpty()) {
+			Properties properties = new Properties();
+			List<String> values = new ArrayList<>();
+			for (Version version : result.getVersions()) {
+				values.add(version.toString());
+				properties.setProperty("repository." + version,
+						id(result.getRepository(version)));
+			}
+			properties.setProperty("versions", String.join(",", values));
+			write(file, properties);
+			miss(session);
+		}
+		return result;
+	}
+
+	@Override
+	public VersionResult resolveVersion(RepositorySystemSession session,
+			VersionRequest request) throws VersionResolutionException {
+		Artifact artifact = request.getArtifact();
+		String version = artifact.getVersion();
+		File file = file(session, artifact, request.getRepositories());
+		if (file == null || !"LATEST".equals(version) && !"RELEASE".equals(version)) {
+			return this.versions.resolveVersion(session, request);
+		}
+		Properties cached = read(session, file);
+		if (cached != null && cached.getProperty("version") != null) {
+			VersionResult result = new VersionResult(request);
+			result.setVersion(cached.getProperty("version"));
+			result.setRepository(repository(session, request.getRepositories(),
+					cached.getProperty("repository")));
+			hit(session, artifact, result.getVersion());
+			return result;
+		}
+		VersionResult result = this.versions.resolveVersion(session, request);
+		if (isComplete(result.getExceptions()) && result.getVersion() != null) {
+			Properties properties = new Properties();
+			properties.setProperty("version", result.getVersion());
+			properties.setProperty("repository", id(result.getRepository()));
+			write(file, properties);
+			miss(session);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether a result can be cached: repositories that do not have the metadata are
+	 * fine, but if one could not be reached the result might be missing versions.
+	 */
+	private boolean isComplete(List<Exception> exceptions) {
+		for (Exception exception : exceptions) {
+			if (!(exception instanceof MetadataNotFoundException)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isRange(String version) {
+		return version.startsWith("[") || version.startsWith("(");
+	}
+
+	/**
+	 * The file for a dynamic version, which depends on the coordinates and the
+	 * repositories that are asked (or null if the cache is switched off).
+	 */
+	private File file(RepositorySystemSession session, Artifact artifact,
+			List<RemoteRepository> repositories) {
+		String directory = ConfigUtils.getString(session, null, DIRECTORY);
+		if (directory == null || ConfigUtils.getLong(session, 0L, TTL) <= 0) {
+			return null;
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append(artifact.getGroupId()).append(":")
+				.append(artifact.getArtifactId()).append(":")
+				.append(artifact.getVersion()).append(";");
+		for (RemoteRepository repository : repositories) {
+			builder.append(repository.getId()).append("=").append(repository.getUrl())
+					.append(";");
+		}
+		String key = Digests.sha1(builder.toString());
+		return new File(directory,
+				artifact.getArtifactId() + "-" + key.substring(0, 16) + ".version");
+	}
+
+	private Properties read(RepositorySystemSession session, File file) {
+		if (ConfigUtils.getBoolean(session, false, REFRESH) || !file.exists()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			properties.load(stream);
+		}
+		catch (IOException e) {
+			log.debug("Cannot read cached version: " + file, e);
+			return null;
+		}
+		long ttl = ConfigUtils.getLong(session, 0L, TTL);
+		try {
+			long time = Long.parseLong(properties.getProperty("time", "0"));
+			if (ttl < Long.MAX_VALUE && System.currentTimeMillis() - time >= ttl) {
+				return null;
+			}
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+		return properties;
+	}
+
+	private void write(File file, Properties properties) {
+		properties.setProperty("time", String.valueOf(System.currentTimeMillis()));
+		File parent = file.getParentFile();
+		parent.mkdirs();
+		try {
+			File temp = File.createTempFile(file.getName(), ".tmp", parent);
+			try (OutputStream stream = new FileOutputStream(temp)) {
+				properties.store(stream, "Resolved dynamic version");
+			}
+			Files.move(temp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			log.debug("Cannot write cached version: " + file, e);
+		}
+	}
+
+	private ArtifactRepository repository(RepositorySystemSession session,
+			List<RemoteRepository> repositories, String id) {
+		if (id == null) {
+			return null;
+		}
+		if (LOCAL.equals(id)) {
+			return session.getLocalRepository();
+		}
+		for (RemoteRepository repository : repositories) {
+			if (repository.getId().equals(id)) {
+				return repository;
+			}
+		}
+		return null;
+	}
+
+	private String id(ArtifactRepository repository) {
+		return repository instanceof RemoteRepository ? repository.getId() : LOCAL;
+	}
+
+	private void hit(RepositorySystemSession session, Artifact artifact,
+			String versions) {
+		log.debug("Cached version: " + artifact + "=" + versions);
+		Object metrics = session.getConfigProperties().get(METRICS);
+		if (metrics instanceof ResolverMetrics) {
+			((ResolverMetrics) metrics).versionCached(artifact.getGroupId() + ":"
+					+ artifact.getArtifactId() + ":" + artifact.getVersion(), versions);
+		}
+	}
+
+	private void miss(RepositorySystemSession session) {
+		Object metrics = session.getConfigProperties().get(METRICS);
+		if (metrics instanceof ResolverMetrics) {
+			((ResolverMetrics) metrics).versionResolved();
+		}
+	}
+
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+import org.eclipse.aether.spi.connector.MetadataUpload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.eclipse.aether.transfer.MetadataTransferException;
+import org.eclipse.aether.transfer.NoRepositoryConnectorException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RepositoryConnectorFactory} that stops asking a remote repository for
+ * anything once it has failed to connect (refused, timed out or unknown host) a number
+ * of times in a row ({@link #THRESHOLD}). Without it every artifact waits for the
+ * connect timeout of a repository that is down or blocked before the next repository is
+ * tried. Failures after a connection was made (e.g. a reset in the middle of a
+ * transfer) do not count. After a cool-down ({@link #COOLDOWN}) one request is let
+ * through as a probe, which closes the circuit if it connects and opens it again if it
+ * doesn't. The state is in a {@link Breakers} object in the session config
+ * ({@link #BREAKERS}), so the resolver can see when all the remote repositories are
+ * unreachable, and it can be kept on disk for a while, so the next launch does not
+ * have to wait either.
+ *
+ * @author Dave Syer
+ *
+ */
+class CircuitBreakingRepositoryConnectorFactory implements RepositoryConnectorFactory {
+
+	/**
+	 * Session config property for the number of consecutive connection failures that
+	 * opens the circuit for a repository.
+	 */
+	static final String THRESHOLD = "thin.breaker";
+
+	/**
+	 * Session config property for the {@link Breakers} that keep the state.
+	 */
+	static final String BREAKERS = "thin.breaker.state";
+
+	/**
+	 * Session config property for the time (in milliseconds) to remember an open circuit
+	 * on disk.
+	 */
+	static final String TTL = "thin.breaker.ttl";
+
+	/**
+	 * Session config property for the time (in milliseconds) before an open circuit lets
+	 * a probe through.
+	 */
+	static final String COOLDOWN = "thin.breaker.cooldown";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(CircuitBreakingRepositoryConnectorFactory.class);
+
+	private final RepositoryConnectorFactory delegate;
+
+	@Inject
+	CircuitBreakingRepositoryConnectorFactory(
+			@Named("resuming") RepositoryConnectorFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public RepositoryConnector newInstance(RepositorySystemSession session,
+			RemoteRepository repository) throws NoRepositoryConnectorException {
+		RepositoryConnector connector = this.delegate.newInstance(session, repository);
+		int threshold = ConfigUtils.getInteger(session, 0, THRESHOLD);
+		Object breakers = session.getConfigProperties().get(BREAKERS);
+		if (threshold <= 0 || !(breakers instanceof Breakers) || !isRemote(repository)) {
+			return connector;
+		}
+		return new CircuitBreakingRepositoryConnector(connector, repository,
+				(Breakers) breakers, threshold, ConfigUtils.getLong(session, 0L, TTL),
+				ConfigUtils.getLong(session, 0L, COOLDOWN));
+	}
+
+	@Override
+	public float getPriority() {
+		return this.delegate.getPriority();
+	}
+
+	static boolean isRemote(RemoteRepository repository) {
+		String protocol = repository.getProtocol();
+		return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+	}
+
+	/**
+	 * Whether an error means the repository could not be connected to at all (as opposed
+	 * to it not having the file, sending a bad one, or dropping the connection part of
+	 * the way through).
+	 */
+	static boolean isUnreachable(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectException
+					|| cause instanceof NoRouteToHostException
+					|| cause instanceof UnknownHostException
+					// Apache HttpClient and the JDK HttpClient
+					|| cause.getClass().getName().endsWith("ConnectTimeoutException")
+					|| cause instanceof SocketTimeoutException
+							&& String.valueOf(cause.getMessage()).contains("connect")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class CircuitBreakingRepositoryConnector
+			implements RepositoryConnector {
+
+		private final RepositoryConnector delegate;
+
+		private final RemoteRepository repository;
+
+		private final Breakers breakers;
+
+		private final int threshold;
+
+		private final long ttl;
+
+		private final long cooldown;
+
+		CircuitBreakingRepositoryConnector(RepositoryConnector delegate,
+				RemoteRepository repository, Breakers breakers, int threshold, long ttl,
+				long cooldown) {
+			this.delegate = delegate;
+			this.repository = repository;
+			this.breakers = breakers;
+			this.threshold = threshold;
+			this.ttl = ttl;
+			this.cooldown = cooldown;
+		}
+
+		@Override
+		public void get(Collection<? extends ArtifactDownload> artifactDownloads,
+				Collection<? extends MetadataDownload> metadataDownloads) {
+			boolean probe = this.breakers.probe(this.repository);
+			if (!probe && this.breakers.isTripped(this.repository)) {
+				String message = "Repository " + this.repository.getId() + " ("
+						+ this.repository.getUrl()
+						+ ") is not reachable (circuit open after " + this.threshold
+						+ " connection failures)";
+				if (artifactDownloads != null) {
+					for (ArtifactDownload download : artifactDownloads) {
+						download.setException(new ArtifactTransferException(
+								download.getArtifact(), this.repository, message));
+					}
+				}
+				if (metadataDownloads != null) {
+					for (MetadataDownload download : metadataDownloads) {
+						download.setException(new MetadataTransferException(
+								download.getMetadata(), this.repository, message));
+					}
+				}
+				return;
+			}
+			try {
+				get(artifactDownloads, metadataDownloads, probe);
+			}
+			finally {
+				if (probe) {
+					this.breakers.probed(this.repository);
+				}
+			}
+		}
+
+		private void get(Collection<? extends ArtifactDownload> artifactDownloads,
+				Collection<? extends MetadataDownload> metadataDownloads, boolean probe) {
+			this.delegate.get(artifactDownloads, metadataDownloads);
+			int failures = 0;
+			boolean reached = false;
+			if (artifactDownloads != null) {
+				for (ArtifactDownload download : artifactDownloads) {
+					if (download.getException() != null
+							&& isUnreachable(download.getException())) {
+						failures++;
+					}
+					else {
+						reached = true;
+					}
+				}
+			}
+			if (metadataDownloads != null) {
+				for (MetadataDownload download : metadataDownloads) {
+					if (download.getException() != null
+							&& isUnreachable(download.getException())) {
+						failures++;
+					}
+					else {
+						reached = true;
+					}
+				}
+			}
+			if (reached) {
+				this.breakers.success(this.repository);
+			}
+			else if (failures > 0 && this.breakers.failure(this.repository, failures,
+					this.threshold, this.ttl, this.cooldown, probe)) {
+				log.warn("Not using repository " + this.repository.getId() + " ("
+						+ this.repository.getUrl() + ") for " + this.cooldown
+						+ "ms after " + this.threshold + " connection failures");
+			}
+		}
+
+		@Override
+		public void put(Collection<? extends ArtifactUpload> artifactUploads,
+				Collection<? extends MetadataUpload> metadataUploads) {
+			this.delegate.put(artifactUploads, metadataUploads);
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+
+	}
+
+	/**
+	 * The consecutive connection failures and open circuits for the remote repositories
+	 * (keyed by URL) used by one resolver. Open circuits stay open until the cool-down
+	 * is over, or if they were read from the file (written by an earlier launch), until
+	 * they expire. Then they are half open: one request at a time is let through, and
+	 * the first one that connects closes the circuit.
+	 */
+	static class Breakers {
+
+		private final File file;
+
+		private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+		private final Map<String, Long> open = new ConcurrentHashMap<>();
+
+		private final Set<String> probes = ConcurrentHashMap.newKeySet();
+
+		Breakers(File file) {
+			this.file = file;
+			if (file.exists()) {
+				Properties properties = new Properties();
+				try (InputStream stream = new FileInputStream(file)) {
+					properties.load(stream);
+				}
+				catch (IOException e) {
+					log.debug("Cannot read circuit breakers: " + file, e);
+				}
+				long now = System.currentTimeMillis();
+				for (String url : properties.stringPropertyNames()) {
+					try {
+						long expiry = Long.parseLong(properties.getProperty(url));
+						if (expiry > now) {
+							this.open.put(url, expiry);
+						}
+					}
+					catch (NumberFormatException e) {
+						// Ignore
+					}
+				}
+			}
+		}
+
+		/**
+		 * Whether the circuit is open and still cooling down (so a request would not be
+		 * let through).
+		 */
+		boolean isOpen(RemoteRepository repository) {
+			Long expiry = this.open.get(repository.getUrl());
+			return expiry != null && expiry > System.currentTimeMillis();
+		}
+
+		/**
+		 * Whether the circuit is open or half open.
+		 */
+		boolean isTripped(RemoteRepository repository) {
+			return this.open.containsKey(repository.getUrl());
+		}
+
+		/**
+		 * Whether a probe can go to a repository whose circuit is tripped: only if the
+		 * cool-down is over and no one else is probing (until {@link #probed}).
+		 */
+		boolean probe(RemoteRepository repository) {
+			String url = repository.getUrl();
+			Long expiry = this.open.get(url);
+			return expiry != null && expiry <= System.currentTimeMillis()
+					&& this.probes.add(url);
+		}
+
+		void probed(RemoteRepository repository) {
+			this.probes.remove(repository.getUrl());
+		}
+
+		void success(RemoteRepository repository) {
+			String url = repository.getUrl();
+			this.failures.remove(url);
+			if (this.open.remove(url) != null) {
+				log.info("Repository " + repository.getId() + " (" + url
+						+ ") is reachable again");
+				save(url, 0L);
+			}
+		}
+
+		/**
+		 * Record some connection failures and return true if that opened the circuit
+		 * (a failed probe opens it again straight away).
+		 */
+		boolean failure(RemoteRepository repository, int count, int threshold, long ttl,
+				long cooldown, boolean probe) {
+			String url = repository.getUrl();
+			long now = System.currentTimeMillis();
+			if (probe) {
+				this.open.put(url, now + cooldown);
+				return false;
+			}
+			if (this.open.containsKey(url)) {
+				return false;
+			}
+			if (this.failures.merge(url, count, Integer::sum) < threshold
+					|| this.open.putIfAbsent(url, now + cooldown) != null) {
+				return false;
+			}
+			if (ttl > 0) {
+				save(url, now + ttl);
+			}
+			return true;
+		}
+
+		/**
+		 * Remember when an open circuit expires (or forget it if the expiry is 0).
+		 */
+		private synchronized void save(String url, long expiry) {
+			if (expiry <= 0 && !this.file.exists()) {
+				return;
+			}
+			Properties properties = new Properties();
+			if (this.file.exists()) {
+				try (InputStream stream = new FileInputStream(this.file)) {
+					properties.load(stream);
+				}
+				catch (IOException e) {
+					log.debug("Cannot read circuit breakers: " + this.file, e);
+				}
+			}
+			if (expiry > 0) {
+				properties.setProperty(url, String.valueOf(expiry));
+			}
+			else if (properties.remove(url) == null) {
+				return;
+			}
+			try {
+				this.file.getParentFile().mkdirs();
+				File temp = File.createTempFile(this.file.getName(), ".tmp",
+						this.file.getParentFile());
+				try (OutputStream stream = new FileOutputStream(temp)) {
+					properties.store(stream, "Unreachable repositories (expiry time)");
+				}
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e) {
+				log.debug("Cannot save circuit breakers: " + this.file, e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content-addressed store of artifact files, keyed by SHA-256, shared by any number of
+ * thin roots. Each file in a root's local repository is replaced by a hard link to the
+ * entry in the store with the same content, so identical jars in different roots share
+ * disk blocks (and page cache). Files that are already linked (more than one link) are
+ * left alone, so after the first run the cost is a file attribute lookup per artifact.
+ * If the store cannot be linked to (e.g. it is on a different file system), or the
+ * number of links to a file is not available (e.g. on Windows, where every file would
+ * have to be hashed on every launch), it is switched off with a warning and the roots
+ * keep their own copies.
+ *
+ * @author Dave Syer
+ *
+ */
+class ContentStore {
+
+	private static final Logger log = LoggerFactory.getLogger(ContentStore.class);
+
+	private final File directory;
+
+	private volatile boolean disabled;
+
+	ContentStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Link the files that are inside the repository into the store.
+	 * @param repository the local repository that owns the files
+	 * @param files the files to link
+	 * @return the number of files that were newly linked
+	 */
+	int link(File repository, Collection<File> files) {
+		int count = 0;
+		Path root = repository.toPath().toAbsolutePath().normalize();
+		for (File file : files) {
+			if (this.disabled) {
+				break;
+			}
+			if (file == null || !file.isFile()) {
+				continue;
+			}
+			Path path = file.toPath().toAbsolutePath().normalize();
+			if (!path.startsWith(root)) {
+				continue;
+			}
+			int links = links(path);
+			if (links == 0) {
+				log.warn("Cannot count links to " + path + ", continuing without content store "
+						+ this.directory);
+				this.disabled = true;
+				break;
+			}
+			if (links > 1) {
+				continue;
+			}
+			try {
+				if (link(path)) {
+					count++;
+				}
+			}
+			catch (IOException e) {
+				log.warn("Cannot link to content store " + this.directory + " (" + e
+						+ "), continuing without it");
+				this.disabled = true;
+			}
+		}
+		if (count > 0) {
+			log.info("Linked " + count + " artifacts to content store " + this.directory);
+		}
+		return count;
+	}
+
+	private boolean link(Path path) throws IOException {
+		String hash = Digests.sha256(path);
+		Path entry = entry(hash);
+		Files.createDirectories(entry.getParent());
+		try {
+			// The first copy becomes the store entry
+			Files.createLink(entry, path);
+			return true;
+		}
+		catch (FileAlreadyExistsException e) {
+			// Replace our copy with a link to the existing entry
+		}
+		if (Files.size(entry) != Files.size(path)) {
+			log.warn("Content store entry has the wrong size: " + entry);
+			return false;
+		}
+		Path temp = path.resolveSibling(path.getFileName() + ".link");
+		Files.deleteIfExists(temp);
+		Files.createLink(temp, entry);
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+
+	private Path entry(String hash) {
+		return this.directory.toPath().resolve("sha256").resolve(hash.substring(0, 2))
+				.resolve(hash.substring(2));
+	}
+
+	/**
+	 * Summarize the contents of the store and the space saved by sharing them.
+	 * @return a report
+	 */
+	Report report() {
+		Report report = new Report();
+		Path root = this.directory.toPath().resolve("sha256");
+		if (!Files.isDirectory(root)) {
+			return report;
+		}
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.filter(Files::isRegularFile).forEach(path -> {
+				long size = path.toFile().length();
+				int links = links(path);
+				report.entries++;
+				report.bytes += size;
+				if (links < 2) {
+					report.unreferenced++;
+				}
+				else {
+					report.links += links - 1;
+					// Without the store every link would be a separate copy
+					report.saved += (links - 2) * size;
+				}
+			});
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Cannot read content store: " + root, e);
+		}
+		return report;
+	}
+
+	/**
+	 * The number of hard links to a file, or 0 if it is not known.
+	 */
+	int links(Path path) {
+		try {
+			Object value = Files.getAttribute(path, "unix:nlink");
+			return value instanceof Integer ? (Integer) value : 0;
+		}
+		catch (UnsupportedOperationException | IllegalArgumentException
+				| IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * The space used by a content store, and how much it saves.
+	 */
+	static class Report {
+
+		private long entries;
+
+		private long bytes;
+
+		private long links;
+
+		private long unreferenced;
+
+		private long saved;
+
+		/**
+		 * @return the number of distinct files in the store
+		 */
+		long getEntries() {
+			return this.entries;
+		}
+
+		/**
+		 * @return the total size of the distinct files
+		 */
+		long getBytes() {
+			return this.bytes;
+		}
+
+		/**
+		 * @return the number of repository files that link to the store
+		 */
+		long getLinks() {
+			return this.links;
+		}
+
+		/**
+		 * @return the number of store entries that no repository links to any more
+		 */
+		long getUnreferenced() {
+			return this.unreferenced;
+		}
+
+		/**
+		 * @return the bytes that the repositories would use on top of the store if
+		 * they each had their own copies
+		 */
+		long getSaved() {
+			return this.saved;
+		}
+
+		Properties toProperties() {
+			Properties properties = new Properties();
+			properties.setProperty("store.entries", "" + this.entries);
+			properties.setProperty("store.bytes", "" + this.bytes);
+			properties.setProperty("store.links", "" + this.links);
+			properties.setProperty("store.unreferenced", "" + this.unreferenced);
+			properties.setProperty("store.saved", "" + this.saved);
+			return properties;
+		}
+
+		@Override
+		public String toString() {
+			return "Content store: " + this.entries + " entries (" + this.bytes
+					+ " bytes), " + this.links + " links, " + this.unreferenced
+					+ " unreferenced, " + this.saved + " bytes saved";
+		}
+
+	}
+
+}
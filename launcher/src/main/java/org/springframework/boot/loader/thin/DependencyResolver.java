@@ -24,23 +24,37 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.inject.Singleton;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Provides;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
+import com.google.inject.util.Modules;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
 import org.apache.maven.artifact.repository.MavenArtifactRepository;
 import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.ModelBuilder;
 import org.apache.maven.model.building.ModelProcessor;
 import org.apache.maven.model.io.DefaultModelReader;
 import org.apache.maven.model.io.ModelReader;
@@ -69,8 +83,10 @@ import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.classworlds.ClassWorld;
+import org.eclipse.aether.ConfigurationProperties;
 import org.eclipse.aether.DefaultRepositoryCache;
 import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.DefaultSessionData;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
@@ -78,13 +94,20 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.impl.DependencyCollector;
 import org.eclipse.aether.impl.MetadataGeneratorFactory;
+import org.eclipse.aether.impl.RemoteRepositoryManager;
 import org.eclipse.aether.impl.VersionRangeResolver;
 import org.eclipse.aether.impl.VersionResolver;
 import org.eclipse.aether.impl.guice.AetherModule;
+import org.eclipse.aether.internal.impl.DefaultArtifactResolver;
+import org.eclipse.aether.internal.impl.DefaultDependencyCollector;
+import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
 import org.eclipse.aether.repository.Authentication;
 import org.eclipse.aether.repository.AuthenticationContext;
 import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.repository.MirrorSelector;
 import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
 import org.eclipse.aether.repository.Proxy;
@@ -99,6 +122,7 @@ import org.eclipse.aether.spi.connector.transport.TransporterFactory;
 import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
 import org.eclipse.aether.transport.file.FileTransporterFactory;
 import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.util.listener.ChainedRepositoryListener;
 import org.eclipse.aether.util.repository.AuthenticationBuilder;
 import org.eclipse.aether.util.repository.JreProxySelector;
 import org.slf4j.Logger;
@@ -113,28 +137,272 @@ public class DependencyResolver {
 
 	public static final String THIN_ROOT = "thin.root";
 
+	/**
+	 * The number of artifacts (and metadata files) to download in parallel from each
+	 * repository. Defaults to twice the number of available processors (but at least 5,
+	 * the Aether default).
+	 */
+	public static final String THIN_DOWNLOAD_THREADS = "thin.download.threads";
+
+	/**
+	 * The number of times to resume an artifact download that fails part of the way
+	 * through (e.g. a dropped connection), in the same resolution, with a range request
+	 * for the rest of the file. The partial file is kept for the next launch either way.
+	 * Defaults to 3, and 0 switches it off.
+	 */
+	public static final String THIN_DOWNLOAD_RESUME = "thin.download.resume";
+
+	/**
+	 * Flag to switch off the on-disk cache of artifact descriptors (the effective
+	 * dependencies of release POMs) in <code>thin.root/cache/descriptors</code>. Defaults
+	 * to true.
+	 */
+	public static final String THIN_CACHE_DESCRIPTORS = "thin.cache.descriptors";
+
+	/**
+	 * Flag to switch off the on-disk cache of the dependency management of imported
+	 * release BOMs (e.g. from <code>boms.*</code>) in <code>thin.root/cache/boms</code>.
+	 * Defaults to true.
+	 */
+	public static final String THIN_CACHE_BOMS = "thin.cache.boms";
+
+	/**
+	 * How long to remember (in <code>thin.root/cache/versions</code>) what a version
+	 * range, <code>LATEST</code> or <code>RELEASE</code> resolved to, so the repository
+	 * metadata is not read again. A number with an optional unit (ms, s, m, h or d,
+	 * default seconds), or "pin" to keep the first result until <code>thin.force</code>.
+	 * Defaults to "false" (resolved every time).
+	 */
+	public static final String THIN_CACHE_VERSIONS = "thin.cache.versions";
+
+	/**
+	 * The path to a file where a trace (in Chrome trace event format) of the resolution
+	 * is written when dependencies are computed from the pom: when the descriptor,
+	 * artifact and metadata of each node were requested and completed, which repository
+	 * served them, and the critical path. Default empty (no trace).
+	 */
+	public static final String THIN_TRACE_FILE = "thin.trace.file";
+
+	/**
+	 * The dependency collection mode when dependencies are computed from the pom. With
+	 * "parallel" the dependency graph is walked breadth first before the normal
+	 * collection, reading the poms at each level concurrently (with
+	 * {@link #THIN_DOWNLOAD_THREADS} threads). The result is the same either way.
+	 */
+	public static final String THIN_COLLECT = "thin.collect";
+
+	/**
+	 * Flag to switch off speculative downloads of the artifacts that were resolved the
+	 * last time the same app was launched (the graph is kept in
+	 * <code>thin.root/cache/graphs</code>). Defaults to true.
+	 */
+	public static final String THIN_PREFETCH = "thin.prefetch";
+
+	/**
+	 * The HTTP transport for remote repositories. With "jdk" (Java 11 and above) the JDK
+	 * <code>HttpClient</code> is used, with HTTP/2 where the server supports it,
+	 * connections pooled across resolutions, gzip for poms and metadata, and checksums
+	 * taken from response headers where available. Only the "jdk" transport checks
+	 * repository metadata with conditional requests (a 304 if it has not changed). The
+	 * default downloads it in full whenever the update policy says it is due. Defaults
+	 * to "default" (the Apache HttpClient transport from the Maven resolver).
+	 */
+	public static final String THIN_TRANSPORT = "thin.transport";
+
+	/**
+	 * The checksum policy for downloads: "warn" (the default), "fail" or "ignore". With
+	 * "fail" the artifacts in the local repository are also verified against their
+	 * checksums before they are used, with an index of the files already verified (so
+	 * unchanged files are not read again).
+	 */
+	public static final String THIN_CHECKSUMS = "thin.checksums";
+
+	/**
+	 * How to look for a release artifact in the remote repositories: "ordered" (the
+	 * default) tries them one at a time in order, and "parallel" asks all of them at
+	 * once and downloads from the first one that has it.
+	 */
+	public static final String THIN_LOOKUP = "thin.lookup";
+
+	/**
+	 * How long to remember that a remote repository does not have a release artifact
+	 * (in <code>thin.root/cache/misses</code>), so it is not asked again. A number with
+	 * an optional unit (ms, s, m, h or d, default seconds), e.g. 1d. Defaults to "false"
+	 * (or 0), which switches it off, because a release that is published later would
+	 * not be seen until the entry expires. Launching with <code>thin.force</code> asks
+	 * again.
+	 */
+	public static final String THIN_CACHE_MISSES = "thin.cache.misses";
+
+	/**
+	 * Flag to learn which remote repository serves each group id (kept in
+	 * <code>thin.root/cache/routes.properties</code>) and ask that one first next time.
+	 * Static routes can be given as <code>repositories.routes.&lt;group
+	 * prefix&gt;=&lt;repository ids&gt;</code> in thin.properties or in the properties of
+	 * an active profile in the Maven settings. Defaults to false.
+	 */
+	public static final String THIN_ROUTES_LEARN = "thin.routes.learn";
+
+	/**
+	 * Directory of a content-addressed store (keyed by SHA-256) shared by several thin
+	 * roots. If set, resolved release artifacts in the local repository are replaced by
+	 * hard links to the store, so identical files in different roots share disk space.
+	 * Default empty (no store).
+	 */
+	public static final String THIN_STORE = "thin.store";
+
+	/**
+	 * How to create the resolver components. The default ("plexus") is a Plexus
+	 * container that scans the class path for Maven components. Set to "static" to wire
+	 * them explicitly in a plain Guice injector (no Plexus container or class path
+	 * scanning), which starts faster. Only the first resolution in a JVM (after
+	 * {@link #close()}) decides.
+	 */
+	public static final String THIN_BOOTSTRAP = "thin.bootstrap";
+
+	/**
+	 * The number of consecutive connection failures (refused, timed out or unknown host)
+	 * after which a remote repository is not asked for anything else until the
+	 * cool-down ({@link #THIN_BREAKER_COOLDOWN}) is over. If all the remote repositories
+	 * are unreachable the resolver works offline. Defaults to 3, and 0 switches it off.
+	 */
+	public static final String THIN_BREAKER = "thin.breaker";
+
+	/**
+	 * How long a remote repository that could not be connected to is left alone before
+	 * one request is let through to see if it is back. A number with an optional unit
+	 * (ms, s, m, h or d, default seconds). Defaults to 30s.
+	 */
+	public static final String THIN_BREAKER_COOLDOWN = "thin.breaker.cooldown";
+
+	/**
+	 * How long to remember (in <code>thin.root/cache/breakers.properties</code>) that a
+	 * remote repository was unreachable, so the next launch does not try it either. A
+	 * number with an optional unit (ms, s, m, h or d, default seconds). Defaults to
+	 * "false" (only for the current launch).
+	 */
+	public static final String THIN_CACHE_BREAKERS = "thin.cache.breakers";
+
+	/**
+	 * The timeout for connecting to a remote repository, and for waiting for data from
+	 * it. A number with an optional unit (ms, s, m, h or d, default seconds). Defaults to
+	 * the Maven resolver's (10s to connect and 30m for data).
+	 */
+	public static final String THIN_TIMEOUT = "thin.timeout";
+
+	/**
+	 * Flag to switch off the index of the artifacts available in the local repository
+	 * (in <code>thin.root/repository/.thin-index</code>), which is memory-mapped and
+	 * saves reading the file system for each artifact on a warm start. Defaults to true.
+	 */
+	public static final String THIN_CACHE_INDEX = "thin.cache.index";
+
+	/**
+	 * Which artifacts in the local repository have the remote repositories they came
+	 * from tracked (in <code>_remote.repositories</code> files): "all" (the default, like
+	 * Maven), "snapshots" (a release artifact is trusted if the file is there) or "none"
+	 * (every artifact is trusted, like Maven 2). Trusting the files saves reading and
+	 * writing the tracking files, e.g. on a read-only or network file system.
+	 */
+	public static final String THIN_TRACKING = "thin.tracking";
+
+	private static final String ROUTES_PREFIX = "repositories.routes.";
+
+	private static final String UPDATES_PREFIX = "repositories.updates.";
+
+	private static final Pattern UPDATE_POLICY = Pattern
+			.compile("always|daily|never|interval:[0-9]+");
+
+	/**
+	 * Options that tune the resolver, which can be set in thin.properties or as
+	 * launcher options (system properties, command line or environment variables).
+	 */
+	static final String[] OPTIONS = { THIN_DOWNLOAD_THREADS, THIN_DOWNLOAD_RESUME,
+			THIN_CACHE_DESCRIPTORS, THIN_CACHE_BOMS, THIN_CACHE_VERSIONS,
+			THIN_COLLECT, THIN_PREFETCH, THIN_TRANSPORT, THIN_CHECKSUMS,
+			THIN_LOOKUP, THIN_CACHE_MISSES, THIN_ROUTES_LEARN, THIN_STORE,
+			THIN_BOOTSTRAP, THIN_BREAKER, THIN_BREAKER_COOLDOWN, THIN_CACHE_BREAKERS,
+			THIN_TIMEOUT, THIN_CACHE_INDEX, THIN_TRACKING, THIN_TRACE_FILE };
+
 	private static final Logger log = LoggerFactory.getLogger(DependencyResolver.class);
 
+	private static final Pattern DURATION = Pattern.compile("([0-9]+)\\s*(ms|s|m|h|d|)");
+
 	private static DependencyResolver instance = new DependencyResolver();
 
-	private static Properties globals;
+	private static final ResolverMetrics metrics = new ResolverMetrics();
 
 	private LocalRepositoryManagerFactory localRepositoryManagerFactory;
 
-	private PlexusContainer container;
+	private volatile PlexusContainer container;
 
 	private Object lock = new Object();
 
-	private ProjectBuilder projectBuilder;
+	private volatile ProjectBuilder projectBuilder;
 
 	private RepositorySystem repositorySystem;
 
+	private RemoteRepositoryManager remoteRepositoryManager;
+
 	private MavenSettings settings;
 
+	/**
+	 * Repository sessions shared by all resolutions in this JVM with the same local
+	 * repository, offline flag and download settings (the Maven settings are fixed for
+	 * the lifetime of the resolver). The cache in a shared session holds artifact
+	 * descriptors of releases, so they are not re-read for every resolution. Anything that
+	 * can change (e.g. resolved snapshot versions) is cached per resolution.
+	 */
+	private final Map<String, DefaultRepositorySystemSession> sessions = new ConcurrentHashMap<>();
+
+	/**
+	 * The effective remote repositories (with mirrors, authentication and proxies
+	 * applied) for each repository session, computed once and shared by all the
+	 * artifact requests that use the session.
+	 */
+	private final Map<String, List<RemoteRepository>> repositories = new ConcurrentHashMap<>();
+
+	/**
+	 * Indexes of verified files, keyed by local repository (only used if the checksum
+	 * policy is "fail").
+	 */
+	private final Map<File, VerifiedDigests> digests = new ConcurrentHashMap<>();
+
+	/**
+	 * Learned repository routes, keyed by file (only used if
+	 * {@link #THIN_ROUTES_LEARN} is set).
+	 */
+	private final Map<File, RoutingArtifactResolver.Learned> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * Content stores, keyed by directory (only used if {@link #THIN_STORE} is set).
+	 */
+	private final Map<File, ContentStore> stores = new ConcurrentHashMap<>();
+
+	/**
+	 * Indexes of the artifacts available in each local repository.
+	 */
+	private final Map<File, LocalRepositoryIndex> indexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Circuit breakers for the remote repositories, keyed by file (in the cache next to
+	 * the local repository).
+	 */
+	private final Map<File, CircuitBreakingRepositoryConnectorFactory.Breakers> breakers = new ConcurrentHashMap<>();
+
 	public static DependencyResolver instance() {
 		return instance;
 	}
 
+	/**
+	 * Statistics for all the resolutions in this JVM (they are not reset by
+	 * {@link #close()}).
+	 * @return the resolver metrics
+	 */
+	public static ResolverMetrics metrics() {
+		return metrics;
+	}
+
 	public static void close() {
 		if (instance != null) {
 			instance.dispose();
@@ -157,40 +425,71 @@ public class DependencyResolver {
 	}
 
 	private void initialize(Properties properties) {
-		if (this.container == null) {
+		if (this.projectBuilder == null) {
 			synchronized (lock) {
-				if (this.container == null) {
-					ClassWorld classWorld = new ClassWorld("plexus.core",
-							Thread.currentThread().getContextClassLoader());
-					ContainerConfiguration config = new DefaultContainerConfiguration()
-							.setClassWorld(classWorld)
-							.setRealm(classWorld.getClassRealm("plexus.core"))
-							.setClassPathScanning(PlexusConstants.SCANNING_INDEX)
-							.setAutoWiring(true).setName("maven");
-					PlexusContainer container;
-					try {
-						container = new DefaultPlexusContainer(config, new AetherModule(),
-								new DependencyResolutionModule());
-						localRepositoryManagerFactory = container
-								.lookup(LocalRepositoryManagerFactory.class, "enhanced");
-						// container.addComponent(
-						// new ClassRealmManager((MutablePlexusContainer) container, new
-						// DefaultBeanLocator()),
-						// ClassRealmManager.class.getName());
-						projectBuilder = container.lookup(ProjectBuilder.class);
-						repositorySystem = container.lookup(RepositorySystem.class);
+				if (this.projectBuilder == null) {
+					long start = System.currentTimeMillis();
+					ProjectBuilder builder;
+					if (isStaticBootstrap(properties)) {
+						builder = bootstrap();
 					}
-					catch (Exception e) {
-						throw new IllegalStateException("Cannot create container", e);
+					else {
+						builder = container();
 					}
-					this.container = container;
 					this.settings = new MavenSettingsReader(
 							properties.getProperty(THIN_ROOT)).readSettings();
+					this.projectBuilder = builder;
+					if (log.isInfoEnabled()) {
+						log.info("Resolver initialized in: "
+								+ (System.currentTimeMillis() - start) + "ms");
+					}
 				}
 			}
 		}
 	}
 
+	private boolean isStaticBootstrap(Properties properties) {
+		return "static".equals(option(properties, THIN_BOOTSTRAP, "plexus"));
+	}
+
+	private ProjectBuilder container() {
+		ClassWorld classWorld = new ClassWorld("plexus.core",
+				Thread.currentThread().getContextClassLoader());
+		ContainerConfiguration config = new DefaultContainerConfiguration()
+				.setClassWorld(classWorld)
+				.setRealm(classWorld.getClassRealm("plexus.core"))
+				.setClassPathScanning(PlexusConstants.SCANNING_INDEX)
+				.setAutoWiring(true).setName("maven");
+		try {
+			PlexusContainer container = new DefaultPlexusContainer(config,
+					Modules.override(new AetherModule())
+							.with(new DependencyCollectionModule(),
+									new ArtifactResolutionModule()),
+					new DependencyResolutionModule());
+			localRepositoryManagerFactory = container
+					.lookup(LocalRepositoryManagerFactory.class, "enhanced");
+			repositorySystem = container.lookup(RepositorySystem.class);
+			remoteRepositoryManager = container.lookup(RemoteRepositoryManager.class);
+			this.container = container;
+			return container.lookup(ProjectBuilder.class);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot create container", e);
+		}
+	}
+
+	private ProjectBuilder bootstrap() {
+		Injector injector = Guice.createInjector(
+				Modules.override(new AetherModule()).with(
+						new DependencyCollectionModule(), new ArtifactResolutionModule()),
+				new DependencyResolutionModule(), new StaticBootstrapModule());
+		localRepositoryManagerFactory = injector.getInstance(Key
+				.get(LocalRepositoryManagerFactory.class, Names.named("enhanced")));
+		repositorySystem = injector.getInstance(RepositorySystem.class);
+		remoteRepositoryManager = injector.getInstance(RemoteRepositoryManager.class);
+		return injector.getInstance(ProjectBuilder.class);
+	}
+
 	public List<Dependency> dependencies(Resource resource) {
 		return dependencies(resource, new Properties());
 	}
@@ -208,53 +507,141 @@ public class DependencyResolver {
 			log.info("Computing dependencies from pom and properties");
 			ProjectBuildingRequest request = getProjectBuildingRequest(properties);
 			request.setResolveDependencies(true);
-			synchronized (DependencyResolver.class) {
-				ProjectBuildingResult result = projectBuilder
-						.build(new PropertiesModelSource(properties, resource), request);
-				DependencyResolver.globals = null;
-				DependencyResolutionResult dependencies = result
-						.getDependencyResolutionResult();
-				if (!dependencies.getUnresolvedDependencies().isEmpty() && 
-						properties.getProperty(ThinJarLauncher.THIN_LIBS, "").length()==0) {
-					StringBuilder builder = new StringBuilder();
-					for (Dependency dependency : dependencies
-							.getUnresolvedDependencies()) {
-						List<Exception> errors = dependencies
-								.getResolutionErrors(dependency);
-						for (Exception exception : errors) {
-							if (builder.length() > 0) {
-								builder.append("\n");
-							}
-							builder.append(exception.getMessage());
-						}
-					}
-					throw new RuntimeException(builder.toString());
+			ResolutionTrace trace = trace(request.getRepositorySession(), properties);
+			GraphPrefetcher.Prefetch prefetch = prefetch(resource, properties, request);
+			ProjectBuildingResult result = null;
+			long start = System.currentTimeMillis();
+			try {
+				result = projectBuilder
+						.build(new PropertiesModelSource(properties, resource,
+						bomCache(properties)), request);
+			}
+			finally {
+				metrics.resolved(System.currentTimeMillis() - start);
+				if (prefetch != null) {
+					prefetch.close();
+				}
+				if (trace != null) {
+					trace.write(result == null ? null
+							: result.getDependencyResolutionResult().getDependencyGraph());
 				}
-				if (!dependencies.getCollectionErrors().isEmpty()) {
-					StringBuilder builder = new StringBuilder();
-					for (Exception exception : dependencies.getCollectionErrors()) {
+			}
+			DependencyResolutionResult dependencies = result
+					.getDependencyResolutionResult();
+			if (!dependencies.getUnresolvedDependencies().isEmpty() && 
+					properties.getProperty(ThinJarLauncher.THIN_LIBS, "").length()==0) {
+				StringBuilder builder = new StringBuilder();
+				for (Dependency dependency : dependencies
+						.getUnresolvedDependencies()) {
+					List<Exception> errors = dependencies
+							.getResolutionErrors(dependency);
+					for (Exception exception : errors) {
 						if (builder.length() > 0) {
 							builder.append("\n");
 						}
 						builder.append(exception.getMessage());
 					}
-					throw new RuntimeException(builder.toString());
 				}
-				List<Dependency> output = runtime(dependencies.getDependencies());
-				if (log.isInfoEnabled()) {
-					for (Dependency dependency : output) {
-						log.info("Resolved: " + coordinates(dependency) + "="
-								+ dependency.getArtifact().getFile());
+				throw new RuntimeException(builder.toString());
+			}
+			if (!dependencies.getCollectionErrors().isEmpty()) {
+				StringBuilder builder = new StringBuilder();
+				for (Exception exception : dependencies.getCollectionErrors()) {
+					if (builder.length() > 0) {
+						builder.append("\n");
 					}
+					builder.append(exception.getMessage());
+				}
+				throw new RuntimeException(builder.toString());
+			}
+			if (prefetch != null) {
+				prefetch.record();
+			}
+			List<Dependency> output = runtime(dependencies.getDependencies());
+			verify(output, properties);
+			saveRoutes(properties);
+			saveIndex(properties);
+			store(output, properties);
+			if (log.isInfoEnabled()) {
+				for (Dependency dependency : output) {
+					log.info("Resolved: " + coordinates(dependency) + "="
+							+ dependency.getArtifact().getFile());
 				}
-				return output;
 			}
+			return output;
 		}
 		catch (ProjectBuildingException | NoLocalRepositoryManagerException e) {
 			throw new IllegalStateException("Cannot build model", e);
 		}
 	}
 
+	/**
+	 * A trace of this resolution (if one was asked for), which records events from the
+	 * session (a copy that is not shared with other resolutions).
+	 */
+	private ResolutionTrace trace(RepositorySystemSession session,
+			Properties properties) {
+		String file = option(properties, THIN_TRACE_FILE, "");
+		if (!StringUtils.hasText(file)) {
+			return null;
+		}
+		DefaultRepositorySystemSession traced = (DefaultRepositorySystemSession) session;
+		ResolutionTrace trace = new ResolutionTrace(new File(file));
+		traced.setRepositoryListener(
+				new ChainedRepositoryListener(traced.getRepositoryListener(), trace));
+		traced.setConfigProperty(ResolutionTrace.TRACE, trace);
+		return trace;
+	}
+
+	private GraphPrefetcher.Prefetch prefetch(Resource resource, Properties properties,
+			ProjectBuildingRequest request) throws NoLocalRepositoryManagerException {
+		RepositorySystemSession session = request.getRepositorySession();
+		if (session.isOffline()
+				|| "false".equals(option(properties, THIN_PREFETCH, "true"))) {
+			return null;
+		}
+		String fingerprint = fingerprint(resource, properties);
+		if (fingerprint == null) {
+			return null;
+		}
+		GraphPrefetcher prefetcher = new GraphPrefetcher(repositorySystem,
+				new File(cacheDirectory(properties), "graphs"));
+		return prefetcher.start(fingerprint, (DefaultRepositorySystemSession) session,
+				createSession(properties), remoteRepositories(session, properties),
+				downloadThreads(properties));
+	}
+
+	/**
+	 * An identity for the app that does not change when its dependencies (or their
+	 * versions) do, so that the graph from a previous resolution can be used to predict
+	 * the next one.
+	 */
+	private String fingerprint(Resource resource, Properties properties) {
+		try (InputStream stream = resource.getInputStream()) {
+			Model model = new DefaultModelReader().read(stream,
+					Collections.<String, Object>emptyMap());
+			String groupId = model.getGroupId();
+			if (groupId == null && model.getParent() != null) {
+				groupId = model.getParent().getGroupId();
+			}
+			StringBuilder builder = new StringBuilder(
+					groupId + ":" + model.getArtifactId());
+			if ("com.example:empty".equals(builder.toString())) {
+				// No pom of its own, so use the names of the declared dependencies
+				for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+					if (name.startsWith("dependencies.")) {
+						builder.append(";").append(name);
+					}
+				}
+			}
+			return builder.toString();
+		}
+		catch (IOException | RuntimeException e) {
+			log.debug("Cannot compute fingerprint for: " + resource, e);
+			return null;
+		}
+	}
+
 	private List<Dependency> aetherDependencies(
 			List<org.apache.maven.model.Dependency> dependencies, Properties properties) {
 		List<Dependency> list = new ArrayList<>();
@@ -271,9 +658,116 @@ public class DependencyResolver {
 			Dependency converted = new Dependency(artifact, "runtime");
 			list.add(converted);
 		}
+		verify(list, properties);
+		saveRoutes(properties);
+		saveIndex(properties);
+		store(list, properties);
 		return list;
 	}
 
+	private void verify(List<Dependency> dependencies, Properties properties) {
+		if (!RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals(checksumPolicy(properties))) {
+			return;
+		}
+		List<File> files = new ArrayList<>();
+		for (Dependency dependency : dependencies) {
+			files.add(dependency.getArtifact().getFile());
+		}
+		VerifiedDigests digests = digests(properties);
+		List<File> failed = digests.verify(files, downloadThreads(properties));
+		digests.save();
+		if (!failed.isEmpty()) {
+			throw new IllegalStateException("Checksum verification failed for: " + failed);
+		}
+	}
+
+	private void store(List<Dependency> dependencies, Properties properties) {
+		String value = option(properties, THIN_STORE, null);
+		if (!StringUtils.hasText(value)) {
+			return;
+		}
+		List<File> files = new ArrayList<>();
+		for (Dependency dependency : dependencies) {
+			// Snapshots change, so they are not worth sharing
+			if (!dependency.getArtifact().isSnapshot()) {
+				files.add(dependency.getArtifact().getFile());
+			}
+		}
+		ContentStore store = this.stores.computeIfAbsent(
+				new File(value.trim()).getAbsoluteFile(), ContentStore::new);
+		store.link(localRepositoryPath(properties, settings), files);
+	}
+
+	private Map<String, List<String>> routes(Properties properties) {
+		Properties values = new Properties();
+		for (Profile profile : settings.getActiveProfiles()) {
+			values.putAll(profile.getProperties());
+		}
+		values.putAll(properties);
+		Map<String, List<String>> routes = new HashMap<>();
+		for (String name : values.stringPropertyNames()) {
+			if (name.startsWith(ROUTES_PREFIX)) {
+				routes.put(name.substring(ROUTES_PREFIX.length()), Arrays.asList(
+						StringUtils.commaDelimitedListToStringArray(StringUtils
+								.trimAllWhitespace(values.getProperty(name)))));
+			}
+		}
+		return routes;
+	}
+
+	private boolean isLearnedRouting(Properties properties) {
+		return "true".equals(option(properties, THIN_ROUTES_LEARN, "false"));
+	}
+
+	private RoutingArtifactResolver.Learned learnedRoutes(Properties properties) {
+		return this.routes.computeIfAbsent(
+				new File(cacheDirectory(properties), "routes.properties"),
+				RoutingArtifactResolver.Learned::new);
+	}
+
+	private void saveRoutes(Properties properties) {
+		if (isLearnedRouting(properties)) {
+			learnedRoutes(properties).save();
+		}
+	}
+
+	private boolean isIndexed(Properties properties) {
+		// Nothing to save if the files are trusted anyway
+		return "all".equals(tracking(properties))
+				&& !"false".equals(option(properties, THIN_CACHE_INDEX, "true"));
+	}
+
+	private String tracking(Properties properties) {
+		String value = option(properties, THIN_TRACKING, "all");
+		if ("false".equals(value)) {
+			return "none";
+		}
+		if ("none".equals(value) || "snapshots".equals(value)) {
+			return value;
+		}
+		return "all";
+	}
+
+	private LocalRepositoryIndex index(RepositorySystemSession session) {
+		return this.indexes.computeIfAbsent(
+				session.getLocalRepository().getBasedir().getAbsoluteFile(),
+				LocalRepositoryIndex::new);
+	}
+
+	private void saveIndex(Properties properties) {
+		if (isIndexed(properties)) {
+			for (LocalRepositoryIndex index : this.indexes.values()) {
+				index.save();
+			}
+		}
+	}
+
+	private VerifiedDigests digests(Properties properties) {
+		return this.digests.computeIfAbsent(
+				localRepositoryPath(properties, settings).getAbsoluteFile(),
+				VerifiedDigests::new);
+	}
+
 	private String coordinates(org.apache.maven.model.Dependency artifact) {
 		// group:artifact:extension:classifier:version
 		String classifier = artifact.getClassifier();
@@ -359,17 +853,19 @@ public class DependencyResolver {
 	private List<ArtifactRepository> mavenRepositories(MavenSettings settings,
 			RepositorySystemSession session, Properties properties) {
 		List<ArtifactRepository> list = new ArrayList<>();
+		Map<String, String> updates = updatePolicies(properties);
 		if (session.isOffline()) {
 			if (properties.containsKey(ThinJarLauncher.THIN_ROOT)) {
 				addRepositoryIfMissing(settings, session, list, "local",
-						"file://" + properties.getProperty(THIN_ROOT), true, true);
+						"file://" + properties.getProperty(THIN_ROOT), true, true,
+						updates, null);
 			}
 			return list;
 		}
 		if (properties.containsKey(ThinJarLauncher.THIN_ROOT)) {
 			addRepositoryIfMissing(settings, session, list, "local",
 					"file://" + localRepositoryPath(new Properties(), settings), true,
-					true);
+					true, updates, null);
 		}
 		for (Profile profile : settings.getActiveProfiles()) {
 			for (Repository repository : profile.getRepositories()) {
@@ -380,16 +876,77 @@ public class DependencyResolver {
 								: true,
 						repository.getSnapshots() != null
 								? repository.getSnapshots().isEnabled()
-								: true);
+								: true,
+						updates, repository.getSnapshots() != null
+								? repository.getSnapshots().getUpdatePolicy()
+								: null);
 			}
 		}
 		addRepositoryIfMissing(settings, session, list, "spring-snapshots",
-				"https://repo.spring.io/snapshot", true, true);
+				"https://repo.spring.io/snapshot", true, true, updates, null);
 		addRepositoryIfMissing(settings, session, list, "central",
-				"https://repo1.maven.org/maven2", true, false);
+				"https://repo1.maven.org/maven2", true, false, updates, null);
 		return list;
 	}
 
+	/**
+	 * The update policies for snapshots (how often to check for new
+	 * <code>maven-metadata.xml</code>) keyed by repository id ("*" for the default),
+	 * from <code>repositories.updates.&lt;id&gt;</code> in thin.properties or in the
+	 * properties of an active profile in the Maven settings. When a check is due the
+	 * metadata is downloaded in full, unless the transport is "jdk" (see
+	 * {@link #THIN_TRANSPORT}), which sends a conditional request.
+	 */
+	private Map<String, String> updatePolicies(Properties properties) {
+		Properties values = new Properties();
+		for (Profile profile : settings.getActiveProfiles()) {
+			values.putAll(profile.getProperties());
+		}
+		values.putAll(properties);
+		Map<String, String> updates = new TreeMap<>();
+		for (String name : values.stringPropertyNames()) {
+			if (name.startsWith(UPDATES_PREFIX)) {
+				String value = StringUtils
+						.trimAllWhitespace(values.getProperty(name));
+				if (UPDATE_POLICY.matcher(value).matches()) {
+					updates.put(name.substring(UPDATES_PREFIX.length()), value);
+				}
+				else {
+					log.warn("Ignoring invalid update policy " + name + "=" + value);
+				}
+			}
+		}
+		return updates;
+	}
+
+	/**
+	 * The repository plan for a session: the repositories from the settings, mirrored
+	 * and with authentication and proxies from the session selectors, so repositories
+	 * that share a mirror collapse into one. Computed once per session and never
+	 * modified, so it can be shared by all requests.
+	 */
+	private List<RemoteRepository> remoteRepositories(RepositorySystemSession session,
+			Properties properties) {
+		String key = sessionKey(properties) + ";root="
+				+ properties.getProperty(THIN_ROOT) + ";updates="
+				+ updatePolicies(properties);
+		List<RemoteRepository> plan = this.repositories.get(key);
+		if (plan == null) {
+			plan = Collections.unmodifiableList(remoteRepositoryManager
+					.aggregateRepositories(session,
+							Collections.<RemoteRepository>emptyList(),
+							aetherRepositories(settings, session, properties), true));
+			List<RemoteRepository> existing = this.repositories.putIfAbsent(key, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+			else if (log.isDebugEnabled()) {
+				log.debug("Repositories for: " + key + "=" + plan);
+			}
+		}
+		return plan;
+	}
+
 	private List<RemoteRepository> aetherRepositories(MavenSettings settings,
 			RepositorySystemSession session, Properties properties) {
 		List<RemoteRepository> list = new ArrayList<>();
@@ -426,14 +983,16 @@ public class DependencyResolver {
 
 	private RepositoryPolicy policy(ArtifactRepositoryPolicy input) {
 		RepositoryPolicy policy = new RepositoryPolicy(input.isEnabled(),
-				RepositoryPolicy.UPDATE_POLICY_DAILY,
+				input.getUpdatePolicy() != null ? input.getUpdatePolicy()
+						: RepositoryPolicy.UPDATE_POLICY_DAILY,
 				RepositoryPolicy.CHECKSUM_POLICY_WARN);
 		return policy;
 	}
 
 	private void addRepositoryIfMissing(MavenSettings settings,
 			RepositorySystemSession session, List<ArtifactRepository> list, String id,
-			String url, boolean releases, boolean snapshots) {
+			String url, boolean releases, boolean snapshots, Map<String, String> updates,
+			String update) {
 		for (ArtifactRepository repo : list) {
 			if (url.equals(repo.getUrl())) {
 				return;
@@ -442,22 +1001,17 @@ public class DependencyResolver {
 				return;
 			}
 		}
-		list.add(repo(settings, session, id, url, releases, snapshots));
+		list.add(repo(settings, session, id, url, releases, snapshots, updates,
+				update));
 	}
 
 	private ArtifactRepository repo(MavenSettings settings,
 			RepositorySystemSession session, String id, String url, boolean releases,
-			boolean snapshots) {
+			boolean snapshots, Map<String, String> updates, String update) {
 		MavenArtifactRepository repository = new MavenArtifactRepository();
 		repository.setLayout(new DefaultRepositoryLayout());
 		repository.setId(id);
 		repository.setUrl(url);
-		ArtifactRepositoryPolicy enabled = new ArtifactRepositoryPolicy();
-		enabled.setEnabled(true);
-		ArtifactRepositoryPolicy disabled = new ArtifactRepositoryPolicy();
-		disabled.setEnabled(false);
-		repository.setReleaseUpdatePolicy(releases ? enabled : disabled);
-		repository.setSnapshotUpdatePolicy(snapshots ? enabled : disabled);
 		RemoteRepository remote = new RemoteRepository.Builder(id, null, url)
 			.setContentType(repository.getLayout().getId()).build();
 		MirrorSelector mirror = settings.getMirrorSelector();
@@ -467,6 +1021,25 @@ public class DependencyResolver {
 				remote = value;
 			}
 		}
+		// Release artifacts never change once downloaded, so only snapshots have an
+		// update policy (from the repository id, or its mirror, or the default)
+		for (String key : new String[] { id, remote.getId(), "*" }) {
+			if (updates.containsKey(key)) {
+				update = updates.get(key);
+				break;
+			}
+		}
+		ArtifactRepositoryPolicy enabled = new ArtifactRepositoryPolicy();
+		enabled.setEnabled(true);
+		ArtifactRepositoryPolicy disabled = new ArtifactRepositoryPolicy();
+		disabled.setEnabled(false);
+		ArtifactRepositoryPolicy updated = new ArtifactRepositoryPolicy();
+		updated.setEnabled(true);
+		if (StringUtils.hasText(update)) {
+			updated.setUpdatePolicy(update);
+		}
+		repository.setReleaseUpdatePolicy(releases ? enabled : disabled);
+		repository.setSnapshotUpdatePolicy(snapshots ? updated : disabled);
 		Authentication authentication = settings.getAuthenticationSelector()
 				.getAuthentication(remote);
 		if (authentication != null) {
@@ -537,11 +1110,135 @@ public class DependencyResolver {
 
 	private DefaultRepositorySystemSession createSession(Properties properties)
 			throws NoLocalRepositoryManagerException {
+		String key = sessionKey(properties);
+		DefaultRepositorySystemSession shared = this.sessions.get(key);
+		if (shared == null) {
+			shared = newSession(properties);
+			DefaultRepositorySystemSession existing = this.sessions.putIfAbsent(key,
+					shared);
+			if (existing != null) {
+				shared = existing;
+			}
+			else {
+				log.info("Created repository session for: " + key);
+			}
+		}
+		// A cheap copy that shares the local repository manager and release descriptors,
+		// but has its own session data (e.g. the record of update checks) and cache (e.g.
+		// resolved snapshot versions) and can be customized
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(
+				shared);
+		session.setData(new DefaultSessionData());
+		session.setCache(new ReleaseRepositoryCache(shared.getCache()));
+		Map<String, List<String>> routes = routes(properties);
+		if (!routes.isEmpty()) {
+			session.setConfigProperty(RoutingArtifactResolver.ROUTES, routes);
+		}
+		if (isLearnedRouting(properties)) {
+			session.setConfigProperty(RoutingArtifactResolver.LEARNED,
+					learnedRoutes(properties));
+		}
+		session.setConfigProperty(ResumingRepositoryConnectorFactory.RESUMES,
+				downloadResumes(properties));
+		int threshold = breakerThreshold(properties);
+		if (threshold > 0) {
+			CircuitBreakingRepositoryConnectorFactory.Breakers breakers = breakers(
+					properties);
+			session.setConfigProperty(CircuitBreakingRepositoryConnectorFactory.THRESHOLD,
+					threshold);
+			session.setConfigProperty(CircuitBreakingRepositoryConnectorFactory.BREAKERS,
+					breakers);
+			session.setConfigProperty(CircuitBreakingRepositoryConnectorFactory.TTL,
+					duration(properties, THIN_CACHE_BREAKERS, "false"));
+			session.setConfigProperty(CircuitBreakingRepositoryConnectorFactory.COOLDOWN,
+					duration(properties, THIN_BREAKER_COOLDOWN, "30s"));
+			// Only this resolution goes offline (never the shared session), so the next
+			// one is online again if a circuit has cooled down in the meantime
+			if (!session.isOffline() && isUnreachable(session, properties, breakers)) {
+				log.warn("No remote repositories are reachable, working offline");
+				session.setOffline(true);
+			}
+		}
+		return session;
+	}
+
+	private int breakerThreshold(Properties properties) {
+		String value = option(properties, THIN_BREAKER, "3");
+		try {
+			return Math.max(0, Integer.parseInt(value.trim()));
+		}
+		catch (NumberFormatException e) {
+			log.warn("Ignoring invalid " + THIN_BREAKER + ": " + value);
+			return 3;
+		}
+	}
+
+	private CircuitBreakingRepositoryConnectorFactory.Breakers breakers(
+			Properties properties) {
+		return this.breakers.computeIfAbsent(
+				new File(cacheDirectory(properties), "breakers.properties"),
+				CircuitBreakingRepositoryConnectorFactory.Breakers::new);
+	}
+
+	/**
+	 * True if the circuit is open for all the (enabled) remote repositories, which
+	 * probably means there is no network.
+	 */
+	private boolean isUnreachable(RepositorySystemSession session, Properties properties,
+			CircuitBreakingRepositoryConnectorFactory.Breakers breakers) {
+		boolean remote = false;
+		for (RemoteRepository repository : remoteRepositories(session, properties)) {
+			if (!CircuitBreakingRepositoryConnectorFactory.isRemote(repository)
+					|| !repository.getPolicy(false).isEnabled()
+							&& !repository.getPolicy(true).isEnabled()) {
+				continue;
+			}
+			if (!breakers.isOpen(repository)) {
+				return false;
+			}
+			remote = true;
+		}
+		return remote;
+	}
+
+	private String sessionKey(Properties properties) {
+		return localRepositoryPath(properties, settings).getAbsolutePath() + ";offline="
+				+ isOffline(properties) + ";threads=" + downloadThreads(properties)
+				+ ";descriptors=" + descriptorCache(properties) + ";collect="
+				+ isParallelCollection(properties) + ";transport="
+				+ option(properties, THIN_TRANSPORT, "default") + ";checksums="
+				+ checksumPolicy(properties) + ";lookup=" + isParallelLookup(properties)
+				+ ";misses=" + missesTtl(properties) + ";versions="
+				+ versionsTtl(properties) + ";force=" + isForce(properties)
+				+ ";timeout=" + duration(properties, THIN_TIMEOUT, "0") + ";index="
+				+ isIndexed(properties) + ";tracking=" + tracking(properties);
+	}
+
+	private boolean isOffline(Properties properties) {
+		return properties.containsKey(THIN_OFFLINE)
+				&& !"false".equals(properties.getProperty(THIN_OFFLINE));
+	}
+
+	private DefaultRepositorySystemSession newSession(Properties properties)
+			throws NoLocalRepositoryManagerException {
 		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
 		LocalRepository repository = localRepository(properties);
 		session.setLocalRepositoryManager(
 				localRepositoryManagerFactory.newInstance(session, repository));
 		applySettings(session);
+		String tracking = tracking(properties);
+		if (!"all".equals(tracking)) {
+			LocalRepositoryManager simple = new SimpleLocalRepositoryManagerFactory()
+					.newInstance(session, new LocalRepository(
+							session.getLocalRepository().getBasedir(), "simple"));
+			session.setLocalRepositoryManager("none".equals(tracking) ? simple
+					: new SplitLocalRepositoryManager(simple,
+							session.getLocalRepositoryManager()));
+		}
+		if (isIndexed(properties)) {
+			session.setLocalRepositoryManager(new IndexedLocalRepositoryManager(
+					session.getLocalRepositoryManager(), index(session)));
+		}
 		ProxySelector existing = session.getProxySelector();
 		if (existing == null || !(existing instanceof CompositeProxySelector)) {
 			JreProxySelector fallback = new JreProxySelector();
@@ -549,14 +1246,181 @@ public class DependencyResolver {
 					: new CompositeProxySelector(Arrays.asList(existing, fallback));
 			session.setProxySelector(selector);
 		}
-		if (properties.containsKey(THIN_OFFLINE)
-				&& !"false".equals(properties.getProperty(THIN_OFFLINE))) {
+		if (isOffline(properties)) {
 			session.setOffline(true);
 		}
 		session.setCache(new DefaultRepositoryCache());
+		String threads = "" + downloadThreads(properties);
+		session.setConfigProperty("aether.connector.basic.threads", threads);
+		session.setConfigProperty("aether.metadataResolver.threads", threads);
+		if (isParallelCollection(properties)) {
+			session.setConfigProperty(ParallelDependencyCollector.THREADS, threads);
+		}
+		if (isParallelLookup(properties)) {
+			session.setConfigProperty(ParallelArtifactResolver.PARALLEL, true);
+		}
+		String checksums = checksumPolicy(properties);
+		session.setChecksumPolicy(checksums);
+		if (RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals(checksums)) {
+			// Record new downloads as verified (the connector checked them already)
+			session.setRepositoryListener(new ChainedRepositoryListener(
+					metrics.getRepositoryListener(), digests(properties)));
+		}
+		else {
+			session.setRepositoryListener(metrics.getRepositoryListener());
+		}
+		session.setTransferListener(metrics.getTransferListener());
+		session.setConfigProperty(JdkHttpTransporterFactory.TRANSPORT,
+				option(properties, THIN_TRANSPORT, "default"));
+		session.setConfigProperty(JdkHttpTransporter.METADATA,
+				new File(cacheDirectory(properties), "metadata").getAbsolutePath());
+		long timeout = duration(properties, THIN_TIMEOUT, "0");
+		if (timeout > 0) {
+			session.setConfigProperty(ConfigurationProperties.CONNECT_TIMEOUT,
+					(int) timeout);
+			session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT,
+					(int) timeout);
+		}
+		long misses = missesTtl(properties);
+		if (misses > 0) {
+			session.setConfigProperty(MissCachingRepositoryConnectorFactory.DIRECTORY,
+					new File(cacheDirectory(properties), "misses").getAbsolutePath());
+			session.setConfigProperty(MissCachingRepositoryConnectorFactory.TTL, misses);
+			session.setConfigProperty(MissCachingRepositoryConnectorFactory.REFRESH,
+					isForce(properties));
+		}
+		long versions = versionsTtl(properties);
+		if (versions > 0) {
+			session.setConfigProperty(CachingVersionResolver.DIRECTORY,
+					new File(cacheDirectory(properties), "versions").getAbsolutePath());
+			session.setConfigProperty(CachingVersionResolver.TTL, versions);
+			session.setConfigProperty(CachingVersionResolver.REFRESH,
+					isForce(properties));
+			session.setConfigProperty(CachingVersionResolver.METRICS, metrics);
+		}
+		File descriptors = descriptorCache(properties);
+		if (descriptors != null) {
+			session.setConfigProperty(CachingArtifactDescriptorReader.DIRECTORY,
+					descriptors.getAbsolutePath());
+		}
 		return session;
 	}
 
+	private String checksumPolicy(Properties properties) {
+		String value = option(properties, THIN_CHECKSUMS,
+				RepositoryPolicy.CHECKSUM_POLICY_WARN);
+		if (RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals(value)
+				|| RepositoryPolicy.CHECKSUM_POLICY_IGNORE.equals(value)) {
+			return value;
+		}
+		return RepositoryPolicy.CHECKSUM_POLICY_WARN;
+	}
+
+	private long missesTtl(Properties properties) {
+		return duration(properties, THIN_CACHE_MISSES, "false");
+	}
+
+	private long versionsTtl(Properties properties) {
+		if ("pin".equals(option(properties, THIN_CACHE_VERSIONS, "false").trim())) {
+			return Long.MAX_VALUE;
+		}
+		return duration(properties, THIN_CACHE_VERSIONS, "false");
+	}
+
+	/**
+	 * A duration option in milliseconds (0 for "false").
+	 */
+	private long duration(Properties properties, String name, String defaultValue) {
+		String value = option(properties, name, defaultValue).trim();
+		if ("false".equals(value)) {
+			return 0;
+		}
+		Matcher matcher = DURATION.matcher(value);
+		if (!matcher.matches()) {
+			log.warn("Ignoring invalid " + name + ": " + value);
+			return duration(new Properties(), name, defaultValue);
+		}
+		long amount = Long.parseLong(matcher.group(1));
+		String unit = matcher.group(2);
+		switch (unit) {
+		case "ms":
+			return amount;
+		case "m":
+			return TimeUnit.MINUTES.toMillis(amount);
+		case "h":
+			return TimeUnit.HOURS.toMillis(amount);
+		case "d":
+			return TimeUnit.DAYS.toMillis(amount);
+		default:
+			return TimeUnit.SECONDS.toMillis(amount);
+		}
+	}
+
+	private boolean isForce(Properties properties) {
+		String value = properties.getProperty(ThinJarLauncher.THIN_FORCE);
+		return value != null && !"false".equals(value);
+	}
+
+	private boolean isParallelLookup(Properties properties) {
+		return "parallel".equals(option(properties, THIN_LOOKUP, "ordered"));
+	}
+
+	private boolean isParallelCollection(Properties properties) {
+		return "parallel".equals(option(properties, THIN_COLLECT, "default"));
+	}
+
+	private File descriptorCache(Properties properties) {
+		if ("false".equals(option(properties, THIN_CACHE_DESCRIPTORS, "true"))) {
+			return null;
+		}
+		return new File(cacheDirectory(properties), "descriptors");
+	}
+
+	private File bomCache(Properties properties) {
+		if ("false".equals(option(properties, THIN_CACHE_BOMS, "true"))) {
+			return null;
+		}
+		return new File(cacheDirectory(properties), "boms");
+	}
+
+	private File cacheDirectory(Properties properties) {
+		// Next to the local repository, i.e. in thin.root by default
+		File repository = localRepositoryPath(properties, settings).getAbsoluteFile();
+		return new File(repository.getParentFile(), "cache");
+	}
+
+	private int downloadResumes(Properties properties) {
+		String value = option(properties, THIN_DOWNLOAD_RESUME, "3");
+		try {
+			return Math.max(0, Integer.parseInt(value.trim()));
+		}
+		catch (NumberFormatException e) {
+			log.warn("Ignoring invalid " + THIN_DOWNLOAD_RESUME + ": " + value);
+			return 3;
+		}
+	}
+
+	private int downloadThreads(Properties properties) {
+		String value = option(properties, THIN_DOWNLOAD_THREADS, null);
+		if (StringUtils.hasText(value)) {
+			try {
+				return Math.max(1, Integer.parseInt(value.trim()));
+			}
+			catch (NumberFormatException e) {
+				log.warn("Ignoring invalid " + THIN_DOWNLOAD_THREADS + ": " + value);
+			}
+		}
+		return Math.max(5, 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	static String option(Properties properties, String key, String defaultValue) {
+		if (properties.containsKey(key)) {
+			return properties.getProperty(key);
+		}
+		String value = System.getProperty(key);
+		return value != null ? value : defaultValue;
+	}
+
 	private void applySettings(DefaultRepositorySystemSession session) {
 		MavenSettingsReader.applySettings(settings, session);
 	}
@@ -570,7 +1434,7 @@ public class DependencyResolver {
 		try {
 			return repo(settings, session, "cache",
 					localRepositoryPath(properties, settings).toURI().toURL().toString(),
-					true, true);
+					true, true, Collections.emptyMap(), null);
 		}
 		catch (MalformedURLException e) {
 			throw new IllegalStateException("Cannot locate local repo", e);
@@ -597,8 +1461,11 @@ public class DependencyResolver {
 		try {
 			ProjectBuildingRequest request = getProjectBuildingRequest(properties);
 			request.setResolveDependencies(false);
+			long start = System.currentTimeMillis();
 			ProjectBuildingResult result = projectBuilder
-					.build(new PropertiesModelSource(properties, resource), request);
+					.build(new PropertiesModelSource(properties, resource,
+						bomCache(properties)), request);
+			metrics.modelBuilt(System.currentTimeMillis() - start);
 			return result.getProject().getModel();
 		}
 		catch (Exception e) {
@@ -641,43 +1508,53 @@ public class DependencyResolver {
 	private List<ArtifactRequest> getArtifactRequests(List<Dependency> dependencies,
 			RepositorySystemSession session, Properties properties) {
 		List<ArtifactRequest> list = new ArrayList<>();
+		List<RemoteRepository> repositories = remoteRepositories(session, properties);
 		for (Dependency dependency : dependencies) {
 			ArtifactRequest request = new ArtifactRequest(dependency.getArtifact(), null,
 					null);
-			request.setRepositories(aetherRepositories(settings, session, properties));
+			request.setRepositories(repositories);
 			list.add(request);
 		}
 		return list;
 	}
 
-	// Package private for model resolution hack in ThinPropertiesModelProcessor
-	static Properties getGlobals() {
-		return globals;
-	}
-
+	/**
+	 * The source of the root model for a resolution, which carries the thin properties
+	 * through the model builder to {@link ThinPropertiesModelProcessor} (the builder
+	 * passes it in the read options), so each request has its own, without any global
+	 * state. It also tells the {@link CachingModelBuilder} where to keep imported BOMs.
+	 */
 	@SuppressWarnings("deprecation")
-	private static final class PropertiesModelSource
+	static final class PropertiesModelSource
 			implements org.apache.maven.model.building.ModelSource {
 
 		private final Properties properties;
 
 		private final Resource resource;
 
-		private PropertiesModelSource(Properties properties, Resource resource) {
+		private final File boms;
+
+		private PropertiesModelSource(Properties properties, Resource resource,
+				File boms) {
 			this.properties = properties;
 			this.resource = resource;
+			this.boms = boms;
+		}
+
+		Properties getProperties() {
+			return this.properties;
+		}
+
+		/**
+		 * The directory to cache imported BOMs in (or null if they are not cached).
+		 */
+		File getBoms() {
+			return this.boms;
 		}
 
 		@Override
 		public InputStream getInputStream() throws IOException {
-			DependencyResolver.globals = properties;
-			return new BufferedInputStream(resource.getInputStream()) {
-				@Override
-				public void close() throws IOException {
-					DependencyResolver.globals = null;
-					super.close();
-				}
-			};
+			return new BufferedInputStream(resource.getInputStream());
 		}
 
 		@Override
@@ -698,13 +1575,25 @@ class DependencyResolutionModule extends AbstractModule {
 		bind(ModelLocator.class).to(DefaultModelLocator.class).in(Singleton.class);
 		bind(ModelReader.class).to(DefaultModelReader.class).in(Singleton.class);
 		bind(ModelValidator.class).to(DefaultModelValidator.class).in(Singleton.class);
-		bind(RepositoryConnectorFactory.class).to(BasicRepositoryConnectorFactory.class)
-				.in(Singleton.class);
+		bind(RepositoryConnectorFactory.class)
+				.to(MissCachingRepositoryConnectorFactory.class).in(Singleton.class);
+		bind(RepositoryConnectorFactory.class).annotatedWith(Names.named("breaking"))
+				.to(CircuitBreakingRepositoryConnectorFactory.class).in(Singleton.class);
+		bind(RepositoryConnectorFactory.class).annotatedWith(Names.named("resuming"))
+				.to(ResumingRepositoryConnectorFactory.class).in(Singleton.class);
+		bind(RepositoryConnectorFactory.class).annotatedWith(Names.named("basic"))
+				.to(BasicRepositoryConnectorFactory.class).in(Singleton.class);
 		bind(ArtifactDescriptorReader.class) //
+				.to(CachingArtifactDescriptorReader.class).in(Singleton.class);
+		bind(ArtifactDescriptorReader.class).annotatedWith(Names.named("default")) //
 				.to(DefaultArtifactDescriptorReader.class).in(Singleton.class);
 		bind(VersionResolver.class) //
+				.to(CachingVersionResolver.class).in(Singleton.class);
+		bind(VersionResolver.class).annotatedWith(Names.named("default")) //
 				.to(DefaultVersionResolver.class).in(Singleton.class);
 		bind(VersionRangeResolver.class) //
+				.to(CachingVersionResolver.class).in(Singleton.class);
+		bind(VersionRangeResolver.class).annotatedWith(Names.named("default")) //
 				.to(DefaultVersionRangeResolver.class).in(Singleton.class);
 		bind(MetadataGeneratorFactory.class).annotatedWith(Names.named("snapshot")) //
 				.to(SnapshotMetadataGeneratorFactory.class).in(Singleton.class);
@@ -714,6 +1603,23 @@ class DependencyResolutionModule extends AbstractModule {
 				.to(HttpTransporterFactory.class).in(Singleton.class);
 		bind(TransporterFactory.class).annotatedWith(Names.named("file"))
 				.to(FileTransporterFactory.class).in(Singleton.class);
+		bind(TransporterFactory.class).annotatedWith(Names.named("jdk"))
+				.to(JdkHttpTransporterFactory.class).in(Singleton.class);
+	}
+
+	@Provides
+	@Singleton
+	ModelBuilder provideModelBuilder() {
+		// Assembled explicitly (not by Plexus) so it can be wrapped
+		return new CachingModelBuilder(new DefaultModelBuilderFactory() {
+			@Override
+			protected ModelProcessor newModelProcessor() {
+				ThinPropertiesModelProcessor processor = new ThinPropertiesModelProcessor();
+				processor.setModelLocator(newModelLocator());
+				processor.setModelReader(newModelReader());
+				return processor;
+			}
+		}.newInstance());
 	}
 
 	@Provides
@@ -738,12 +1644,53 @@ class DependencyResolutionModule extends AbstractModule {
 	@Singleton
 	Set<TransporterFactory> provideTransporterFactories(
 			@Named("file") TransporterFactory file,
-			@Named("http") TransporterFactory http) {
+			@Named("http") TransporterFactory http,
+			@Named("jdk") TransporterFactory jdk) {
 		// Order is decided elsewhere (by priority)
 		Set<TransporterFactory> factories = new HashSet<TransporterFactory>();
 		factories.add(file);
 		factories.add(http);
+		factories.add(jdk);
 		return Collections.unmodifiableSet(factories);
 	}
 
 }
+
+/**
+ * The components that the Plexus container would otherwise find for the static
+ * bootstrap: a project builder that does not need a container.
+ */
+class StaticBootstrapModule extends AbstractModule {
+
+	@Override
+	protected void configure() {
+		bind(ProjectBuilder.class).to(StaticProjectBuilder.class).in(Singleton.class);
+	}
+
+}
+
+class DependencyCollectionModule extends AbstractModule {
+
+	@Override
+	protected void configure() {
+		bind(DependencyCollector.class).to(ParallelDependencyCollector.class)
+				.in(Singleton.class);
+		bind(DependencyCollector.class).annotatedWith(Names.named("default")) //
+				.to(DefaultDependencyCollector.class).in(Singleton.class);
+	}
+
+}
+
+class ArtifactResolutionModule extends AbstractModule {
+
+	@Override
+	protected void configure() {
+		bind(ArtifactResolver.class).to(RoutingArtifactResolver.class)
+				.in(Singleton.class);
+		bind(ArtifactResolver.class).annotatedWith(Names.named("parallel")) //
+				.to(ParallelArtifactResolver.class).in(Singleton.class);
+		bind(ArtifactResolver.class).annotatedWith(Names.named("default")) //
+				.to(DefaultArtifactResolver.class).in(Singleton.class);
+	}
+
+}
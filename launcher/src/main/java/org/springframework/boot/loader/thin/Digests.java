@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Message digests as lower case hex strings, for cache keys and for checksums of files.
+ *
+ * @author Dave Syer
+ *
+ */
+final class Digests {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Digests() {
+	}
+
+	static String sha1(String value) {
+		return sha1(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String sha1(byte[] bytes) {
+		return hex(digest("SHA-1").digest(bytes));
+	}
+
+	static String sha1(Path path) throws IOException {
+		return digest(path, "SHA-1");
+	}
+
+	static String sha256(Path path) throws IOException {
+		return digest(path, "SHA-256");
+	}
+
+	static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	private static String digest(Path path, String algorithm) throws IOException {
+		MessageDigest digest = digest(algorithm);
+		byte[] buffer = new byte[32 * 1024];
+		try (InputStream stream = Files.newInputStream(path)) {
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, count);
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	private static MessageDigest digest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("No " + algorithm, e);
+		}
+	}
+
+}
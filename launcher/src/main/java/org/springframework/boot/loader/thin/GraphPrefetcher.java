@@ -0,0 +1,274 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositoryListener;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.util.listener.ChainedRepositoryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the artifacts (poms and jars) that were resolved for an app, keyed by a
+ * fingerprint of the app that does not change when its dependencies do, and on the next
+ * resolution for the same app starts downloading any of them that are missing from the
+ * local repository in the background, while the real resolution is running. Most of the
+ * graph is usually the same after an upgrade, so most of the downloads overlap instead
+ * of waiting for their parents to be parsed. Speculative downloads that turn out not to
+ * be needed are simply ignored (they are in the local repository for next time).
+ *
+ * @author Dave Syer
+ *
+ */
+class GraphPrefetcher {
+
+	private static final Logger log = LoggerFactory.getLogger(GraphPrefetcher.class);
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private final RepositorySystem repositorySystem;
+
+	private final File directory;
+
+	GraphPrefetcher(RepositorySystem repositorySystem, File directory) {
+		this.repositorySystem = repositorySystem;
+		this.directory = directory;
+	}
+
+	/**
+	 * Start prefetching the previous graph for the app with this fingerprint, and
+	 * record the artifacts resolved in the session (until the prefetch is closed).
+	 * @param fingerprint the app identity
+	 * @param session the session that the real resolution will use
+	 * @param background a session to download the speculative artifacts with
+	 * @param repositories the repositories to prefetch from (all of them if an artifact
+	 * was resolved locally)
+	 * @param threads the maximum number of concurrent downloads
+	 * @return a handle to record the new graph and stop prefetching
+	 */
+	Prefetch start(String fingerprint, DefaultRepositorySystemSession session,
+			RepositorySystemSession background, List<RemoteRepository> repositories,
+			int threads) {
+		File file = new File(this.directory,
+				Digests.sha1(fingerprint).substring(0, 16) + ".graph");
+		Prefetch prefetch = new Prefetch(file);
+		RepositoryListener existing = session.getRepositoryListener();
+		session.setRepositoryListener(existing == null ? prefetch
+				: new ChainedRepositoryListener(existing, prefetch));
+		List<ArtifactRequest> requests = requests(file, background, repositories);
+		if (!requests.isEmpty()) {
+			log.info("Prefetching " + requests.size() + " artifacts from previous graph");
+			prefetch.executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable,
+						"thin-prefetch-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			for (ArtifactRequest request : requests) {
+				prefetch.futures.add(prefetch.executor.submit(() -> {
+					try {
+						this.repositorySystem.resolveArtifact(background, request);
+					}
+					catch (Exception e) {
+						// Speculative, so ignore it (the real resolution will report it
+						// if it matters)
+						log.debug("Cannot prefetch: " + request.getArtifact());
+					}
+				}));
+			}
+		}
+		return prefetch;
+	}
+
+	private List<ArtifactRequest> requests(File file, RepositorySystemSession session,
+			List<RemoteRepository> repositories) {
+		List<ArtifactRequest> poms = new ArrayList<>();
+		List<ArtifactRequest> jars = new ArrayList<>();
+		if (!file.exists()) {
+			return poms;
+		}
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			log.debug("Cannot read previous graph: " + file, e);
+			return poms;
+		}
+		for (String line : lines) {
+			String[] fields = line.trim().split(" ");
+			if (fields.length == 0 || fields[0].isEmpty()) {
+				continue;
+			}
+			Artifact artifact;
+			try {
+				artifact = new DefaultArtifact(fields[0]);
+			}
+			catch (IllegalArgumentException e) {
+				continue;
+			}
+			List<RemoteRepository> remotes = repositories;
+			if (fields.length == 3) {
+				RemoteRepository repository = repository(session, repositories, fields[1],
+						fields[2]);
+				if (repository == null) {
+					continue;
+				}
+				remotes = Collections.singletonList(repository);
+			}
+			if (session.getLocalRepositoryManager()
+					.find(session, new LocalArtifactRequest(artifact, remotes, null))
+					.isAvailable()) {
+				continue;
+			}
+			ArtifactRequest request = new ArtifactRequest(artifact, remotes, null);
+			if ("pom".equals(artifact.getExtension())) {
+				poms.add(request);
+			}
+			else {
+				jars.add(request);
+			}
+		}
+		poms.addAll(jars);
+		return poms;
+	}
+
+	/**
+	 * The current repository (with its mirror, proxy and authentication) for the one an
+	 * artifact came from last time, or null if there is none (e.g. the settings have
+	 * changed), so nothing is ever fetched from a repository that the settings would not
+	 * use.
+	 */
+	private RemoteRepository repository(RepositorySystemSession session,
+			List<RemoteRepository> repositories, String id, String url) {
+		RemoteRepository repository = new RemoteRepository.Builder(id, "default", url)
+				.build();
+		if (session.getMirrorSelector() != null) {
+			RemoteRepository mirror = session.getMirrorSelector().getMirror(repository);
+			if (mirror != null) {
+				repository = mirror;
+			}
+		}
+		for (RemoteRepository remote : repositories) {
+			if (remote.getUrl().equals(repository.getUrl())) {
+				return remote;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A handle on a running prefetch, which also records the artifacts resolved by the
+	 * real resolution.
+	 */
+	static class Prefetch extends AbstractRepositoryListener {
+
+		private final File file;
+
+		private final Set<String> resolved = Collections
+				.synchronizedSet(new LinkedHashSet<>());
+
+		private final List<Future<?>> futures = new ArrayList<>();
+
+		private ExecutorService executor;
+
+		Prefetch(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public void artifactResolved(RepositoryEvent event) {
+			Artifact artifact = event.getArtifact();
+			if (event.getException() != null || artifact == null
+					|| artifact.getFile() == null || artifact.isSnapshot()) {
+				return;
+			}
+			String line = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+					+ artifact.getExtension()
+					+ (artifact.getClassifier().isEmpty() ? ""
+							: ":" + artifact.getClassifier())
+					+ ":" + artifact.getVersion();
+			if (event.getRepository() instanceof RemoteRepository) {
+				RemoteRepository repository = (RemoteRepository) event.getRepository();
+				line = line + " " + repository.getId() + " " + repository.getUrl();
+			}
+			this.resolved.add(line);
+		}
+
+		/**
+		 * Save the artifacts resolved so far as the graph for next time.
+		 */
+		void record() {
+			List<String> lines;
+			synchronized (this.resolved) {
+				lines = new ArrayList<>(this.resolved);
+			}
+			if (lines.isEmpty()) {
+				return;
+			}
+			try {
+				this.file.getParentFile().mkdirs();
+				File temp = File.createTempFile(this.file.getName(), ".tmp",
+						this.file.getParentFile());
+				Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e) {
+				log.debug("Cannot save graph: " + this.file, e);
+			}
+		}
+
+		/**
+		 * Stop any prefetching that has not started yet (downloads in progress are
+		 * allowed to finish in the background).
+		 */
+		void close() {
+			if (this.executor != null) {
+				for (Future<?> future : this.futures) {
+					future.cancel(false);
+				}
+				this.executor.shutdown();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalMetadataRegistration;
+import org.eclipse.aether.repository.LocalMetadataRequest;
+import org.eclipse.aether.repository.LocalMetadataResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * A {@link LocalRepositoryManager} that looks for artifacts in a
+ * {@link LocalRepositoryIndex} before asking the real one. The real one checks that the
+ * file exists and reads the <code>_remote.repositories</code> next to it every time, so
+ * on a slow file system (network or overlay) it dominates a warm start. With the index
+ * an artifact that is known to be available costs one call to get the file size (in
+ * case it was deleted or replaced). Anything else, and anything that is not simple
+ * (e.g. a repository manager that aggregates others), goes to the real one, and what it
+ * finds is added to the index.
+ *
+ * @author Dave Syer
+ *
+ */
+class IndexedLocalRepositoryManager implements LocalRepositoryManager {
+
+	private final LocalRepositoryManager delegate;
+
+	private final LocalRepositoryIndex index;
+
+	IndexedLocalRepositoryManager(LocalRepositoryManager delegate,
+			LocalRepositoryIndex index) {
+		this.delegate = delegate;
+		this.index = index;
+	}
+
+	LocalRepositoryIndex getIndex() {
+		return this.index;
+	}
+
+	@Override
+	public LocalRepository getRepository() {
+		return this.delegate.getRepository();
+	}
+
+	@Override
+	public String getPathForLocalArtifact(Artifact artifact) {
+		return this.delegate.getPathForLocalArtifact(artifact);
+	}
+
+	@Override
+	public String getPathForRemoteArtifact(Artifact artifact, RemoteRepository repository,
+			String context) {
+		return this.delegate.getPathForRemoteArtifact(artifact, repository, context);
+	}
+
+	@Override
+	public String getPathForLocalMetadata(Metadata metadata) {
+		return this.delegate.getPathForLocalMetadata(metadata);
+	}
+
+	@Override
+	public String getPathForRemoteMetadata(Metadata metadata, RemoteRepository repository,
+			String context) {
+		return this.delegate.getPathForRemoteMetadata(metadata, repository, context);
+	}
+
+	@Override
+	public LocalArtifactResult find(RepositorySystemSession session,
+			LocalArtifactRequest request) {
+		String path = getPathForLocalArtifact(request.getArtifact());
+		LocalRepositoryIndex.Entry entry = this.index.get(path);
+		if (entry != null) {
+			File file = new File(getRepository().getBasedir(), path);
+			if (file.length() == entry.getSize()) {
+				LocalArtifactResult result = new LocalArtifactResult(request);
+				if (entry.isLocal()) {
+					return result.setFile(file).setAvailable(true);
+				}
+				for (RemoteRepository repository : request.getRepositories()) {
+					if (!repository.isRepositoryManager()
+							&& entry.getIds().contains(repository.getId())) {
+						return result.setFile(file).setAvailable(true)
+								.setRepository(repository);
+					}
+				}
+			}
+		}
+		LocalArtifactResult result = this.delegate.find(session, request);
+		if (result.isAvailable() && result.getFile() != null) {
+			RemoteRepository repository = result.getRepository();
+			if (repository == null) {
+				this.index.add(path, result.getFile().length(), null);
+			}
+			else if (!repository.isRepositoryManager()) {
+				this.index.add(path, result.getFile().length(), repository.getId());
+			}
+		}
+		else if (entry != null) {
+			this.index.remove(path);
+		}
+		return result;
+	}
+
+	@Override
+	public void add(RepositorySystemSession session,
+			LocalArtifactRegistration request) {
+		this.delegate.add(session, request);
+		String path = getPathForLocalArtifact(request.getArtifact());
+		File file = new File(getRepository().getBasedir(), path);
+		RemoteRepository repository = request.getRepository();
+		if (repository != null && repository.isRepositoryManager()) {
+			this.index.remove(path);
+		}
+		else if (file.isFile()) {
+			this.index.add(path, file.length(),
+					repository == null ? null : repository.getId());
+		}
+	}
+
+	@Override
+	public LocalMetadataResult find(RepositorySystemSession session,
+			LocalMetadataRequest request) {
+		return this.delegate.find(session, request);
+	}
+
+	@Override
+	public void add(RepositorySystemSession session,
+			LocalMetadataRegistration request) {
+		this.delegate.add(session, request);
+	}
+
+}
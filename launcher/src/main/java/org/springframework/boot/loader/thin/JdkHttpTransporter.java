@@ -0,0 +1,559 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.AuthenticationContext;
+import org.eclipse.aether.repository.Proxy;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.AbstractTransporter;
+import org.eclipse.aether.spi.connector.transport.GetTask;
+import org.eclipse.aether.spi.connector.transport.PeekTask;
+import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.transfer.NoTransporterException;
+import org.eclipse.aether.util.ConfigUtils;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A transporter for HTTP(S) repositories using the JDK <code>HttpClient</code>. Clients
+ * (and therefore their connection pools and HTTP/2 connections) are shared by all
+ * transporters in the JVM with the same proxy settings, so connections are re-used
+ * across repositories, resolutions and sessions. XML resources (poms and metadata) are
+ * requested with gzip compression, and checksums sent by the server in response headers
+ * are passed on to the connector so it doesn't need to download them separately.
+ * Repository metadata (<code>maven-metadata.xml</code>) is cached, if there is a
+ * directory for it in the session config ({@link #METADATA}), along with the validators
+ * the server sent with it (<code>ETag</code> and <code>Last-Modified</code>), so that
+ * when the update policy says it has to be checked again an unchanged file costs a 304
+ * instead of a full download. Redirects are followed by hand, so that credentials are
+ * only ever sent to the repository's own origin (scheme, host and port). Proxy
+ * credentials are sent pre-emptively in a <code>Proxy-Authorization</code> header. The
+ * JDK client cannot do that for an HTTPS tunnel, and it refuses basic authentication for
+ * tunnels unless <code>jdk.http.auth.tunneling.disabledSchemes</code> allows it, so in
+ * that case the repository is left to the default transporter.
+ *
+ * @author Dave Syer
+ *
+ */
+class JdkHttpTransporter extends AbstractTransporter {
+
+	/**
+	 * Session config property for the directory to cache repository metadata in.
+	 */
+	static final String METADATA = "thin.cache.metadata";
+
+	private static final Pattern CONTENT_RANGE = Pattern
+			.compile("\\s*bytes\\s+([0-9]+)\\s*-\\s*([0-9]+)\\s*/\\s*([0-9]+)\\s*");
+
+	private static final Pattern ETAG_SHA1 = Pattern
+			.compile(".*\\{SHA1\\{([0-9a-fA-F]+)}}.*");
+
+	private static final int MAX_REDIRECTS = 5;
+
+	private static final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+	private final URI base;
+
+	private final HttpClient client;
+
+	private final Map<String, String> headers = new LinkedHashMap<>();
+
+	/**
+	 * The request timeout, or null if there is none.
+	 */
+	private final Duration timeout;
+
+	private final File metadata;
+
+	JdkHttpTransporter(RepositorySystemSession session, RemoteRepository repository)
+			throws NoTransporterException {
+		String url = repository.getUrl();
+		try {
+			this.base = new URI(url.endsWith("/") ? url : url + "/");
+		}
+		catch (URISyntaxException e) {
+			throw new NoTransporterException(repository, e.getMessage(), e);
+		}
+		String id = repository.getId();
+		this.headers.put("User-Agent",
+				ConfigUtils.getString(session, ConfigurationProperties.DEFAULT_USER_AGENT,
+						ConfigurationProperties.USER_AGENT));
+		Map<?, ?> configured = ConfigUtils.getMap(session, null,
+				ConfigurationProperties.HTTP_HEADERS + "." + id,
+				ConfigurationProperties.HTTP_HEADERS);
+		if (configured != null) {
+			for (Map.Entry<?, ?> entry : configured.entrySet()) {
+				if (entry.getKey() instanceof String && entry.getValue() instanceof String) {
+					this.headers.put((String) entry.getKey(), (String) entry.getValue());
+				}
+			}
+		}
+		Charset encoding = Charset.forName(ConfigUtils.getString(session,
+				ConfigurationProperties.DEFAULT_HTTP_CREDENTIAL_ENCODING,
+				ConfigurationProperties.HTTP_CREDENTIAL_ENCODING + "." + id,
+				ConfigurationProperties.HTTP_CREDENTIAL_ENCODING));
+		String[] credentials = credentials(
+				AuthenticationContext.forRepository(session, repository));
+		if (credentials != null) {
+			// Pre-emptive basic authentication (saves a round trip for every request)
+			this.headers.put("Authorization",
+					"Basic " + Base64.getEncoder().encodeToString(
+							(credentials[0] + ":" + credentials[1]).getBytes(encoding)));
+		}
+		// Zero means no timeout to Aether, but the JDK client rejects a zero duration
+		int timeout = ConfigUtils.getInteger(session,
+				ConfigurationProperties.DEFAULT_REQUEST_TIMEOUT,
+				ConfigurationProperties.REQUEST_TIMEOUT + "." + id,
+				ConfigurationProperties.REQUEST_TIMEOUT);
+		this.timeout = timeout > 0 ? Duration.ofMillis(timeout) : null;
+		int connect = ConfigUtils.getInteger(session,
+				ConfigurationProperties.DEFAULT_CONNECT_TIMEOUT,
+				ConfigurationProperties.CONNECT_TIMEOUT + "." + id,
+				ConfigurationProperties.CONNECT_TIMEOUT);
+		Proxy proxy = repository.getProxy();
+		String[] proxyCredentials = proxy == null ? null
+				: credentials(AuthenticationContext.forProxy(session, repository));
+		if (proxyCredentials != null) {
+			if ("https".equalsIgnoreCase(this.base.getScheme())
+					&& !isTunnelAuthentication()) {
+				throw new NoTransporterException(repository,
+						"The JDK HttpClient cannot send basic credentials to a proxy for "
+								+ "HTTPS (see jdk.http.auth.tunneling.disabledSchemes)");
+			}
+			this.headers.put("Proxy-Authorization",
+					"Basic " + Base64.getEncoder()
+							.encodeToString((proxyCredentials[0] + ":"
+									+ proxyCredentials[1]).getBytes(encoding)));
+		}
+		this.client = client(proxy, proxyCredentials, connect);
+		String metadata = ConfigUtils.getString(session, null, METADATA);
+		this.metadata = metadata == null ? null : new File(metadata);
+	}
+
+	private static HttpClient client(Proxy proxy, String[] credentials, int connect) {
+		String key = (proxy == null ? "direct" : proxy.getHost() + ":" + proxy.getPort())
+				+ (credentials == null ? ""
+						: ":" + credentials[0] + ":" + credentials[1].hashCode())
+				+ ":" + connect;
+		return clients.computeIfAbsent(key, k -> {
+			HttpClient.Builder builder = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_2)
+					.followRedirects(HttpClient.Redirect.NEVER);
+			if (connect > 0) {
+				builder.connectTimeout(Duration.ofMillis(connect));
+			}
+			if (proxy != null) {
+				builder.proxy(ProxySelector
+						.of(new InetSocketAddress(proxy.getHost(), proxy.getPort())));
+				if (credentials != null) {
+					// Only used for an HTTPS tunnel (otherwise the header is sent)
+					builder.authenticator(new Authenticator() {
+						@Override
+						protected PasswordAuthentication getPasswordAuthentication() {
+							if (getRequestorType() != RequestorType.PROXY) {
+								return null;
+							}
+							return new PasswordAuthentication(credentials[0],
+									credentials[1].toCharArray());
+						}
+					});
+				}
+			}
+			return builder.build();
+		});
+	}
+
+	/**
+	 * Whether the JDK client will send basic credentials to a proxy when it opens a
+	 * tunnel for HTTPS (by default it will not).
+	 */
+	static boolean isTunnelAuthentication() {
+		String disabled = System.getProperty("jdk.http.auth.tunneling.disabledSchemes",
+				"Basic");
+		for (String scheme : disabled.split(",")) {
+			if ("Basic".equalsIgnoreCase(scheme.trim())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] credentials(AuthenticationContext context) {
+		if (context == null) {
+			return null;
+		}
+		try {
+			String username = context.get(AuthenticationContext.USERNAME);
+			if (username == null) {
+				return null;
+			}
+			String password = context.get(AuthenticationContext.PASSWORD);
+			return new String[] { username, password == null ? "" : password };
+		}
+		finally {
+			AuthenticationContext.close(context);
+		}
+	}
+
+	@Override
+	public int classify(Throwable error) {
+		if (error instanceof HttpStatusException
+				&& ((HttpStatusException) error).getStatus() == 404) {
+			return ERROR_NOT_FOUND;
+		}
+		return ERROR_OTHER;
+	}
+
+	@Override
+	protected void implPeek(PeekTask task) throws Exception {
+		HttpRequest request = request(task.getLocation())
+				.method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+		HttpResponse<Void> response = send(request, BodyHandlers.discarding());
+		check(response);
+	}
+
+	@Override
+	protected void implGet(GetTask task) throws Exception {
+		String path = task.getLocation().getPath();
+		if (this.metadata != null && path.endsWith("maven-metadata.xml")) {
+			revalidate(task);
+			return;
+		}
+		boolean resume = task.getResumeOffset() > 0 && task.getDataFile() != null;
+		HttpResponse<InputStream> response = send(get(task, resume).build(),
+				BodyHandlers.ofInputStream());
+		if (resume && response.statusCode() == 412) {
+			// Changed since the partial file was written, so start again
+			response.body().close();
+			resume = false;
+			response = send(get(task, resume).build(), BodyHandlers.ofInputStream());
+		}
+		InputStream body = response.body();
+		long length;
+		try {
+			check(response);
+			length = response.headers().firstValueAsLong("Content-Length")
+					.orElse(-1L);
+			String range = response.headers().firstValue("Content-Range").orElse(null);
+			if (resume && response.statusCode() == 206 && range != null) {
+				Matcher matcher = CONTENT_RANGE.matcher(range);
+				if (!matcher.matches()
+						|| Long.parseLong(matcher.group(1)) != task.getResumeOffset()) {
+					throw new IOException("Invalid Content-Range header for " + path
+							+ ": " + range);
+				}
+				length = Long.parseLong(matcher.group(3));
+			}
+			else {
+				resume = false;
+			}
+			checksums(task, response);
+			if ("gzip".equalsIgnoreCase(
+					response.headers().firstValue("Content-Encoding").orElse(""))) {
+				body = new GZIPInputStream(body);
+				length = -1;
+			}
+		}
+		catch (Exception e) {
+			body.close();
+			throw e;
+		}
+		utilGet(task, body, true, length, resume);
+	}
+
+	/**
+	 * Download repository metadata, or if there is a cached copy, only if it has changed
+	 * since the cached copy was downloaded.
+	 */
+	private void revalidate(GetTask task) throws Exception {
+		URI uri = this.base.resolve(task.getLocation());
+		String key = DigestUtils
+				.md5DigestAsHex(uri.toString().getBytes(StandardCharsets.UTF_8));
+		File data = new File(this.metadata, key + ".xml");
+		File validators = new File(this.metadata, key + ".properties");
+		Properties cached = new Properties();
+		if (data.exists() && validators.exists()) {
+			try (InputStream stream = new FileInputStream(validators)) {
+				cached.load(stream);
+			}
+			catch (IOException e) {
+				cached.clear();
+			}
+		}
+		HttpRequest.Builder builder = get(task, false);
+		if (cached.containsKey("etag")) {
+			builder.header("If-None-Match", cached.getProperty("etag"));
+		}
+		if (cached.containsKey("modified")) {
+			builder.header("If-Modified-Since", cached.getProperty("modified"));
+		}
+		HttpResponse<InputStream> response = send(builder.build(),
+				BodyHandlers.ofInputStream());
+		InputStream body = response.body();
+		if (response.statusCode() == 304 && !cached.isEmpty()) {
+			body.close();
+			if (cached.containsKey("sha1")) {
+				task.setChecksum("SHA-1", cached.getProperty("sha1"));
+			}
+			utilGet(task, new FileInputStream(data), true, data.length(), false);
+			return;
+		}
+		byte[] bytes;
+		try {
+			check(response);
+			checksums(task, response);
+			if ("gzip".equalsIgnoreCase(
+					response.headers().firstValue("Content-Encoding").orElse(""))) {
+				body = new GZIPInputStream(body);
+			}
+			bytes = StreamUtils.copyToByteArray(body);
+		}
+		finally {
+			body.close();
+		}
+		Properties values = new Properties();
+		response.headers().firstValue("ETag")
+				.ifPresent(value -> values.setProperty("etag", value));
+		response.headers().firstValue("Last-Modified")
+				.ifPresent(value -> values.setProperty("modified", value));
+		response.headers().firstValue("X-Checksum-Sha1")
+				.ifPresent(value -> values.setProperty("sha1", value));
+		if (values.containsKey("etag") || values.containsKey("modified")) {
+			store(data, validators, bytes, values);
+		}
+		utilGet(task, new ByteArrayInputStream(bytes), true, bytes.length, false);
+	}
+
+	private void store(File data, File validators, byte[] bytes, Properties values) {
+		try {
+			data.getParentFile().mkdirs();
+			// Write to temporary files and move them, so concurrent readers never see
+			// half a file, and the validators last, so they never belong to old data
+			Files.deleteIfExists(validators.toPath());
+			File temp = File.createTempFile(data.getName(), ".tmp", data.getParentFile());
+			Files.write(temp.toPath(), bytes);
+			Files.move(temp.toPath(), data.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			temp = File.createTempFile(validators.getName(), ".tmp",
+					validators.getParentFile());
+			try (OutputStream stream = new FileOutputStream(temp)) {
+				values.store(stream, null);
+			}
+			Files.move(temp.toPath(), validators.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			// Only a cache, so just check again next time
+		}
+	}
+
+	private HttpRequest.Builder get(GetTask task, boolean resume) {
+		HttpRequest.Builder builder = request(task.getLocation()).GET();
+		String path = task.getLocation().getPath();
+		if (path.endsWith(".pom") || path.endsWith(".xml")) {
+			builder.header("Accept-Encoding", "gzip");
+		}
+		if (resume) {
+			builder.header("Range", "bytes=" + task.getResumeOffset() + "-");
+			// Only if the remote file has not changed since the partial file was written
+			builder.header("If-Unmodified-Since",
+					DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant
+							.ofEpochMilli(task.getDataFile().lastModified())
+							.atZone(ZoneOffset.UTC)));
+		}
+		return builder;
+	}
+
+	@Override
+	protected void implPut(PutTask task) throws Exception {
+		byte[] bytes;
+		try (InputStream stream = task.newInputStream()) {
+			bytes = StreamUtils.copyToByteArray(stream);
+		}
+		task.getListener().transportStarted(0, bytes.length);
+		HttpRequest request = request(task.getLocation())
+				.PUT(HttpRequest.BodyPublishers.ofByteArray(bytes)).build();
+		HttpResponse<Void> response = this.client.send(request,
+				BodyHandlers.discarding());
+		check(response);
+		task.getListener().transportProgressed(ByteBuffer.wrap(bytes));
+	}
+
+	@Override
+	protected void implClose() {
+		// The client is shared, so its connections stay open for re-use
+	}
+
+	/**
+	 * Send a request (GET or HEAD) and follow redirects, dropping the credentials if a
+	 * redirect leaves the origin of the repository.
+	 */
+	private <T> HttpResponse<T> send(HttpRequest request,
+			HttpResponse.BodyHandler<T> handler)
+			throws IOException, InterruptedException {
+		HttpResponse<T> response = this.client.send(request, handler);
+		for (int i = 0; i < MAX_REDIRECTS && isRedirect(response.statusCode()); i++) {
+			String location = response.headers().firstValue("Location").orElse(null);
+			if (location == null) {
+				break;
+			}
+			if (response.body() instanceof InputStream) {
+				((InputStream) response.body()).close();
+			}
+			URI target = request.uri().resolve(location);
+			HttpRequest.Builder builder = timeout(HttpRequest.newBuilder(target))
+					.method(request.method(), HttpRequest.BodyPublishers.noBody());
+			boolean origin = isSameOrigin(target, this.base);
+			for (Map.Entry<String, List<String>> header : request.headers()
+					.map().entrySet()) {
+				if (!origin && "Authorization".equalsIgnoreCase(header.getKey())) {
+					continue;
+				}
+				for (String value : header.getValue()) {
+					try {
+						builder.header(header.getKey(), value);
+					}
+					catch (IllegalArgumentException e) {
+						// Restricted header that the client manages
+					}
+				}
+			}
+			request = builder.build();
+			response = this.client.send(request, handler);
+		}
+		return response;
+	}
+
+	private static boolean isRedirect(int status) {
+		return status == 301 || status == 302 || status == 303 || status == 307
+				|| status == 308;
+	}
+
+	private static boolean isSameOrigin(URI target, URI base) {
+		return target.getScheme() != null
+				&& target.getScheme().equalsIgnoreCase(base.getScheme())
+				&& target.getHost() != null
+				&& target.getHost().equalsIgnoreCase(base.getHost())
+				&& port(target) == port(base);
+	}
+
+	private static int port(URI uri) {
+		if (uri.getPort() >= 0) {
+			return uri.getPort();
+		}
+		return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+	}
+
+	private HttpRequest.Builder request(URI location) {
+		HttpRequest.Builder builder = timeout(
+				HttpRequest.newBuilder(this.base.resolve(location)));
+		for (Map.Entry<String, String> header : this.headers.entrySet()) {
+			try {
+				builder.header(header.getKey(), header.getValue());
+			}
+			catch (IllegalArgumentException e) {
+				// Restricted header (e.g. Host or Connection) that the client manages
+			}
+		}
+		return builder;
+	}
+
+	private HttpRequest.Builder timeout(HttpRequest.Builder builder) {
+		return this.timeout == null ? builder : builder.timeout(this.timeout);
+	}
+
+	private void check(HttpResponse<?> response) throws HttpStatusException {
+		if (response.statusCode() >= 300) {
+			throw new HttpStatusException(response.statusCode(), response.uri());
+		}
+	}
+
+	private void checksums(GetTask task, HttpResponse<?> response) {
+		String sha1 = response.headers().firstValue("X-Checksum-Sha1").orElse(null);
+		if (sha1 == null) {
+			String etag = response.headers().firstValue("ETag").orElse("");
+			Matcher matcher = ETAG_SHA1.matcher(etag);
+			if (matcher.matches()) {
+				sha1 = matcher.group(1);
+			}
+		}
+		if (sha1 != null) {
+			task.setChecksum("SHA-1", sha1);
+		}
+		String md5 = response.headers().firstValue("X-Checksum-Md5").orElse(null);
+		if (md5 != null) {
+			task.setChecksum("MD5", md5);
+		}
+	}
+
+	/**
+	 * An HTTP response that was not successful (for the connector to classify).
+	 */
+	static class HttpStatusException extends IOException {
+
+		private final int status;
+
+		HttpStatusException(int status, URI uri) {
+			super("HTTP status " + status + " for " + uri);
+			this.status = status;
+		}
+
+		int getStatus() {
+			return this.status;
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.NoTransporterException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * A {@link TransporterFactory} for HTTP(S) repositories using the JDK
+ * <code>HttpClient</code> (Java 11 and above). It only accepts a repository if the
+ * session config property {@link #TRANSPORT} is "jdk", otherwise (or on older JVMs) the
+ * default HTTP transporter is used.
+ *
+ * @author Dave Syer
+ *
+ */
+class JdkHttpTransporterFactory implements TransporterFactory {
+
+	/**
+	 * Session config property for the HTTP transport to use ("jdk" or "default").
+	 */
+	static final String TRANSPORT = "thin.transport";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(JdkHttpTransporterFactory.class);
+
+	private static final boolean AVAILABLE = ClassUtils.isPresent(
+			"java.net.http.HttpClient", JdkHttpTransporterFactory.class.getClassLoader());
+
+	private static boolean warned;
+
+	@Override
+	public Transporter newInstance(RepositorySystemSession session,
+			RemoteRepository repository) throws NoTransporterException {
+		if (!"jdk".equals(ConfigUtils.getString(session, "default", TRANSPORT))) {
+			throw new NoTransporterException(repository);
+		}
+		if (!AVAILABLE) {
+			if (!warned) {
+				warned = true;
+				log.warn("The jdk transport needs Java 11 or better, using the default");
+			}
+			throw new NoTransporterException(repository);
+		}
+		String protocol = repository.getProtocol();
+		if (!"http".equalsIgnoreCase(protocol) && !"https".equalsIgnoreCase(protocol)) {
+			throw new NoTransporterException(repository);
+		}
+		try {
+			return new JdkHttpTransporter(session, repository);
+		}
+		catch (NoTransporterException e) {
+			// e.g. an HTTPS repository behind a proxy that needs credentials
+			log.warn(e.getMessage() + ", using the default transport");
+			throw e;
+		}
+	}
+
+	@Override
+	public float getPriority() {
+		// Higher than the default HTTP transporter, so it wins if it is switched on
+		return 10.0f;
+	}
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the artifacts that are available in a local repository, with their sizes
+ * and the ids of the remote repositories they came from (what the enhanced local
+ * repository manager keeps in a <code>_remote.repositories</code> file in each
+ * directory). The index is a single binary file in the local repository, with a table
+ * of path hashes sorted for binary search, and it is memory-mapped, so looking up an
+ * artifact does not need to read anything else. Changes are kept in memory until
+ * {@link #save()}, which merges them with the file on disk (another process might have
+ * changed it) and replaces it atomically. On Windows a mapped file cannot be replaced
+ * (and there is no way to unmap it), so there the index is read into memory instead.
+ *
+ * @author Dave Syer
+ *
+ */
+class LocalRepositoryIndex {
+
+	static final String FILE_NAME = ".thin-index";
+
+	private static final Logger log = LoggerFactory.getLogger(LocalRepositoryIndex.class);
+
+	private static final int MAGIC = 0x74686978;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER = 12;
+
+	private static final int SLOT = 12;
+
+	private static final boolean MAPPED = !System.getProperty("os.name", "")
+			.toLowerCase().startsWith("windows");
+
+	private static final Entry REMOVED = new Entry(-1, false,
+			Collections.<String>emptySet());
+
+	private final File repository;
+
+	private final File file;
+
+	private final Map<String, Entry> changes = new ConcurrentHashMap<>();
+
+	private volatile ByteBuffer buffer;
+
+	LocalRepositoryIndex(File repository) {
+		this.repository = repository.getAbsoluteFile();
+		this.file = new File(this.repository, FILE_NAME);
+		this.buffer = load(this.file, MAPPED);
+	}
+
+	/**
+	 * The entry for a path (relative to the local repository), or null if there isn't
+	 * one.
+	 */
+	Entry get(String path) {
+		Entry entry = this.changes.get(path);
+		if (entry != null) {
+			return entry == REMOVED ? null : entry;
+		}
+		ByteBuffer buffer = this.buffer;
+		if (buffer == null) {
+			return null;
+		}
+		try {
+			return find(buffer, path);
+		}
+		catch (RuntimeException e) {
+			log.debug("Cannot read index: " + this.file, e);
+			this.buffer = null;
+			return null;
+		}
+	}
+
+	/**
+	 * Record that the file at a path is available, either from a remote repository (with
+	 * the id given) or because it was installed locally (if the id is null).
+	 */
+	void add(String path, long size, String id) {
+		Entry existing = get(path);
+		Set<String> ids = new LinkedHashSet<>();
+		boolean local = id == null;
+		if (existing != null && existing.size == size) {
+			if (existing.local || id != null && existing.ids.contains(id)) {
+				return;
+			}
+			ids.addAll(existing.ids);
+		}
+		if (id != null) {
+			ids.add(id);
+		}
+		this.changes.put(path, new Entry(size, local, ids));
+	}
+
+	void remove(String path) {
+		if (get(path) != null) {
+			this.changes.put(path, REMOVED);
+		}
+	}
+
+	/**
+	 * Merge the changes into the file on disk, if there are any.
+	 */
+	synchronized void save() {
+		if (this.changes.isEmpty()) {
+			return;
+		}
+		Map<String, Entry> changes = new HashMap<>(this.changes);
+		// Read once, and not mapped, so nothing holds on to the file when it is replaced
+		Map<String, Entry> entries = read(load(this.file, false));
+		for (Map.Entry<String, Entry> change : changes.entrySet()) {
+			if (change.getValue() == REMOVED) {
+				entries.remove(change.getKey());
+			}
+			else {
+				entries.put(change.getKey(), change.getValue());
+			}
+		}
+		try {
+			this.repository.mkdirs();
+			File temp = File.createTempFile(FILE_NAME, ".tmp", this.repository);
+			write(temp, entries);
+			try {
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Cannot save index: " + this.file + " (" + e + ")");
+			return;
+		}
+		this.buffer = load(this.file, MAPPED);
+		for (Map.Entry<String, Entry> change : changes.entrySet()) {
+			this.changes.remove(change.getKey(), change.getValue());
+		}
+	}
+
+	static ByteBuffer load(File file, boolean mapped) {
+		if (!file.isFile() || file.length() < HEADER) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			ByteBuffer buffer;
+			if (mapped) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			else {
+				buffer = ByteBuffer.allocate((int) channel.size());
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0) {
+						break;
+					}
+				}
+				buffer.flip();
+			}
+			if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != VERSION) {
+				return null;
+			}
+			return buffer;
+		}
+		catch (IOException e) {
+			log.debug("Cannot read index: " + file, e);
+			return null;
+		}
+	}
+
+	private static Entry find(ByteBuffer buffer, String path) {
+		byte[] key = path.getBytes(StandardCharsets.UTF_8);
+		long hash = hash(key);
+		int count = buffer.getInt(8);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long value = buffer.getLong(HEADER + middle * SLOT);
+			if (value < hash) {
+				low = middle + 1;
+			}
+			else if (value > hash) {
+				high = middle - 1;
+			}
+			else {
+				// Scan back to the first slot with the same hash, then forward
+				while (middle > 0
+						&& buffer.getLong(HEADER + (middle - 1) * SLOT) == hash) {
+					middle--;
+				}
+				for (int i = middle; i < count
+						&& buffer.getLong(HEADER + i * SLOT) == hash; i++) {
+					int offset = buffer.getInt(HEADER + i * SLOT + 8);
+					if (matches(buffer, offset, key)) {
+						return entry(buffer, offset + 2 + key.length);
+					}
+				}
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private static boolean matches(ByteBuffer buffer, int offset, byte[] key) {
+		if ((buffer.getShort(offset) & 0xffff) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (buffer.get(offset + 2 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Entry entry(ByteBuffer buffer, int offset) {
+		long size = buffer.getLong(offset);
+		boolean local = buffer.get(offset + 8) != 0;
+		int count = buffer.getShort(offset + 9) & 0xffff;
+		Set<String> ids = new LinkedHashSet<>();
+		int position = offset + 11;
+		for (int i = 0; i < count; i++) {
+			String id = string(buffer, position);
+			position += 2 + (buffer.getShort(position) & 0xffff);
+			ids.add(id);
+		}
+		return new Entry(size, local, ids);
+	}
+
+	private static String string(ByteBuffer buffer, int offset) {
+		byte[] bytes = new byte[buffer.getShort(offset) & 0xffff];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Map<String, Entry> read(ByteBuffer buffer) {
+		Map<String, Entry> entries = new HashMap<>();
+		if (buffer == null) {
+			return entries;
+		}
+		try {
+			int count = buffer.getInt(8);
+			for (int i = 0; i < count; i++) {
+				int offset = buffer.getInt(HEADER + i * SLOT + 8);
+				String path = string(buffer, offset);
+				entries.put(path, entry(buffer,
+						offset + 2 + (buffer.getShort(offset) & 0xffff)));
+			}
+		}
+		catch (RuntimeException e) {
+			log.debug("Cannot read index", e);
+			entries.clear();
+		}
+		return entries;
+	}
+
+	private static void write(File file, Map<String, Entry> entries) throws IOException {
+		List<Slot> slots = new ArrayList<>();
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(data);
+		int base = HEADER + entries.size() * SLOT;
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			slots.add(new Slot(hash(key), base + output.size()));
+			write(output, key);
+			output.writeLong(entry.getValue().size);
+			output.writeByte(entry.getValue().local ? 1 : 0);
+			output.writeShort(entry.getValue().ids.size());
+			for (String id : entry.getValue().ids) {
+				write(output, id.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		Slot[] sorted = slots.toArray(new Slot[0]);
+		Arrays.sort(sorted, (one, two) -> Long.compare(one.hash, two.hash));
+		try (DataOutputStream stream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			stream.writeInt(MAGIC);
+			stream.writeInt(VERSION);
+			stream.writeInt(sorted.length);
+			for (Slot slot : sorted) {
+				stream.writeLong(slot.hash);
+				stream.writeInt(slot.offset);
+			}
+			data.writeTo(stream);
+		}
+	}
+
+	private static void write(DataOutputStream output, byte[] bytes) throws IOException {
+		output.writeShort(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * 64-bit FNV-1a.
+	 */
+	private static long hash(byte[] bytes) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : bytes) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static class Slot {
+
+		private final long hash;
+
+		private final int offset;
+
+		Slot(long hash, int offset) {
+			this.hash = hash;
+			this.offset = offset;
+		}
+
+	}
+
+	static class Entry {
+
+		private final long size;
+
+		private final boolean local;
+
+		private final Set<String> ids;
+
+		Entry(long size, boolean local, Set<String> ids) {
+			this.size = size;
+			this.local = local;
+			this.ids = ids;
+		}
+
+		long getSize() {
+			return this.size;
+		}
+
+		/**
+		 * True if the file was installed locally (so it is available whatever repository
+		 * is asking).
+		 */
+		boolean isLocal() {
+			return this.local;
+		}
+
+		Set<String> getIds() {
+			return this.ids;
+		}
+
+	}
+
+}
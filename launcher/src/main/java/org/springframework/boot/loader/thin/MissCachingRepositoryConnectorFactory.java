@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+import org.eclipse.aether.spi.connector.MetadataUpload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.NoRepositoryConnectorException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RepositoryConnectorFactory} that remembers which release artifacts a remote
+ * repository does not have, in a file per repository on disk, so that the next time
+ * they are needed (in this or another process) the repository is not asked again until
+ * the entry expires. Typical misses are releases looked up in a snapshot repository
+ * that comes first in the list, or optional artifacts that do not exist anywhere. The
+ * cache is switched on by a session config property with the directory name
+ * ({@link #DIRECTORY}), and can be bypassed (but is still updated) with
+ * {@link #REFRESH}.
+ *
+ * @author Dave Syer
+ *
+ */
+class MissCachingRepositoryConnectorFactory implements RepositoryConnectorFactory {
+
+	/**
+	 * Session config property for the directory to keep misses in.
+	 */
+	static final String DIRECTORY = "thin.cache.misses.directory";
+
+	/**
+	 * Session config property for the time (in milliseconds) to remember a miss for.
+	 */
+	static final String TTL = "thin.cache.misses.ttl";
+
+	/**
+	 * Session config property to ignore cached misses (and ask the repository again).
+	 */
+	static final String REFRESH = "thin.cache.misses.refresh";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(MissCachingRepositoryConnectorFactory.class);
+
+	private final RepositoryConnectorFactory delegate;
+
+	private final Map<File, Misses> misses = new ConcurrentHashMap<>();
+
+	@Inject
+	MissCachingRepositoryConnectorFactory(
+			@Named("breaking") RepositoryConnectorFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public RepositoryConnector newInstance(RepositorySystemSession session,
+			RemoteRepository repository) throws NoRepositoryConnectorException {
+		RepositoryConnector connector = this.delegate.newInstance(session, repository);
+		String directory = ConfigUtils.getString(session, null, DIRECTORY);
+		long ttl = ConfigUtils.getLong(session, 0L, TTL);
+		if (directory == null || ttl <= 0 || !isRemote(repository)) {
+			// Local (file) repositories are cheap to ask and change when you install
+			return connector;
+		}
+		File file = new File(directory, repository.getId() + "-"
+				+ Digests.sha1(repository.getUrl()).substring(0, 8) + ".misses");
+		Misses misses = this.misses.computeIfAbsent(file, key -> new Misses(key, ttl));
+		return new MissCachingRepositoryConnector(connector, repository, misses, ttl,
+				ConfigUtils.getBoolean(session, false, REFRESH));
+	}
+
+	@Override
+	public float getPriority() {
+		return this.delegate.getPriority();
+	}
+
+	private static boolean isRemote(RemoteRepository repository) {
+		String protocol = repository.getProtocol();
+		return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+	}
+
+	private static class MissCachingRepositoryConnector implements RepositoryConnector {
+
+		private final RepositoryConnector delegate;
+
+		private final RemoteRepository repository;
+
+		private final Misses misses;
+
+		private final long ttl;
+
+		private final boolean refresh;
+
+		MissCachingRepositoryConnector(RepositoryConnector delegate,
+				RemoteRepository repository, Misses misses, long ttl, boolean refresh) {
+			this.delegate = delegate;
+			this.repository = repository;
+			this.misses = misses;
+			this.ttl = ttl;
+			this.refresh = refresh;
+		}
+
+		@Override
+		public void get(Collection<? extends ArtifactDownload> artifactDownloads,
+				Collection<? extends MetadataDownload> metadataDownloads) {
+			if (artifactDownloads == null || artifactDownloads.isEmpty()) {
+				this.delegate.get(artifactDownloads, metadataDownloads);
+				return;
+			}
+			List<ArtifactDownload> remaining = new ArrayList<>();
+			for (ArtifactDownload download : artifactDownloads) {
+				Artifact artifact = download.getArtifact();
+				if (!this.refresh && !artifact.isSnapshot()
+						&& this.misses.contains(artifact.toString(), this.ttl)) {
+					download.setException(new ArtifactNotFoundException(artifact,
+							this.repository, "Could not find artifact " + artifact
+									+ " in " + this.repository.getId()
+									+ " (cached miss)"));
+					continue;
+				}
+				remaining.add(download);
+			}
+			if (remaining.isEmpty()
+					&& (metadataDownloads == null || metadataDownloads.isEmpty())) {
+				return;
+			}
+			this.delegate.get(remaining, metadataDownloads);
+			for (ArtifactDownload download : remaining) {
+				Artifact artifact = download.getArtifact();
+				if (artifact.isSnapshot()) {
+					continue;
+				}
+				if (download.getException() instanceof ArtifactNotFoundException) {
+					this.misses.add(artifact.toString());
+				}
+				else if (download.getException() == null) {
+					this.misses.remove(artifact.toString());
+				}
+			}
+		}
+
+		@Override
+		public void put(Collection<? extends ArtifactUpload> artifactUploads,
+				Collection<? extends MetadataUpload> metadataUploads) {
+			this.delegate.put(artifactUploads, metadataUploads);
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+
+	}
+
+	/**
+	 * The misses for one repository, backed by an append-only file with the coordinates
+	 * and timestamp of a miss on each line (a zero timestamp removes an entry).
+	 */
+	private static class Misses {
+
+		private final File file;
+
+		private final Map<String, Long> entries = new ConcurrentHashMap<>();
+
+		Misses(File file, long ttl) {
+			this.file = file;
+			load(ttl);
+		}
+
+		boolean contains(String coordinates, long ttl) {
+			Long time = this.entries.get(coordinates);
+			return time != null && System.currentTimeMillis() - time < ttl;
+		}
+
+		void add(String coordinates) {
+			long now = System.currentTimeMillis();
+			this.entries.put(coordinates, now);
+			append(coordinates, now);
+		}
+
+		void remove(String coordinates) {
+			if (this.entries.remove(coordinates) != null) {
+				append(coordinates, 0L);
+			}
+		}
+
+		private synchronized void append(String coordinates, long time) {
+			this.file.getParentFile().mkdirs();
+			try (OutputStream output = new FileOutputStream(this.file, true)) {
+				output.write((coordinates + " " + time + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+			catch (IOException e) {
+				log.debug("Cannot save miss: " + this.file, e);
+			}
+		}
+
+		private void load(long ttl) {
+			if (!this.file.exists()) {
+				return;
+			}
+			List<String> lines;
+			try {
+				lines = Files.readAllLines(this.file.toPath(), StandardCharsets.UTF_8);
+			}
+			catch (IOException e) {
+				log.debug("Cannot read misses: " + this.file, e);
+				return;
+			}
+			long now = System.currentTimeMillis();
+			for (String line : lines) {
+				int space = line.lastIndexOf(' ');
+				if (space < 0) {
+					continue;
+				}
+				String coordinates = line.substring(0, space);
+				long time;
+				try {
+					time = Long.parseLong(line.substring(space + 1).trim());
+				}
+				catch (NumberFormatException e) {
+					continue;
+				}
+				if (now - time < ttl) {
+					this.entries.put(coordinates, time);
+				}
+				else {
+					this.entries.remove(coordinates);
+				}
+			}
+			if (this.entries.size() < lines.size()) {
+				compact();
+			}
+		}
+
+		private synchronized void compact() {
+			List<String> lines = new ArrayList<>();
+			for (Map.Entry<String, Long> entry : this.entries.entrySet()) {
+				lines.add(entry.getKey() + " " + entry.getValue());
+			}
+			Collections.sort(lines);
+			try {
+				File temp = File.createTempFile(this.file.getName(), ".tmp",
+						this.file.getParentFile());
+				Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e) {
+				log.debug("Cannot compact misses: " + this.file, e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.impl.RepositoryConnectorProvider;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.transfer.NoRepositoryConnectorException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ArtifactResolver} that, instead of trying the remote repositories for a
+ * release artifact one at a time in order, asks all of them whether they have it at the
+ * same time, and then resolves it from the first one that answers yes (the other
+ * lookups are cancelled). A miss in one repository (e.g. a snapshot repository that
+ * comes before Maven Central) then costs nothing. Repositories that do not allow
+ * releases are not asked, snapshots are resolved as normal, and so is anything that no
+ * repository has (so the errors are the same). The lookups for one call share a
+ * connector per repository, which is closed when the call is done. They are switched on
+ * by a session config property ({@link #PARALLEL}).
+ *
+ * @author Dave Syer
+ *
+ */
+class ParallelArtifactResolver implements ArtifactResolver {
+
+	/**
+	 * Session config property to switch on parallel lookups.
+	 */
+	static final String PARALLEL = "thin.lookup.parallel";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(ParallelArtifactResolver.class);
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private final ArtifactResolver delegate;
+
+	private final RepositoryConnectorProvider connectors;
+
+	@Inject
+	ParallelArtifactResolver(@Named("default") ArtifactResolver delegate,
+			RepositoryConnectorProvider connectors) {
+		this.delegate = delegate;
+		this.connectors = connectors;
+	}
+
+	@Override
+	public ArtifactResult resolveArtifact(RepositorySystemSession session,
+			ArtifactRequest request) throws ArtifactResolutionException {
+		return this.delegate.resolveArtifact(session,
+				narrow(session, Collections.singletonList(request)).get(0));
+	}
+
+	@Override
+	public List<ArtifactResult> resolveArtifacts(RepositorySystemSession session,
+			Collection<? extends ArtifactRequest> requests)
+			throws ArtifactResolutionException {
+		return this.delegate.resolveArtifacts(session, narrow(session, requests));
+	}
+
+	private List<ArtifactRequest> narrow(RepositorySystemSession session,
+			Collection<? extends ArtifactRequest> requests) {
+		List<ArtifactRequest> result = new ArrayList<>(requests);
+		if (!ConfigUtils.getBoolean(session, false, PARALLEL) || session.isOffline()) {
+			return result;
+		}
+		List<Race> races = new ArrayList<>();
+		for (int i = 0; i < result.size(); i++) {
+			Race race = race(session, i, result.get(i));
+			if (race != null) {
+				races.add(race);
+			}
+		}
+		if (races.isEmpty()) {
+			return result;
+		}
+		int threads = ConfigUtils.getInteger(session, 5,
+				"aether.connector.basic.threads");
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable,
+					"thin-lookup-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		Connectors connectors = new Connectors();
+		try {
+			for (Race race : races) {
+				race.start(session, executor, connectors);
+			}
+			for (Race race : races) {
+				RemoteRepository winner;
+				try {
+					winner = race.winner.get();
+				}
+				catch (Exception e) {
+					winner = null;
+				}
+				if (winner != null) {
+					ArtifactRequest original = race.request;
+					ArtifactRequest request = new ArtifactRequest(original.getArtifact(),
+							Collections.singletonList(winner),
+							original.getRequestContext());
+					request.setDependencyNode(original.getDependencyNode());
+					request.setTrace(original.getTrace());
+					result.set(race.index, request);
+					if (log.isDebugEnabled()) {
+						log.debug("Found " + original.getArtifact() + " in "
+								+ winner.getId());
+					}
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			connectors.close();
+		}
+		return result;
+	}
+
+	private Race race(RepositorySystemSession session, int index,
+			ArtifactRequest request) {
+		Artifact artifact = request.getArtifact();
+		if (artifact.isSnapshot() || request.getRepositories().size() < 2) {
+			return null;
+		}
+		List<RemoteRepository> candidates = new ArrayList<>();
+		for (RemoteRepository repository : request.getRepositories()) {
+			if (repository.getPolicy(false).isEnabled()) {
+				candidates.add(repository);
+			}
+		}
+		if (candidates.size() < 2) {
+			return null;
+		}
+		if (session.getLocalRepositoryManager()
+				.find(session, new LocalArtifactRequest(artifact,
+						request.getRepositories(), request.getRequestContext()))
+				.isAvailable()) {
+			return null;
+		}
+		return new Race(index, request, candidates);
+	}
+
+	private boolean exists(RepositorySystemSession session, RemoteRepository repository,
+			ArtifactRequest request, Connectors connectors) {
+		try {
+			RepositoryConnector connector = connectors.get(session, repository);
+			ArtifactDownload download = new ArtifactDownload(request.getArtifact(),
+					request.getRequestContext(), null, null);
+			download.setExistenceCheck(true);
+			download.setTrace(request.getTrace());
+			connector.get(Collections.singletonList(download), null);
+			return download.getException() == null;
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The connectors for the lookups of one call, one per repository.
+	 */
+	private class Connectors {
+
+		private final Map<RemoteRepository, RepositoryConnector> open = new HashMap<>();
+
+		private boolean closed;
+
+		synchronized RepositoryConnector get(RepositorySystemSession session,
+				RemoteRepository repository) throws NoRepositoryConnectorException {
+			if (this.closed) {
+				// A lookup that lost the race and was still running
+				throw new IllegalStateException("Lookups are finished");
+			}
+			RepositoryConnector connector = this.open.get(repository);
+			if (connector == null) {
+				connector = ParallelArtifactResolver.this.connectors
+						.newRepositoryConnector(session, repository);
+				this.open.put(repository, connector);
+			}
+			return connector;
+		}
+
+		synchronized void close() {
+			this.closed = true;
+			for (RepositoryConnector connector : this.open.values()) {
+				try {
+					connector.close();
+				}
+				catch (Exception e) {
+					log.debug("Cannot close connector", e);
+				}
+			}
+			this.open.clear();
+		}
+
+	}
+
+	private class Race {
+
+		private final int index;
+
+		private final ArtifactRequest request;
+
+		private final List<RemoteRepository> candidates;
+
+		private final CompletableFuture<RemoteRepository> winner = new CompletableFuture<>();
+
+		private final List<Future<?>> lookups = new ArrayList<>();
+
+		private final AtomicInteger remaining;
+
+		Race(int index, ArtifactRequest request, List<RemoteRepository> candidates) {
+			this.index = index;
+			this.request = request;
+			this.candidates = candidates;
+			this.remaining = new AtomicInteger(candidates.size());
+		}
+
+		void start(RepositorySystemSession session, ExecutorService executor,
+				Connectors connectors) {
+			synchronized (this.lookups) {
+				for (RemoteRepository repository : this.candidates) {
+					this.lookups.add(executor.submit(() -> {
+						if (!this.winner.isDone()
+								&& exists(session, repository, this.request, connectors)
+								&& this.winner.complete(repository)) {
+							cancel();
+						}
+						if (this.remaining.decrementAndGet() == 0) {
+							// Nobody has it: resolve as normal to get the usual errors
+							this.winner.complete(null);
+						}
+					}));
+				}
+			}
+		}
+
+		private void cancel() {
+			synchronized (this.lookups) {
+				for (Future<?> lookup : this.lookups) {
+					lookup.cancel(false);
+				}
+			}
+		}
+
+	}
+
+}
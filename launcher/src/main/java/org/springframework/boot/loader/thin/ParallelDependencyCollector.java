@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.impl.DependencyCollector;
+import org.eclipse.aether.impl.RemoteRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DependencyCollector} that walks the dependency graph breadth first before
+ * the real collection, reading the artifact descriptors of each level concurrently, so
+ * that the poms are downloaded (and their descriptors cached) in parallel. The default
+ * collector then does the real work with the same algorithm as always (so the result,
+ * including the mediation order, is identical), but without waiting for the network.
+ * The parallel walk is switched on by a session config property with the number of
+ * threads ({@link #THREADS}).
+ *
+ * @author Dave Syer
+ *
+ */
+class ParallelDependencyCollector implements DependencyCollector {
+
+	/**
+	 * Session config property for the number of threads to read descriptors with.
+	 */
+	static final String THREADS = "thin.collect.parallel.threads";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(ParallelDependencyCollector.class);
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private final DependencyCollector delegate;
+
+	private final ArtifactDescriptorReader reader;
+
+	private final RemoteRepositoryManager remoteRepositoryManager;
+
+	@Inject
+	ParallelDependencyCollector(@Named("default") DependencyCollector delegate,
+			ArtifactDescriptorReader reader,
+			RemoteRepositoryManager remoteRepositoryManager) {
+		this.delegate = delegate;
+		this.reader = reader;
+		this.remoteRepositoryManager = remoteRepositoryManager;
+	}
+
+	@Override
+	public CollectResult collectDependencies(RepositorySystemSession session,
+			CollectRequest request) throws DependencyCollectionException {
+		int threads = ConfigUtils.getInteger(session, 0, THREADS);
+		if (threads > 1) {
+			long t0 = System.currentTimeMillis();
+			int count = prefetch(session, request, threads);
+			if (log.isDebugEnabled()) {
+				log.debug("Read " + count + " descriptors in parallel in "
+						+ (System.currentTimeMillis() - t0) + "ms");
+			}
+		}
+		return this.delegate.collectDependencies(session, request);
+	}
+
+	private int prefetch(RepositorySystemSession session, CollectRequest request,
+			int threads) {
+		Map<String, String> managed = new HashMap<>();
+		for (Dependency dependency : request.getManagedDependencies()) {
+			managed.put(key(dependency.getArtifact()),
+					dependency.getArtifact().getVersion());
+		}
+		Set<String> seen = new HashSet<>();
+		List<Node> level = new ArrayList<>();
+		List<RemoteRepository> repositories = request.getRepositories();
+		if (request.getRoot() != null) {
+			add(level, seen, request.getRoot().getArtifact(), repositories, null);
+		}
+		for (Dependency dependency : request.getDependencies()) {
+			add(level, seen, managed(managed, dependency.getArtifact()), repositories,
+					dependency.getExclusions());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable,
+					"thin-collect-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		int count = 0;
+		try {
+			while (!level.isEmpty()) {
+				List<Future<ArtifactDescriptorResult>> futures = new ArrayList<>();
+				for (Node node : level) {
+					ArtifactDescriptorRequest descriptor = new ArtifactDescriptorRequest(
+							node.artifact, node.repositories,
+							request.getRequestContext());
+					futures.add(executor.submit(
+							() -> this.reader.readArtifactDescriptor(session, descriptor)));
+				}
+				List<Node> next = new ArrayList<>();
+				for (int i = 0; i < level.size(); i++) {
+					Node node = level.get(i);
+					ArtifactDescriptorResult result;
+					try {
+						result = futures.get(i).get();
+						count++;
+					}
+					catch (ExecutionException e) {
+						// The real collection will report it (if it matters)
+						continue;
+					}
+					List<RemoteRepository> children = this.remoteRepositoryManager
+							.aggregateRepositories(session, node.repositories,
+									result.getRepositories(), true);
+					for (Dependency dependency : result.getDependencies()) {
+						if (!isTransitive(dependency) || node.excludes(dependency)) {
+							continue;
+						}
+						add(next, seen, managed(managed, dependency.getArtifact()),
+								children, node.exclusions(dependency));
+					}
+				}
+				level = next;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return count;
+	}
+
+	private void add(List<Node> level, Set<String> seen, Artifact artifact,
+			List<RemoteRepository> repositories, Collection<Exclusion> exclusions) {
+		String version = artifact.getVersion();
+		if (version.isEmpty() || version.indexOf('[') >= 0 || version.indexOf('(') >= 0) {
+			return;
+		}
+		if (seen.add(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+				+ version)) {
+			level.add(new Node(artifact, repositories, exclusions));
+		}
+	}
+
+	private boolean isTransitive(Dependency dependency) {
+		String scope = dependency.getScope();
+		return !dependency.isOptional() && !"test".equals(scope)
+				&& !"provided".equals(scope);
+	}
+
+	private Artifact managed(Map<String, String> managed, Artifact artifact) {
+		String version = managed.get(key(artifact));
+		return version == null ? artifact : artifact.setVersion(version);
+	}
+
+	private String key(Artifact artifact) {
+		return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+				+ artifact.getExtension() + ":" + artifact.getClassifier();
+	}
+
+	private static class Node {
+
+		private final Artifact artifact;
+
+		private final List<RemoteRepository> repositories;
+
+		private final Set<String> excluded = new HashSet<>();
+
+		Node(Artifact artifact, List<RemoteRepository> repositories,
+				Collection<Exclusion> exclusions) {
+			this.artifact = artifact;
+			this.repositories = repositories;
+			if (exclusions != null) {
+				for (Exclusion exclusion : exclusions) {
+					this.excluded.add(
+							exclusion.getGroupId() + ":" + exclusion.getArtifactId());
+				}
+			}
+		}
+
+		boolean excludes(Dependency dependency) {
+			Artifact artifact = dependency.getArtifact();
+			return this.excluded.contains("*:*")
+					|| this.excluded.contains(artifact.getGroupId() + ":*")
+					|| this.excluded.contains(
+							artifact.getGroupId() + ":" + artifact.getArtifactId());
+		}
+
+		Collection<Exclusion> exclusions(Dependency dependency) {
+			List<Exclusion> exclusions = new ArrayList<>();
+			for (String excluded : this.excluded) {
+				String[] split = excluded.split(":");
+				exclusions.add(new Exclusion(split[0], split[1], "*", "*"));
+			}
+			exclusions.addAll(dependency.getExclusions());
+			return exclusions;
+		}
+
+	}
+
+}
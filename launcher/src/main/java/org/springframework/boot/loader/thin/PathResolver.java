@@ -288,6 +288,7 @@ public class PathResolver {
 		}
 		if (force) {
 			properties.remove("computed");
+			properties.setProperty(ThinJarLauncher.THIN_FORCE, "true");
 		}
 		addOverrideProperties(properties);
 		return properties;
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Dependency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Computes which of the resolved dependencies of an application can be reached from its
+ * entry points by following class references in the bytecode. The entry points are all
+ * the classes in the application archive, plus anything Spring or the JDK might load
+ * by name from the classpath: <code>META-INF/spring.factories</code>,
+ * <code>META-INF/spring/*.imports</code> and <code>META-INF/services/*</code>. A jar
+ * that contains classes, none of which are reachable, is a candidate for exclusion.
+ * Jars with no classes at all (e.g. webjars) are never suggested because they are
+ * probably there for their resources.
+ *
+ * @author Dave Syer
+ *
+ */
+class ReachabilityAnalyzer {
+
+	private static final Logger log = LoggerFactory.getLogger(ReachabilityAnalyzer.class);
+
+	private static final Pattern DESCRIPTOR = Pattern.compile("L([\\w/$]+);");
+
+	private static final String BOOT_INF_CLASSES = "BOOT-INF/classes/";
+
+	private final File application;
+
+	private final List<Dependency> dependencies;
+
+	private final Map<String, Source> index = new LinkedHashMap<>();
+
+	private final List<Source> sources = new ArrayList<>();
+
+	private final Set<String> roots = new HashSet<>();
+
+	ReachabilityAnalyzer(File application, List<Dependency> dependencies) {
+		this.application = application;
+		this.dependencies = dependencies;
+	}
+
+	public Report analyze(String mainClass) {
+		Source app = new Source(null, this.application);
+		this.sources.add(app);
+		for (Dependency dependency : this.dependencies) {
+			File file = dependency.getArtifact().getFile();
+			if (file != null && file.exists()) {
+				this.sources.add(new Source(dependency.getArtifact(), file));
+			}
+		}
+		for (Source source : this.sources) {
+			source.scan();
+		}
+		this.roots.addAll(app.classes);
+		if (StringUtils.hasText(mainClass)) {
+			this.roots.add(mainClass.replace(".", "/"));
+		}
+		Set<String> reachable = new HashSet<>();
+		try {
+			traverse(reachable);
+		}
+		finally {
+			for (Source source : this.sources) {
+				source.close();
+			}
+		}
+		Report report = new Report();
+		for (Source source : this.sources) {
+			report.classes += source.classes.size();
+			report.reachable += source.reachable;
+			if (source.artifact != null && !source.classes.isEmpty()
+					&& source.reachable == 0) {
+				report.unused.add(source.artifact);
+				report.savedBytes += source.file.length();
+				report.savedClasses += source.classes.size();
+			}
+		}
+		log.info("Reachable classes: " + report.reachable + " of " + report.classes);
+		return report;
+	}
+
+	private void traverse(Set<String> reachable) {
+		Deque<String> queue = new ArrayDeque<>(this.roots);
+		while (!queue.isEmpty()) {
+			String type = queue.poll();
+			if (!reachable.add(type)) {
+				continue;
+			}
+			Source source = this.index.get(type);
+			if (source == null) {
+				// JDK or missing
+				continue;
+			}
+			source.reachable++;
+			for (String reference : source.references(type)) {
+				if (this.index.containsKey(reference) && !reachable.contains(reference)) {
+					queue.add(reference);
+				}
+			}
+		}
+	}
+
+	private void addEntryPoints(String name, byte[] bytes) {
+		String content = new String(bytes, StandardCharsets.UTF_8);
+		if (name.startsWith("META-INF/services/")) {
+			this.roots.add(name.substring("META-INF/services/".length()).replace(".", "/"));
+		}
+		else if (name.equals("META-INF/spring.factories")) {
+			Properties properties = new Properties();
+			try {
+				properties.load(new ByteArrayInputStream(bytes));
+			}
+			catch (IOException e) {
+				return;
+			}
+			for (String key : properties.stringPropertyNames()) {
+				this.roots.add(key.replace(".", "/"));
+				for (String value : StringUtils
+						.commaDelimitedListToStringArray(properties.getProperty(key))) {
+					this.roots.add(value.trim().replace(".", "/"));
+				}
+			}
+			return;
+		}
+		for (String line : content.split("\n")) {
+			line = line.trim();
+			int comment = line.indexOf('#');
+			if (comment >= 0) {
+				line = line.substring(0, comment).trim();
+			}
+			if (line.length() > 0) {
+				this.roots.add(line.replace(".", "/"));
+			}
+		}
+	}
+
+	private static boolean isEntryPointResource(String name) {
+		return name.equals("META-INF/spring.factories")
+				|| (name.startsWith("META-INF/spring/") && name.endsWith(".imports"))
+				|| (name.startsWith("META-INF/services/") && name.length() > 18
+						&& !name.endsWith("/"));
+	}
+
+	/**
+	 * Extract the class names referred to in the constant pool of a class file. Class
+	 * entries give us direct references, and descriptors or signatures (in any UTF8
+	 * entry) cover field types, method parameters, generics and annotations. Strings
+	 * that look like fully qualified class names are included as well, so that Spring
+	 * conditions like <code>@ConditionalOnClass(name=...)</code> are honoured.
+	 */
+	static Set<String> references(byte[] bytes) throws IOException {
+		Set<String> result = new HashSet<>();
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (input.readInt() != 0xCAFEBABE) {
+			return result;
+		}
+		input.readUnsignedShort();
+		input.readUnsignedShort();
+		int count = input.readUnsignedShort();
+		String[] utf8 = new String[count];
+		List<Integer> classes = new ArrayList<>();
+		for (int i = 1; i < count; i++) {
+			int tag = input.readUnsignedByte();
+			switch (tag) {
+			case 1:
+				utf8[i] = input.readUTF();
+				break;
+			case 7:
+				classes.add(input.readUnsignedShort());
+				break;
+			case 8:
+			case 16:
+			case 19:
+			case 20:
+				input.skipBytes(2);
+				break;
+			case 15:
+				input.skipBytes(3);
+				break;
+			case 3:
+			case 4:
+			case 9:
+			case 10:
+			case 11:
+			case 12:
+			case 17:
+			case 18:
+				input.skipBytes(4);
+				break;
+			case 5:
+			case 6:
+				input.skipBytes(8);
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag: " + tag);
+			}
+		}
+		for (Integer index : classes) {
+			String name = utf8[index];
+			if (name != null) {
+				if (name.startsWith("[")) {
+					addDescriptors(result, name);
+				}
+				else {
+					result.add(name);
+				}
+			}
+		}
+		for (String value : utf8) {
+			if (value == null) {
+				continue;
+			}
+			addDescriptors(result, value);
+			if (value.indexOf('.') > 0 && value.indexOf(' ') < 0) {
+				result.add(value.replace(".", "/"));
+			}
+		}
+		return result;
+	}
+
+	private static void addDescriptors(Set<String> result, String value) {
+		if (value.indexOf(';') < 0) {
+			return;
+		}
+		Matcher matcher = DESCRIPTOR.matcher(value);
+		while (matcher.find()) {
+			result.add(matcher.group(1));
+		}
+	}
+
+	private class Source {
+
+		private final Artifact artifact;
+
+		private final File file;
+
+		private final Set<String> classes = new HashSet<>();
+
+		private int reachable;
+
+		private String prefix = "";
+
+		private JarFile jar;
+
+		private Source(Artifact artifact, File file) {
+			this.artifact = artifact;
+			this.file = file;
+		}
+
+		void scan() {
+			try {
+				if (this.file.isDirectory()) {
+					if (new File(this.file, BOOT_INF_CLASSES).isDirectory()) {
+						this.prefix = BOOT_INF_CLASSES;
+					}
+					Path base = this.file.toPath();
+					try (Stream<Path> paths = Files.walk(base)) {
+						paths.filter(Files::isRegularFile).forEach(path -> add(
+								base.relativize(path).toString().replace(File.separator, "/"),
+								path.toFile()));
+					}
+				}
+				else if (this.file.getName().endsWith(".jar")) {
+					try (JarFile jar = new JarFile(this.file)) {
+						if (jar.getEntry(BOOT_INF_CLASSES) != null) {
+							this.prefix = BOOT_INF_CLASSES;
+						}
+						for (JarEntry entry : Collections.list(jar.entries())) {
+							if (entry.isDirectory()) {
+								continue;
+							}
+							String name = entry.getName();
+							if (isEntryPointResource(strip(name))) {
+								try (InputStream stream = jar.getInputStream(entry)) {
+									addEntryPoints(strip(name),
+											StreamUtils.copyToByteArray(stream));
+								}
+							}
+							else {
+								addClass(name);
+							}
+						}
+					}
+				}
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Cannot scan archive: " + this.file, e);
+			}
+		}
+
+		private void add(String name, File file) {
+			if (isEntryPointResource(strip(name))) {
+				try (InputStream stream = new FileInputStream(file)) {
+					addEntryPoints(strip(name), StreamUtils.copyToByteArray(stream));
+				}
+				catch (IOException e) {
+					throw new IllegalStateException("Cannot read: " + file, e);
+				}
+			}
+			else {
+				addClass(name);
+			}
+		}
+
+		private void addClass(String name) {
+			if (!name.endsWith(".class") || !name.startsWith(this.prefix)) {
+				return;
+			}
+			name = strip(name);
+			if (name.startsWith("META-INF/")) {
+				// Multi-release and other non-standard class locations
+				return;
+			}
+			String type = name.substring(0, name.length() - ".class".length());
+			this.classes.add(type);
+			if (!index.containsKey(type)) {
+				// First one on the classpath wins
+				index.put(type, this);
+			}
+		}
+
+		private String strip(String name) {
+			return name.startsWith(this.prefix) ? name.substring(this.prefix.length())
+					: name;
+		}
+
+		Set<String> references(String type) {
+			String name = this.prefix + type + ".class";
+			try {
+				byte[] bytes;
+				if (this.file.isDirectory()) {
+					bytes = Files.readAllBytes(new File(this.file, name).toPath());
+				}
+				else {
+					if (this.jar == null) {
+						this.jar = new JarFile(this.file);
+					}
+					try (InputStream stream = this.jar
+							.getInputStream(this.jar.getEntry(name))) {
+						bytes = StreamUtils.copyToByteArray(stream);
+					}
+				}
+				return ReachabilityAnalyzer.references(bytes);
+			}
+			catch (Exception e) {
+				log.info("Cannot read class " + type + " from " + this.file);
+				return new HashSet<>();
+			}
+		}
+
+		void close() {
+			if (this.jar != null) {
+				try {
+					this.jar.close();
+				}
+				catch (IOException e) {
+					// ignore
+				}
+				this.jar = null;
+			}
+		}
+
+	}
+
+	static class Report {
+
+		private int classes;
+
+		private int reachable;
+
+		private long savedBytes;
+
+		private int savedClasses;
+
+		private final List<Artifact> unused = new ArrayList<>();
+
+		public int getClasses() {
+			return this.classes;
+		}
+
+		public int getReachable() {
+			return this.reachable;
+		}
+
+		public long getSavedBytes() {
+			return this.savedBytes;
+		}
+
+		public int getSavedClasses() {
+			return this.savedClasses;
+		}
+
+		public List<Artifact> getUnused() {
+			return this.unused;
+		}
+
+		/**
+		 * Render the report as thin properties, with suggested
+		 * <code>exclusions.*</code> and the statistics under <code>trim.*</code>.
+		 */
+		public Properties toProperties() {
+			Properties properties = new Properties();
+			for (Artifact artifact : this.unused) {
+				String key = artifact.getArtifactId();
+				if (StringUtils.hasLength(artifact.getClassifier())) {
+					key = key + "." + artifact.getClassifier();
+				}
+				properties.setProperty("exclusions." + key,
+						artifact.getGroupId() + ":" + artifact.getArtifactId());
+			}
+			properties.setProperty("trim.classes", "" + this.classes);
+			properties.setProperty("trim.reachable", "" + this.reachable);
+			properties.setProperty("trim.jars", "" + this.unused.size());
+			properties.setProperty("trim.saved.classes", "" + this.savedClasses);
+			properties.setProperty("trim.saved.bytes", "" + this.savedBytes);
+			return properties;
+		}
+
+	}
+
+}
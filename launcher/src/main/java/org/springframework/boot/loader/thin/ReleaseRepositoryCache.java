@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.RepositoryCache;
+import org.eclipse.aether.RepositorySystemSession;
+
+/**
+ * A {@link RepositoryCache} for a single resolution. Entries with a key that starts with
+ * {@link #SHARED} (data for release artifacts, which cannot change) go in a cache that is
+ * shared with other resolutions. Everything else (e.g. the versions that SNAPSHOT, LATEST
+ * and RELEASE resolved to, and models that might have a snapshot parent) is kept in a
+ * private cache that is discarded with the session, so a long-lived process sees new
+ * snapshots.
+ *
+ * @author Dave Syer
+ *
+ */
+class ReleaseRepositoryCache implements RepositoryCache {
+
+	/**
+	 * Prefix for the keys of entries that are shared between resolutions.
+	 */
+	static final String SHARED = "thin.release:";
+
+	private final RepositoryCache shared;
+
+	private final RepositoryCache local = new DefaultRepositoryCache();
+
+	ReleaseRepositoryCache(RepositoryCache shared) {
+		this.shared = shared;
+	}
+
+	@Override
+	public void put(RepositorySystemSession session, Object key, Object data) {
+		cache(key).put(session, key, data);
+	}
+
+	@Override
+	public Object get(RepositorySystemSession session, Object key) {
+		return cache(key).get(session, key);
+	}
+
+	private RepositoryCache cache(Object key) {
+		return key instanceof String && ((String) key).startsWith(SHARED) ? this.shared
+				: this.local;
+	}
+
+}
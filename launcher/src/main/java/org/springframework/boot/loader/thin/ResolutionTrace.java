@@ -0,0 +1,498 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A record of when the descriptor, artifact and metadata of each node in a dependency
+ * graph were requested and completed (and by which thread, and which repository served
+ * them), written in the Chrome trace event format (for <code>chrome://tracing</code>
+ * or Perfetto). The critical path is the chain of work that the resolution as a whole
+ * had to wait for: it ends at whatever finished last, and each step before it is the
+ * descriptor of its parent in the graph or (if there isn't one) whatever finished last
+ * before it started. The steps are highlighted where they happened and repeated on a
+ * row of their own at the top. Artifacts and metadata are recorded as a
+ * {@link org.eclipse.aether.RepositoryListener}, and descriptors by the
+ * {@link CachingArtifactDescriptorReader} if it finds the trace in the session config
+ * ({@link #TRACE}).
+ *
+ * @author Dave Syer
+ *
+ */
+class ResolutionTrace extends AbstractRepositoryListener {
+
+	/**
+	 * Session config property for the trace to record descriptors in.
+	 */
+	static final String TRACE = "thin.trace.recorder";
+
+	private static final Logger log = LoggerFactory.getLogger(ResolutionTrace.class);
+
+	private static final String DESCRIPTOR = "descriptor";
+
+	private static final String ARTIFACT = "artifact";
+
+	private static final String METADATA = "metadata";
+
+	private static final String DOWNLOAD = "download";
+
+	private static final String HIGHLIGHT = "terrible";
+
+	private final File output;
+
+	private final long origin = System.nanoTime();
+
+	private final Map<String, Start> started = new ConcurrentHashMap<>();
+
+	private final Map<Long, String> threads = new ConcurrentHashMap<>();
+
+	private final List<Span> spans = Collections.synchronizedList(new ArrayList<>());
+
+	ResolutionTrace(File output) {
+		this.output = output;
+	}
+
+	static ResolutionTrace get(RepositorySystemSession session) {
+		Object trace = session.getConfigProperties().get(TRACE);
+		return trace instanceof ResolutionTrace ? (ResolutionTrace) trace : null;
+	}
+
+	/**
+	 * The time since the trace started in microseconds.
+	 */
+	long now() {
+		return (System.nanoTime() - this.origin) / 1000;
+	}
+
+	void descriptor(Artifact artifact, long start, ArtifactDescriptorResult result) {
+		Map<String, String> args = new LinkedHashMap<>();
+		if (result != null) {
+			args.put("repository", id(result.getRepository()));
+			args.put("dependencies", String.valueOf(result.getDependencies().size()));
+		}
+		else {
+			args.put("error", "true");
+		}
+		add(DESCRIPTOR, key(artifact), owner(artifact), start, now(), thread(), args);
+	}
+
+	@Override
+	public void artifactResolving(RepositoryEvent event) {
+		begin(ARTIFACT, event.getArtifact().toString());
+	}
+
+	@Override
+	public void artifactResolved(RepositoryEvent event) {
+		Map<String, String> args = new LinkedHashMap<>();
+		args.put("repository", id(event.getRepository()));
+		File file = event.getArtifact().getFile();
+		if (file != null) {
+			args.put("size", String.valueOf(file.length()));
+		}
+		if (event.getException() != null) {
+			args.put("error", String.valueOf(event.getException().getMessage()));
+		}
+		end(ARTIFACT, event.getArtifact().toString(), owner(event.getArtifact()), args);
+	}
+
+	@Override
+	public void artifactDownloading(RepositoryEvent event) {
+		begin(DOWNLOAD, event.getArtifact() + "@" + id(event.getRepository()));
+	}
+
+	@Override
+	public void artifactDownloaded(RepositoryEvent event) {
+		end(DOWNLOAD, event.getArtifact() + "@" + id(event.getRepository()),
+				owner(event.getArtifact()), download(event));
+	}
+
+	@Override
+	public void metadataResolving(RepositoryEvent event) {
+		begin(METADATA, key(event.getMetadata()) + "@" + id(event.getRepository()));
+	}
+
+	@Override
+	public void metadataResolved(RepositoryEvent event) {
+		Map<String, String> args = new LinkedHashMap<>();
+		args.put("repository", id(event.getRepository()));
+		end(METADATA, key(event.getMetadata()) + "@" + id(event.getRepository()), null,
+				args);
+	}
+
+	@Override
+	public void metadataDownloading(RepositoryEvent event) {
+		begin(DOWNLOAD, key(event.getMetadata()) + "@" + id(event.getRepository()));
+	}
+
+	@Override
+	public void metadataDownloaded(RepositoryEvent event) {
+		end(DOWNLOAD, key(event.getMetadata()) + "@" + id(event.getRepository()), null,
+				download(event));
+	}
+
+	/**
+	 * Work out the critical path (using the graph, if there is one, to connect
+	 * descriptors to their parents) and write the trace to the output file.
+	 */
+	void write(DependencyNode graph) {
+		List<Span> spans;
+		synchronized (this.spans) {
+			spans = new ArrayList<>(this.spans);
+		}
+		List<Span> path = critical(spans, parents(graph));
+		Set<Span> highlighted = new HashSet<>(path);
+		for (Span span : spans) {
+			for (Span step : path) {
+				if (contains(step, span)) {
+					highlighted.add(span);
+				}
+			}
+		}
+		if (log.isInfoEnabled() && !path.isEmpty()) {
+			StringBuilder builder = new StringBuilder();
+			for (Span step : path) {
+				if (builder.length() > 0) {
+					builder.append(" -> ");
+				}
+				builder.append(step.name).append(" (")
+						.append((step.end - step.start) / 1000).append("ms)");
+			}
+			log.info("Critical path: " + builder);
+		}
+		File parent = this.output.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.output),
+				StandardCharsets.UTF_8)) {
+			writer.write("{\"traceEvents\":[\n");
+			writer.write(thread(0L, "critical path"));
+			writer.write(",\n{\"name\":\"thread_sort_index\",\"ph\":\"M\",\"pid\":1,"
+					+ "\"tid\":0,\"args\":{\"sort_index\":-1}}");
+			for (Map.Entry<Long, String> entry : new TreeMap<>(this.threads)
+					.entrySet()) {
+				writer.write(",\n" + thread(entry.getKey(), entry.getValue()));
+			}
+			for (Span span : spans) {
+				writer.write(",\n" + event(span, span.tid, highlighted.contains(span)));
+			}
+			for (Span step : path) {
+				writer.write(",\n" + event(step, 0L, true));
+			}
+			writer.write("\n],\"displayTimeUnit\":\"ms\",\"otherData\":{\"duration\":\""
+					+ (path.isEmpty() ? 0
+							: (path.get(path.size() - 1).end - path.get(0).start) / 1000)
+					+ "ms\",\"steps\":\"" + path.size() + "\"}}\n");
+		}
+		catch (IOException e) {
+			log.warn("Cannot write trace: " + this.output, e);
+			return;
+		}
+		log.info("Resolution trace: " + this.output);
+	}
+
+	/**
+	 * The critical path, in the order the steps happened. Only the outermost spans on
+	 * each thread are steps (the others are work they were waiting for, like downloads
+	 * and parent POMs).
+	 */
+	private List<Span> critical(List<Span> spans, Map<String, String> parents) {
+		List<Span> steps = new ArrayList<>();
+		for (Span span : spans) {
+			boolean nested = false;
+			for (Span other : spans) {
+				if (contains(other, span)) {
+					nested = true;
+					break;
+				}
+			}
+			if (!nested) {
+				steps.add(span);
+			}
+		}
+		List<Span> path = new ArrayList<>();
+		Span step = null;
+		for (Span span : steps) {
+			if (step == null || span.end > step.end) {
+				step = span;
+			}
+		}
+		while (step != null) {
+			path.add(step);
+			Span previous = null;
+			String parent = DESCRIPTOR.equals(step.category) ? parents.get(step.owner)
+					: null;
+			if (parent != null) {
+				previous = latest(steps, path, step.start, DESCRIPTOR, parent);
+			}
+			if (previous == null) {
+				previous = latest(steps, path, step.start, null, null);
+			}
+			step = previous;
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * The step (optionally with the given category and owner) that finished last before
+	 * the given time and is not already on the path.
+	 */
+	private Span latest(List<Span> steps, List<Span> path, long time, String category,
+			String owner) {
+		Span latest = null;
+		for (Span span : steps) {
+			if (span.end > time || path.contains(span)
+					|| category != null && (!category.equals(span.category)
+							|| !owner.equals(span.owner))) {
+				continue;
+			}
+			if (latest == null || span.end > latest.end) {
+				latest = span;
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Whether one span is inside another on the same thread (if they start and end at
+	 * the same time the one with the coarser category is outside).
+	 */
+	private boolean contains(Span outer, Span inner) {
+		if (outer == inner || outer.tid != inner.tid || outer.start > inner.start
+				|| outer.end < inner.end) {
+			return false;
+		}
+		if (outer.start == inner.start && outer.end == inner.end) {
+			return rank(outer.category) < rank(inner.category);
+		}
+		return true;
+	}
+
+	private int rank(String category) {
+		switch (category) {
+		case DESCRIPTOR:
+			return 0;
+		case ARTIFACT:
+			return 1;
+		case METADATA:
+			return 2;
+		default:
+			return 3;
+		}
+	}
+
+	private Map<String, String> parents(DependencyNode graph) {
+		Map<String, String> parents = new HashMap<>();
+		if (graph != null) {
+			parents(graph, parents, new HashSet<>());
+		}
+		return parents;
+	}
+
+	private void parents(DependencyNode node, Map<String, String> parents,
+			Set<DependencyNode> seen) {
+		if (!seen.add(node)) {
+			return;
+		}
+		for (DependencyNode child : node.getChildren()) {
+			if (node.getArtifact() != null && child.getArtifact() != null) {
+				parents.putIfAbsent(owner(child.getArtifact()),
+						owner(node.getArtifact()));
+			}
+			parents(child, parents, seen);
+		}
+	}
+
+	private void begin(String category, String key) {
+		this.started.put(category + ":" + key, new Start(now(), thread()));
+	}
+
+	private void end(String category, String key, String owner,
+			Map<String, String> args) {
+		Start start = this.started.remove(category + ":" + key);
+		if (start != null) {
+			add(category, key, owner, start.time, now(), start.tid, args);
+		}
+	}
+
+	private void add(String category, String name, String owner, long start, long end,
+			long tid, Map<String, String> args) {
+		this.spans.add(new Span(category, name, owner, start, end, tid, args));
+	}
+
+	private long thread() {
+		Thread thread = Thread.currentThread();
+		this.threads.putIfAbsent(thread.getId(), thread.getName());
+		return thread.getId();
+	}
+
+	private Map<String, String> download(RepositoryEvent event) {
+		Map<String, String> args = new LinkedHashMap<>();
+		args.put("repository", id(event.getRepository()));
+		if (event.getRepository() instanceof RemoteRepository) {
+			args.put("url", ((RemoteRepository) event.getRepository()).getUrl());
+		}
+		if (event.getFile() != null) {
+			args.put("size", String.valueOf(event.getFile().length()));
+		}
+		if (event.getException() != null) {
+			args.put("error", String.valueOf(event.getException().getMessage()));
+		}
+		return args;
+	}
+
+	private static String key(Artifact artifact) {
+		return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+				+ artifact.getBaseVersion();
+	}
+
+	private static String key(Metadata metadata) {
+		StringBuilder builder = new StringBuilder(metadata.getGroupId());
+		if (metadata.getArtifactId().length() > 0) {
+			builder.append(":").append(metadata.getArtifactId());
+		}
+		if (metadata.getVersion().length() > 0) {
+			builder.append(":").append(metadata.getVersion());
+		}
+		return builder.append("/").append(metadata.getType()).toString();
+	}
+
+	private static String owner(Artifact artifact) {
+		return artifact == null ? null : key(artifact);
+	}
+
+	private static String id(ArtifactRepository repository) {
+		return repository == null ? "" : repository.getId();
+	}
+
+	private static String thread(long tid, String name) {
+		return "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + tid
+				+ ",\"args\":{\"name\":\"" + escape(name) + "\"}}";
+	}
+
+	private static String event(Span span, long tid, boolean critical) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\"name\":\"").append(escape(span.name)).append("\",\"cat\":\"")
+				.append(span.category).append("\",\"ph\":\"X\",\"ts\":")
+				.append(span.start).append(",\"dur\":").append(span.end - span.start)
+				.append(",\"pid\":1,\"tid\":").append(tid);
+		if (critical) {
+			builder.append(",\"cname\":\"").append(HIGHLIGHT).append("\"");
+		}
+		builder.append(",\"args\":{");
+		boolean first = true;
+		for (Map.Entry<String, String> arg : span.args.entrySet()) {
+			if (!first) {
+				builder.append(",");
+			}
+			builder.append("\"").append(escape(arg.getKey())).append("\":\"")
+					.append(escape(arg.getValue())).append("\"");
+			first = false;
+		}
+		if (critical) {
+			builder.append(first ? "" : ",").append("\"critical\":\"true\"");
+		}
+		return builder.append("}}").toString();
+	}
+
+	private static String escape(String value) {
+		StringBuilder builder = new StringBuilder();
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static class Start {
+
+		private final long time;
+
+		private final long tid;
+
+		Start(long time, long tid) {
+			this.time = time;
+			this.tid = tid;
+		}
+
+	}
+
+	private static class Span {
+
+		private final String category;
+
+		private final String name;
+
+		private final String owner;
+
+		private final long start;
+
+		private final long end;
+
+		private final long tid;
+
+		private final Map<String, String> args;
+
+		Span(String category, String name, String owner, long start, long end,
+				long tid, Map<String, String> args) {
+			this.category = category;
+			this.name = name;
+			this.owner = owner;
+			this.start = start;
+			this.end = end;
+			this.tid = tid;
+			this.args = args;
+		}
+
+	}
+
+}
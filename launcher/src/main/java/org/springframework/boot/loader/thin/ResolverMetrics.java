@@ -0,0 +1,464 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositoryListener;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.transfer.TransferResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics for the dependency resolver in this JVM: artifacts resolved (and how many
+ * were already in the local repository), bytes downloaded, time spent resolving
+ * dependency graphs and building models, and for each remote repository the number of
+ * requests, misses (not found), errors, bytes and a latency histogram. Dynamic versions
+ * (ranges, LATEST and RELEASE) that were served from the cache are listed too. Useful
+ * for sizing repository proxies and finding slow mirrors. Get the instance from
+ * {@link DependencyResolver#metrics()}, dump it with {@link #toProperties()} (or
+ * <code>thin.metrics</code> in the launcher), or register it as an MBean with
+ * {@link #register()}.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ResolverMetrics implements ResolverMetricsMBean {
+
+	/**
+	 * The JMX object name that the metrics are registered with.
+	 */
+	public static final String OBJECT_NAME = "org.springframework.boot.thin:type=ResolverMetrics";
+
+	/**
+	 * Upper bounds (in milliseconds) of the buckets in the latency histograms (the last
+	 * bucket is everything bigger).
+	 */
+	static final long[] BUCKETS = { 10, 50, 100, 250, 500, 1000, 2500, 5000 };
+
+	private static final Logger log = LoggerFactory.getLogger(ResolverMetrics.class);
+
+	private final AtomicLong artifactsResolved = new AtomicLong();
+
+	private final AtomicLong localHits = new AtomicLong();
+
+	private final AtomicLong downloads = new AtomicLong();
+
+	private final AtomicLong bytesDownloaded = new AtomicLong();
+
+	private final AtomicLong resolutions = new AtomicLong();
+
+	private final AtomicLong resolutionTime = new AtomicLong();
+
+	private final AtomicLong modelBuilds = new AtomicLong();
+
+	private final AtomicLong modelBuildTime = new AtomicLong();
+
+	private final AtomicLong versionsResolved = new AtomicLong();
+
+	/**
+	 * The dynamic versions (e.g. <code>group:artifact:[1.0,2.0)</code>) that were served
+	 * from the cache, with the versions they resolved to.
+	 */
+	private final Map<String, String> versionsCached = new ConcurrentHashMap<>();
+
+	/**
+	 * Metrics by normalized repository URL (the transfer events only carry the URL).
+	 */
+	private final Map<String, RepositoryMetrics> repositories = new ConcurrentHashMap<>();
+
+	/**
+	 * Repository ids by normalized URL, from the repository events. A transfer can come
+	 * before the event that names its repository, so the metrics are only given their
+	 * names when they are read.
+	 */
+	private final Map<String, String> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * Files that have been downloaded but not yet resolved (so the resolution is not a
+	 * local hit).
+	 */
+	private final Set<String> downloaded = ConcurrentHashMap.newKeySet();
+
+	private final RepositoryListener repositoryListener = new Listener();
+
+	private final TransferListener transferListener = new Transfers();
+
+	ResolverMetrics() {
+	}
+
+	@Override
+	public long getArtifactsResolved() {
+		return this.artifactsResolved.get();
+	}
+
+	@Override
+	public long getLocalHits() {
+		return this.localHits.get();
+	}
+
+	@Override
+	public long getDownloads() {
+		return this.downloads.get();
+	}
+
+	@Override
+	public long getBytesDownloaded() {
+		return this.bytesDownloaded.get();
+	}
+
+	@Override
+	public long getResolutions() {
+		return this.resolutions.get();
+	}
+
+	@Override
+	public long getResolutionTime() {
+		return this.resolutionTime.get();
+	}
+
+	@Override
+	public long getModelBuilds() {
+		return this.modelBuilds.get();
+	}
+
+	@Override
+	public long getModelBuildTime() {
+		return this.modelBuildTime.get();
+	}
+
+	@Override
+	public long getVersionsResolved() {
+		return this.versionsResolved.get();
+	}
+
+	@Override
+	public long getVersionsCached() {
+		return this.versionsCached.size();
+	}
+
+	/**
+	 * The metrics for each remote repository (by id, or by URL if the id is not known)
+	 * that has been used.
+	 * @return the repository metrics
+	 */
+	public Map<String, RepositoryMetrics> getRepositories() {
+		Map<String, RepositoryMetrics> map = new TreeMap<>();
+		for (Map.Entry<String, RepositoryMetrics> entry : this.repositories.entrySet()) {
+			String id = this.ids.get(entry.getKey());
+			map.put(id != null && !map.containsKey(id) ? id : entry.getValue().getUrl(),
+					entry.getValue());
+		}
+		return Collections.unmodifiableMap(map);
+	}
+
+	@Override
+	public Map<String, String> getMetrics() {
+		Map<String, String> map = new TreeMap<>();
+		Properties properties = toProperties();
+		for (String name : properties.stringPropertyNames()) {
+			map.put(name, properties.getProperty(name));
+		}
+		return map;
+	}
+
+	@Override
+	public void reset() {
+		this.artifactsResolved.set(0);
+		this.localHits.set(0);
+		this.downloads.set(0);
+		this.bytesDownloaded.set(0);
+		this.resolutions.set(0);
+		this.resolutionTime.set(0);
+		this.modelBuilds.set(0);
+		this.modelBuildTime.set(0);
+		this.versionsResolved.set(0);
+		this.versionsCached.clear();
+		this.repositories.clear();
+		this.downloaded.clear();
+	}
+
+	/**
+	 * All the metrics as properties, e.g. <code>artifacts.resolved</code> or
+	 * <code>repositories.central.latency.mean</code>.
+	 * @return the metrics
+	 */
+	public Properties toProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("artifacts.resolved", "" + getArtifactsResolved());
+		properties.setProperty("artifacts.local", "" + getLocalHits());
+		properties.setProperty("artifacts.downloaded", "" + getDownloads());
+		properties.setProperty("bytes.downloaded", "" + getBytesDownloaded());
+		properties.setProperty("resolutions.count", "" + getResolutions());
+		properties.setProperty("resolutions.time", "" + getResolutionTime());
+		properties.setProperty("models.built", "" + getModelBuilds());
+		properties.setProperty("models.time", "" + getModelBuildTime());
+		properties.setProperty("versions.resolved", "" + getVersionsResolved());
+		properties.setProperty("versions.cached", "" + getVersionsCached());
+		for (Map.Entry<String, String> entry : this.versionsCached.entrySet()) {
+			properties.setProperty("versions.cached." + entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, RepositoryMetrics> entry : getRepositories().entrySet()) {
+			String prefix = "repositories." + entry.getKey() + ".";
+			RepositoryMetrics repository = entry.getValue();
+			properties.setProperty(prefix + "url", repository.getUrl());
+			properties.setProperty(prefix + "requests", "" + repository.getRequests());
+			properties.setProperty(prefix + "misses", "" + repository.getMisses());
+			properties.setProperty(prefix + "errors", "" + repository.getErrors());
+			properties.setProperty(prefix + "bytes", "" + repository.getBytes());
+			properties.setProperty(prefix + "latency.mean", "" + repository.getMeanLatency());
+			long[] histogram = repository.getLatencyHistogram();
+			for (int i = 0; i < histogram.length; i++) {
+				properties.setProperty(prefix + "latency." + (i < BUCKETS.length
+						? "le" + BUCKETS[i] : "gt" + BUCKETS[BUCKETS.length - 1]),
+						"" + histogram[i]);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Register these metrics with the platform MBean server (if they are not already).
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		}
+		catch (Exception e) {
+			log.warn("Cannot register resolver metrics: " + e);
+		}
+	}
+
+	RepositoryListener getRepositoryListener() {
+		return this.repositoryListener;
+	}
+
+	TransferListener getTransferListener() {
+		return this.transferListener;
+	}
+
+	void resolved(long millis) {
+		this.resolutions.incrementAndGet();
+		this.resolutionTime.addAndGet(millis);
+	}
+
+	void modelBuilt(long millis) {
+		this.modelBuilds.incrementAndGet();
+		this.modelBuildTime.addAndGet(millis);
+	}
+
+	void versionResolved() {
+		this.versionsResolved.incrementAndGet();
+	}
+
+	void versionCached(String coordinates, String versions) {
+		this.versionsCached.put(coordinates, versions);
+	}
+
+	private RepositoryMetrics repository(TransferResource resource) {
+		return this.repositories.computeIfAbsent(normalize(resource.getRepositoryUrl()),
+				key -> new RepositoryMetrics(resource.getRepositoryUrl()));
+	}
+
+	private void identify(ArtifactRepository repository) {
+		if (repository instanceof RemoteRepository) {
+			RemoteRepository remote = (RemoteRepository) repository;
+			this.ids.putIfAbsent(normalize(remote.getUrl()), remote.getId());
+		}
+	}
+
+	private static String normalize(String url) {
+		return url.endsWith("/") ? url : url + "/";
+	}
+
+	/**
+	 * Metrics for one remote repository.
+	 */
+	public static class RepositoryMetrics {
+
+		private final String url;
+
+		private final AtomicLong requests = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
+
+		private final AtomicLong errors = new AtomicLong();
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong time = new AtomicLong();
+
+		private final AtomicLong completed = new AtomicLong();
+
+		private final AtomicLongArray histogram = new AtomicLongArray(
+				BUCKETS.length + 1);
+
+		RepositoryMetrics(String url) {
+			this.url = url;
+		}
+
+		public String getUrl() {
+			return this.url;
+		}
+
+		public long getRequests() {
+			return this.requests.get();
+		}
+
+		public long getMisses() {
+			return this.misses.get();
+		}
+
+		public long getErrors() {
+			return this.errors.get();
+		}
+
+		public long getBytes() {
+			return this.bytes.get();
+		}
+
+		/**
+		 * The mean time (in milliseconds) for a request to complete.
+		 * @return the mean latency
+		 */
+		public long getMeanLatency() {
+			long count = this.completed.get();
+			return count == 0 ? 0 : this.time.get() / count;
+		}
+
+		/**
+		 * The number of requests that completed within each bucket of
+		 * {@link ResolverMetrics#BUCKETS} (with one more for the ones that took longer).
+		 * @return the histogram
+		 */
+		public long[] getLatencyHistogram() {
+			long[] result = new long[this.histogram.length()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = this.histogram.get(i);
+			}
+			return result;
+		}
+
+		private void completed(long millis) {
+			this.completed.incrementAndGet();
+			this.time.addAndGet(millis);
+			int bucket = 0;
+			while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+				bucket++;
+			}
+			this.histogram.incrementAndGet(bucket);
+		}
+
+	}
+
+	private class Listener extends AbstractRepositoryListener {
+
+		@Override
+		public void artifactResolved(RepositoryEvent event) {
+			if (event.getException() != null || event.getArtifact() == null
+					|| event.getArtifact().getFile() == null) {
+				return;
+			}
+			ResolverMetrics.this.artifactsResolved.incrementAndGet();
+			// The repository is the one it originally came from, even if it was already
+			// in the local repository, so look for a download instead
+			if (!ResolverMetrics.this.downloaded
+					.remove(event.getArtifact().getFile().getAbsolutePath())) {
+				ResolverMetrics.this.localHits.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void artifactDownloading(RepositoryEvent event) {
+			identify(event.getRepository());
+		}
+
+		@Override
+		public void metadataDownloading(RepositoryEvent event) {
+			identify(event.getRepository());
+		}
+
+		@Override
+		public void artifactDownloaded(RepositoryEvent event) {
+			if (event.getException() == null && event.getFile() != null) {
+				ResolverMetrics.this.downloads.incrementAndGet();
+				ResolverMetrics.this.downloaded.add(event.getFile().getAbsolutePath());
+			}
+		}
+
+	}
+
+	private class Transfers extends AbstractTransferListener {
+
+		@Override
+		public void transferInitiated(TransferEvent event) {
+			repository(event.getResource()).requests.incrementAndGet();
+		}
+
+		@Override
+		public void transferSucceeded(TransferEvent event) {
+			RepositoryMetrics repository = repository(event.getResource());
+			repository.completed(elapsed(event));
+			repository.bytes.addAndGet(event.getTransferredBytes());
+			ResolverMetrics.this.bytesDownloaded.addAndGet(event.getTransferredBytes());
+		}
+
+		@Override
+		public void transferFailed(TransferEvent event) {
+			RepositoryMetrics repository = repository(event.getResource());
+			repository.completed(elapsed(event));
+			Exception exception = event.getException();
+			if (exception instanceof ArtifactNotFoundException
+					|| exception instanceof MetadataNotFoundException) {
+				repository.misses.incrementAndGet();
+			}
+			else {
+				repository.errors.incrementAndGet();
+			}
+		}
+
+		private long elapsed(TransferEvent event) {
+			return Math.max(0,
+					System.currentTimeMillis() - event.getResource().getTransferStartTime());
+		}
+
+	}
+
+}
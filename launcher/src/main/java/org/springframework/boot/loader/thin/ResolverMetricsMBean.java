@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.Map;
+
+/**
+ * JMX management interface for {@link ResolverMetrics}.
+ *
+ * @author Dave Syer
+ *
+ */
+public interface ResolverMetricsMBean {
+
+	long getArtifactsResolved();
+
+	long getLocalHits();
+
+	long getDownloads();
+
+	long getBytesDownloaded();
+
+	long getResolutions();
+
+	long getResolutionTime();
+
+	long getModelBuilds();
+
+	long getModelBuildTime();
+
+	/**
+	 * The number of dynamic versions (ranges, LATEST and RELEASE) resolved from the
+	 * repository metadata (and added to the cache).
+	 * @return the number of versions resolved
+	 */
+	long getVersionsResolved();
+
+	/**
+	 * The number of dynamic versions served from the cache.
+	 * @return the number of versions cached
+	 */
+	long getVersionsCached();
+
+	/**
+	 * All the metrics (including the per-repository ones) as flat key-value pairs.
+	 * @return the metrics
+	 */
+	Map<String, String> getMetrics();
+
+	void reset();
+
+}
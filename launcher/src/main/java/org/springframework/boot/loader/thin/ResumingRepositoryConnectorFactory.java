@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+import org.eclipse.aether.spi.connector.MetadataUpload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.NoRepositoryConnectorException;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RepositoryConnectorFactory} that resumes artifact downloads that fail part of
+ * the way through. The basic connector streams downloads into a <code>.part</code> file
+ * next to the target, keeps it if the transfer fails (once it is bigger than the
+ * connector's resume threshold, 64KB by default), and asks the transporter for the rest
+ * with a range request (validated against the modification time of the partial file),
+ * but only the next time the artifact is needed. This connector asks again straight
+ * away, as long as the partial file grows, up to a limit set by a session config
+ * property ({@link #RESUMES}), so a large jar on a flaky link does not fail the whole
+ * resolution.
+ *
+ * @author Dave Syer
+ *
+ */
+class ResumingRepositoryConnectorFactory implements RepositoryConnectorFactory {
+
+	/**
+	 * Session config property for the number of times to resume an interrupted download.
+	 */
+	static final String RESUMES = "thin.download.resume";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(ResumingRepositoryConnectorFactory.class);
+
+	private final RepositoryConnectorFactory delegate;
+
+	@Inject
+	ResumingRepositoryConnectorFactory(
+			@Named("basic") RepositoryConnectorFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public RepositoryConnector newInstance(RepositorySystemSession session,
+			RemoteRepository repository) throws NoRepositoryConnectorException {
+		RepositoryConnector connector = this.delegate.newInstance(session, repository);
+		int resumes = ConfigUtils.getInteger(session, 0, RESUMES);
+		if (resumes <= 0 || !ConfigUtils.getBoolean(session, true,
+				"aether.connector.resumeDownloads." + repository.getId(),
+				"aether.connector.resumeDownloads")) {
+			return connector;
+		}
+		return new ResumingRepositoryConnector(connector, resumes);
+	}
+
+	@Override
+	public float getPriority() {
+		return this.delegate.getPriority();
+	}
+
+	private static class ResumingRepositoryConnector implements RepositoryConnector {
+
+		private final RepositoryConnector delegate;
+
+		private final int resumes;
+
+		ResumingRepositoryConnector(RepositoryConnector delegate, int resumes) {
+			this.delegate = delegate;
+			this.resumes = resumes;
+		}
+
+		@Override
+		public void get(Collection<? extends ArtifactDownload> artifactDownloads,
+				Collection<? extends MetadataDownload> metadataDownloads) {
+			if (artifactDownloads == null || artifactDownloads.isEmpty()) {
+				this.delegate.get(artifactDownloads, metadataDownloads);
+				return;
+			}
+			// A partial file might have been left by another repository or process
+			Map<ArtifactDownload, Long> progress = new HashMap<>();
+			for (ArtifactDownload download : artifactDownloads) {
+				progress.put(download, partial(download));
+			}
+			this.delegate.get(artifactDownloads, metadataDownloads);
+			for (int i = 0; i < this.resumes; i++) {
+				List<ArtifactDownload> interrupted = new ArrayList<>();
+				for (ArtifactDownload download : artifactDownloads) {
+					if (download.getException() == null || download
+							.getException() instanceof ArtifactNotFoundException) {
+						continue;
+					}
+					long length = partial(download);
+					// Only if this connector got further than last time
+					if (length > progress.put(download, length)) {
+						log.info("Resuming download of " + download.getArtifact()
+								+ " from byte " + length + " ("
+								+ download.getException().getMessage() + ")");
+						download.setException(null);
+						interrupted.add(download);
+					}
+				}
+				if (interrupted.isEmpty()) {
+					return;
+				}
+				this.delegate.get(interrupted, null);
+			}
+		}
+
+		/**
+		 * The length of the partial file for a download, or zero if there isn't one.
+		 */
+		private long partial(ArtifactDownload download) {
+			if (download.getFile() == null) {
+				return 0L;
+			}
+			return new File(download.getFile().getPath() + ".part").length();
+		}
+
+		@Override
+		public void put(Collection<? extends ArtifactUpload> artifactUploads,
+				Collection<? extends MetadataUpload> metadataUploads) {
+			this.delegate.put(artifactUploads, metadataUploads);
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ArtifactResolver} that chooses the remote repositories to ask for an
+ * artifact by its group id. Static routes (a map from group id prefix to repository
+ * ids, in session config property {@link #ROUTES}) restrict the repositories to the
+ * ones listed, in that order. Learned routes (in session config property
+ * {@link #LEARNED}) record which repository each group was downloaded from, and put
+ * that one first the next time, so the others are only asked if it has gone missing.
+ *
+ * @author Dave Syer
+ *
+ */
+class RoutingArtifactResolver implements ArtifactResolver {
+
+	/**
+	 * Session config property for the static routes (a map from group id prefix to a
+	 * list of repository ids).
+	 */
+	static final String ROUTES = "thin.routes.static";
+
+	/**
+	 * Session config property for the {@link Learned} routes.
+	 */
+	static final String LEARNED = "thin.routes.learned";
+
+	private static final Logger log = LoggerFactory
+			.getLogger(RoutingArtifactResolver.class);
+
+	private final ArtifactResolver delegate;
+
+	@Inject
+	RoutingArtifactResolver(@Named("parallel") ArtifactResolver delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ArtifactResult resolveArtifact(RepositorySystemSession session,
+			ArtifactRequest request) throws ArtifactResolutionException {
+		ArtifactResult result = this.delegate.resolveArtifact(session,
+				route(session, request));
+		learn(session, result);
+		return result;
+	}
+
+	@Override
+	public List<ArtifactResult> resolveArtifacts(RepositorySystemSession session,
+			Collection<? extends ArtifactRequest> requests)
+			throws ArtifactResolutionException {
+		List<ArtifactRequest> routed = new ArrayList<>();
+		for (ArtifactRequest request : requests) {
+			routed.add(route(session, request));
+		}
+		List<ArtifactResult> results;
+		try {
+			results = this.delegate.resolveArtifacts(session, routed);
+		}
+		catch (ArtifactResolutionException e) {
+			for (ArtifactResult result : e.getResults()) {
+				learn(session, result);
+			}
+			throw e;
+		}
+		for (ArtifactResult result : results) {
+			learn(session, result);
+		}
+		return results;
+	}
+
+	private ArtifactRequest route(RepositorySystemSession session,
+			ArtifactRequest request) {
+		List<RemoteRepository> repositories = request.getRepositories();
+		if (repositories.size() < 2) {
+			return request;
+		}
+		String group = request.getArtifact().getGroupId();
+		List<RemoteRepository> routed = null;
+		List<String> ids = match(routes(session), group);
+		if (ids != null) {
+			routed = new ArrayList<>();
+			for (String id : ids) {
+				for (RemoteRepository repository : repositories) {
+					if (repository.getId().equals(id)) {
+						routed.add(repository);
+					}
+				}
+			}
+			if (routed.isEmpty()) {
+				// None of them is in use, so better to ask everyone
+				routed = null;
+			}
+		}
+		Learned learned = learned(session);
+		if (routed == null && learned != null) {
+			String id = learned.get(group);
+			if (id != null && !repositories.get(0).getId().equals(id)) {
+				for (RemoteRepository repository : repositories) {
+					if (repository.getId().equals(id)) {
+						routed = new ArrayList<>(repositories);
+						routed.remove(repository);
+						routed.add(0, repository);
+						break;
+					}
+				}
+			}
+		}
+		if (routed == null) {
+			return request;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Routing " + request.getArtifact() + " to " + routed);
+		}
+		ArtifactRequest result = new ArtifactRequest(request.getArtifact(), routed,
+				request.getRequestContext());
+		result.setDependencyNode(request.getDependencyNode());
+		result.setTrace(request.getTrace());
+		return result;
+	}
+
+	private void learn(RepositorySystemSession session, ArtifactResult result) {
+		Learned learned = learned(session);
+		if (learned == null || result == null || !result.isResolved()) {
+			return;
+		}
+		ArtifactRepository repository = result.getRepository();
+		if (repository instanceof RemoteRepository) {
+			learned.put(result.getArtifact().getGroupId(), repository.getId());
+		}
+	}
+
+	private static List<String> match(Map<String, List<String>> routes, String group) {
+		if (routes == null || routes.isEmpty()) {
+			return null;
+		}
+		String prefix = group;
+		while (true) {
+			List<String> ids = routes.get(prefix);
+			if (ids != null) {
+				return ids;
+			}
+			int dot = prefix.lastIndexOf('.');
+			if (dot < 0) {
+				return null;
+			}
+			prefix = prefix.substring(0, dot);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, List<String>> routes(RepositorySystemSession session) {
+		Object value = session.getConfigProperties().get(ROUTES);
+		return value instanceof Map ? (Map<String, List<String>>) value : null;
+	}
+
+	private static Learned learned(RepositorySystemSession session) {
+		Object value = session.getConfigProperties().get(LEARNED);
+		return value instanceof Learned ? (Learned) value : null;
+	}
+
+	/**
+	 * The repository that each group id was last downloaded from, kept in a properties
+	 * file.
+	 */
+	static class Learned {
+
+		private final File file;
+
+		private final Map<String, String> routes = new ConcurrentHashMap<>();
+
+		private volatile boolean dirty;
+
+		Learned(File file) {
+			this.file = file;
+			if (file.exists()) {
+				Properties properties = new Properties();
+				try (InputStream stream = new FileInputStream(file)) {
+					properties.load(stream);
+				}
+				catch (IOException e) {
+					log.debug("Cannot read routes: " + file, e);
+				}
+				for (String name : properties.stringPropertyNames()) {
+					this.routes.put(name, properties.getProperty(name));
+				}
+			}
+		}
+
+		String get(String group) {
+			return this.routes.get(group);
+		}
+
+		void put(String group, String id) {
+			if (!id.equals(this.routes.put(group, id))) {
+				this.dirty = true;
+			}
+		}
+
+		/**
+		 * Save the routes if they have changed.
+		 */
+		synchronized void save() {
+			if (!this.dirty) {
+				return;
+			}
+			this.dirty = false;
+			Properties properties = new Properties();
+			properties.putAll(this.routes);
+			try {
+				this.file.getParentFile().mkdirs();
+				File temp = File.createTempFile(this.file.getName(), ".tmp",
+						this.file.getParentFile());
+				try (OutputStream stream = new FileOutputStream(temp)) {
+					properties.store(stream, "Repository that served each group id");
+				}
+				Files.move(temp.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e) {
+				log.debug("Cannot save routes: " + this.file, e);
+			}
+		}
+
+	}
+
+}
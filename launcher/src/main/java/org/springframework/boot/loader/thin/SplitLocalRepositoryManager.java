@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalArtifactRegistration;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalMetadataRegistration;
+import org.eclipse.aether.repository.LocalMetadataRequest;
+import org.eclipse.aether.repository.LocalMetadataResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * A {@link LocalRepositoryManager} that hands release artifacts to one delegate and
+ * snapshots (and all metadata) to another. It is used to trust the release artifacts in
+ * the local repository (a simple manager only checks that the file is there) while
+ * still tracking where the snapshots came from, since a snapshot with the same name can
+ * be different in different repositories (or installed locally). Both delegates must
+ * use the same local repository and layout.
+ *
+ * @author Dave Syer
+ *
+ */
+class SplitLocalRepositoryManager implements LocalRepositoryManager {
+
+	private final LocalRepositoryManager releases;
+
+	private final LocalRepositoryManager snapshots;
+
+	SplitLocalRepositoryManager(LocalRepositoryManager releases,
+			LocalRepositoryManager snapshots) {
+		this.releases = releases;
+		this.snapshots = snapshots;
+	}
+
+	@Override
+	public LocalRepository getRepository() {
+		return this.snapshots.getRepository();
+	}
+
+	@Override
+	public String getPathForLocalArtifact(Artifact artifact) {
+		return manager(artifact).getPathForLocalArtifact(artifact);
+	}
+
+	@Override
+	public String getPathForRemoteArtifact(Artifact artifact, RemoteRepository repository,
+			String context) {
+		return manager(artifact).getPathForRemoteArtifact(artifact, repository, context);
+	}
+
+	@Override
+	public String getPathForLocalMetadata(Metadata metadata) {
+		return this.snapshots.getPathForLocalMetadata(metadata);
+	}
+
+	@Override
+	public String getPathForRemoteMetadata(Metadata metadata, RemoteRepository repository,
+			String context) {
+		return this.snapshots.getPathForRemoteMetadata(metadata, repository, context);
+	}
+
+	@Override
+	public LocalArtifactResult find(RepositorySystemSession session,
+			LocalArtifactRequest request) {
+		return manager(request.getArtifact()).find(session, request);
+	}
+
+	@Override
+	public void add(RepositorySystemSession session,
+			LocalArtifactRegistration request) {
+		manager(request.getArtifact()).add(session, request);
+	}
+
+	@Override
+	public LocalMetadataResult find(RepositorySystemSession session,
+			LocalMetadataRequest request) {
+		return this.snapshots.find(session, request);
+	}
+
+	@Override
+	public void add(RepositorySystemSession session,
+			LocalMetadataRegistration request) {
+		this.snapshots.add(session, request);
+	}
+
+	private LocalRepositoryManager manager(Artifact artifact) {
+		return artifact.isSnapshot() ? this.snapshots : this.releases;
+	}
+
+}
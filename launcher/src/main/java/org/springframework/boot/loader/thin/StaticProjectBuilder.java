@@ -0,0 +1,414 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingResult;
+import org.apache.maven.model.building.ModelCache;
+import org.apache.maven.model.building.ModelProblem;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.project.DependencyResolutionResult;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingRequest.RepositoryMerging;
+import org.apache.maven.project.ProjectBuildingResult;
+import org.apache.maven.project.ProjectModelResolver;
+import org.apache.maven.repository.internal.ArtifactDescriptorUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.RequestTrace;
+import org.eclipse.aether.artifact.ArtifactType;
+import org.eclipse.aether.artifact.ArtifactTypeRegistry;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.impl.RemoteRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link ProjectBuilder} for the static bootstrap (see
+ * {@link DependencyResolver#THIN_BOOTSTRAP}) that builds the effective model of a single
+ * pom and resolves its dependencies directly with the {@link ModelBuilder} and the
+ * {@link RepositorySystem}, so it does not need a Plexus container. It follows what the
+ * default Maven project builder and project dependencies resolver do for a model source
+ * without plugins: the request repositories (dominant by default) are merged with the
+ * ones declared in the pom, collection and resolution errors end up in the
+ * {@link DependencyResolutionResult} instead of being thrown. Pom files and artifacts
+ * are built the same way, as model sources, and a missing artifact can have a stub model
+ * if the caller allows it.
+ *
+ * @author Dave Syer
+ *
+ */
+class StaticProjectBuilder implements ProjectBuilder {
+
+	private final ModelBuilder modelBuilder;
+
+	private final RepositorySystem repositorySystem;
+
+	private final RemoteRepositoryManager remoteRepositoryManager;
+
+	@Inject
+	StaticProjectBuilder(ModelBuilder modelBuilder, RepositorySystem repositorySystem,
+			RemoteRepositoryManager remoteRepositoryManager) {
+		this.modelBuilder = modelBuilder;
+		this.repositorySystem = repositorySystem;
+		this.remoteRepositoryManager = remoteRepositoryManager;
+	}
+
+	@Override
+	public ProjectBuildingResult build(ModelSource source, ProjectBuildingRequest request)
+			throws ProjectBuildingException {
+		return build(null, source, request);
+	}
+
+	private ProjectBuildingResult build(File pomFile, ModelSource source,
+			ProjectBuildingRequest request) throws ProjectBuildingException {
+		RepositorySystemSession session = request.getRepositorySession();
+		RequestTrace trace = RequestTrace.newChild(null, request);
+		List<RemoteRepository> repositories = RepositoryUtils
+				.toRepos(request.getRemoteRepositories());
+		DefaultModelBuildingRequest modelRequest = new DefaultModelBuildingRequest();
+		modelRequest.setValidationLevel(request.getValidationLevel());
+		modelRequest.setProcessPlugins(request.isProcessPlugins());
+		modelRequest.setProfiles(request.getProfiles());
+		modelRequest.setActiveProfileIds(request.getActiveProfileIds());
+		modelRequest.setInactiveProfileIds(request.getInactiveProfileIds());
+		modelRequest.setSystemProperties(request.getSystemProperties());
+		modelRequest.setUserProperties(request.getUserProperties());
+		modelRequest.setBuildStartTime(request.getBuildStartTime());
+		modelRequest.setModelResolver(new ProjectModelResolver(session, trace,
+				this.repositorySystem, this.remoteRepositoryManager, repositories,
+				request.getRepositoryMerging(), null));
+		modelRequest.setModelCache(new MapModelCache());
+		modelRequest.setLocationTracking(true);
+		modelRequest.setModelSource(source);
+		modelRequest.setPomFile(pomFile);
+		ModelBuildingResult built;
+		try {
+			built = this.modelBuilder.build(modelRequest);
+		}
+		catch (ModelBuildingException e) {
+			throw new ProjectBuildingException(e.getModelId(), e.getMessage(), e);
+		}
+		Model model = built.getEffectiveModel();
+		MavenProject project = new MavenProject(model);
+		project.setFile(pomFile);
+		DependencyResolutionResult dependencies = null;
+		if (request.isResolveDependencies()) {
+			dependencies = resolve(session, trace, model,
+					repositories(session, request, repositories, model));
+		}
+		return new Result(project, pomFile, built.getProblems(), dependencies);
+	}
+
+	private List<RemoteRepository> repositories(RepositorySystemSession session,
+			ProjectBuildingRequest request, List<RemoteRepository> external,
+			Model model) {
+		List<RemoteRepository> declared = new ArrayList<>();
+		for (Repository repository : model.getRepositories()) {
+			declared.add(ArtifactDescriptorUtils.toRemoteRepository(repository));
+		}
+		if (request.getRepositoryMerging() == RepositoryMerging.POM_DOMINANT) {
+			// Mirrors etc. are only applied to the recessive (raw) repositories
+			declared = this.remoteRepositoryManager.aggregateRepositories(session,
+					Collections.<RemoteRepository>emptyList(), declared, true);
+			return this.remoteRepositoryManager.aggregateRepositories(session, declared,
+					external, false);
+		}
+		return this.remoteRepositoryManager.aggregateRepositories(session, external,
+				declared, true);
+	}
+
+	private DependencyResolutionResult resolve(RepositorySystemSession session,
+			RequestTrace trace, Model model, List<RemoteRepository> repositories) {
+		ArtifactTypeRegistry stereotypes = session.getArtifactTypeRegistry();
+		ArtifactType type = stereotypes.get(model.getPackaging());
+		CollectRequest collect = new CollectRequest();
+		collect.setRootArtifact(new DefaultArtifact(model.getGroupId(),
+				model.getArtifactId(), null,
+				type != null ? type.getExtension() : model.getPackaging(),
+				model.getVersion()));
+		collect.setRequestContext("project");
+		collect.setRepositories(repositories);
+		for (org.apache.maven.model.Dependency dependency : model.getDependencies()) {
+			if (!StringUtils.hasText(dependency.getGroupId())
+					|| !StringUtils.hasText(dependency.getArtifactId())
+					|| !StringUtils.hasText(dependency.getVersion())) {
+				continue;
+			}
+			collect.addDependency(RepositoryUtils.toDependency(dependency, stereotypes));
+		}
+		if (model.getDependencyManagement() != null) {
+			for (org.apache.maven.model.Dependency dependency : model
+					.getDependencyManagement().getDependencies()) {
+				collect.addManagedDependency(
+						RepositoryUtils.toDependency(dependency, stereotypes));
+			}
+		}
+		DependencyRequest request = new DependencyRequest(collect, null);
+		request.setTrace(trace);
+		collect.setTrace(RequestTrace.newChild(trace, request));
+		Resolution result = new Resolution();
+		DependencyNode node;
+		try {
+			node = this.repositorySystem.collectDependencies(session, collect).getRoot();
+			result.graph = node;
+		}
+		catch (DependencyCollectionException e) {
+			result.graph = e.getResult().getRoot();
+			result.collectionErrors.addAll(e.getResult().getExceptions());
+			return result;
+		}
+		request.setRoot(node);
+		try {
+			result.process(this.repositorySystem.resolveDependencies(session, request)
+					.getArtifactResults());
+		}
+		catch (DependencyResolutionException e) {
+			result.process(e.getResult().getArtifactResults());
+		}
+		return result;
+	}
+
+	@Override
+	public ProjectBuildingResult build(File projectFile, ProjectBuildingRequest request)
+			throws ProjectBuildingException {
+		return build(projectFile, new FileModelSource(projectFile), request);
+	}
+
+	@Override
+	public ProjectBuildingResult build(Artifact projectArtifact,
+			ProjectBuildingRequest request) throws ProjectBuildingException {
+		return build(projectArtifact, false, request);
+	}
+
+	@Override
+	public ProjectBuildingResult build(Artifact projectArtifact,
+			boolean allowStubModel, ProjectBuildingRequest request)
+			throws ProjectBuildingException {
+		org.eclipse.aether.artifact.Artifact pom = ArtifactDescriptorUtils
+				.toPomArtifact(RepositoryUtils.toArtifact(projectArtifact));
+		ArtifactRequest artifactRequest = new ArtifactRequest(pom,
+				RepositoryUtils.toRepos(request.getRemoteRepositories()), "project");
+		artifactRequest.setTrace(RequestTrace.newChild(null, request));
+		File file;
+		try {
+			file = this.repositorySystem
+					.resolveArtifact(request.getRepositorySession(), artifactRequest)
+					.getArtifact().getFile();
+		}
+		catch (ArtifactResolutionException e) {
+			if (!allowStubModel) {
+				throw new ProjectBuildingException(projectArtifact.getId(),
+						"Error resolving project artifact: " + e.getMessage(), e);
+			}
+			// Like Maven, a project that is not in any repository has a bare model
+			Model model = new Model();
+			model.setModelVersion("4.0.0");
+			model.setGroupId(projectArtifact.getGroupId());
+			model.setArtifactId(projectArtifact.getArtifactId());
+			model.setVersion(projectArtifact.getVersion());
+			model.setPackaging(StringUtils.hasText(projectArtifact.getType())
+					? projectArtifact.getType() : "jar");
+			return new Result(new MavenProject(model), null,
+					Collections.<ModelProblem>emptyList(), null);
+		}
+		return build(file, new FileModelSource(file), request);
+	}
+
+	@Override
+	public List<ProjectBuildingResult> build(List<File> pomFiles, boolean recursive,
+			ProjectBuildingRequest request) throws ProjectBuildingException {
+		List<ProjectBuildingResult> results = new ArrayList<>();
+		for (File pomFile : pomFiles) {
+			ProjectBuildingResult result = build(pomFile, request);
+			results.add(result);
+			if (recursive) {
+				List<File> modules = new ArrayList<>();
+				for (String module : result.getProject().getModules()) {
+					File file = new File(pomFile.getParentFile(), module);
+					modules.add(file.isDirectory() ? new File(file, "pom.xml") : file);
+				}
+				results.addAll(build(modules, recursive, request));
+			}
+		}
+		return results;
+	}
+
+	private static class Result implements ProjectBuildingResult {
+
+		private final MavenProject project;
+
+		private final File pomFile;
+
+		private final List<ModelProblem> problems;
+
+		private final DependencyResolutionResult dependencies;
+
+		Result(MavenProject project, File pomFile, List<ModelProblem> problems,
+				DependencyResolutionResult dependencies) {
+			this.project = project;
+			this.pomFile = pomFile;
+			this.problems = problems;
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public String getProjectId() {
+			return this.project.getId();
+		}
+
+		@Override
+		public File getPomFile() {
+			return this.pomFile;
+		}
+
+		@Override
+		public MavenProject getProject() {
+			return this.project;
+		}
+
+		@Override
+		public List<ModelProblem> getProblems() {
+			return this.problems;
+		}
+
+		@Override
+		public DependencyResolutionResult getDependencyResolutionResult() {
+			return this.dependencies;
+		}
+
+	}
+
+	private static class Resolution implements DependencyResolutionResult {
+
+		private DependencyNode graph;
+
+		private final List<Dependency> dependencies = new ArrayList<>();
+
+		private final List<Dependency> resolved = new ArrayList<>();
+
+		private final List<Dependency> unresolved = new ArrayList<>();
+
+		private final List<Exception> collectionErrors = new ArrayList<>();
+
+		private final Map<Dependency, List<Exception>> resolutionErrors = new IdentityHashMap<>();
+
+		void process(Collection<ArtifactResult> results) {
+			for (ArtifactResult result : results) {
+				Dependency dependency = result.getRequest().getDependencyNode()
+						.getDependency();
+				this.dependencies.add(dependency);
+				if (result.isResolved()) {
+					this.resolved.add(dependency);
+				}
+				else {
+					this.unresolved.add(dependency);
+					this.resolutionErrors.put(dependency, result.getExceptions());
+				}
+			}
+		}
+
+		@Override
+		public DependencyNode getDependencyGraph() {
+			return this.graph;
+		}
+
+		@Override
+		public List<Dependency> getDependencies() {
+			return this.dependencies;
+		}
+
+		@Override
+		public List<Dependency> getResolvedDependencies() {
+			return this.resolved;
+		}
+
+		@Override
+		public List<Dependency> getUnresolvedDependencies() {
+			return this.unresolved;
+		}
+
+		@Override
+		public List<Exception> getCollectionErrors() {
+			return this.collectionErrors;
+		}
+
+		@Override
+		public List<Exception> getResolutionErrors(Dependency dependency) {
+			List<Exception> errors = this.resolutionErrors.get(dependency);
+			return errors != null ? errors : Collections.<Exception>emptyList();
+		}
+
+	}
+
+	/**
+	 * Parent and imported models, cached for the duration of one build.
+	 */
+	private static class MapModelCache implements ModelCache {
+
+		private final Map<String, Object> models = new HashMap<>();
+
+		@Override
+		public Object get(String groupId, String artifactId, String version,
+				String tag) {
+			return this.models.get(key(groupId, artifactId, version, tag));
+		}
+
+		@Override
+		public void put(String groupId, String artifactId, String version, String tag,
+				Object data) {
+			this.models.put(key(groupId, artifactId, version, tag), data);
+		}
+
+		private String key(String groupId, String artifactId, String version,
+				String tag) {
+			return groupId + ":" + artifactId + ":" + version + ":" + tag;
+		}
+
+	}
+
+}
@@ -17,6 +17,8 @@
 package org.springframework.boot.loader.thin;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -154,6 +156,37 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 	 */
 	public static final String THIN_LIBS = "thin.libs";
 
+	/**
+	 * System property holding the path to a file where the launcher writes suggested
+	 * exclusions (in thin.properties format) for dependencies that cannot be reached
+	 * from the application's entry points. If set, dependencies are resolved and
+	 * analyzed, but the main method is not executed.
+	 */
+	public static final String THIN_TRIM = "thin.trim";
+
+	/**
+	 * System property holding the path to a file where the launcher writes the
+	 * resolver metrics (in properties format) after the dependencies are resolved:
+	 * artifacts resolved, local hits, downloads, bytes, and request counts, misses,
+	 * errors and latencies for each remote repository. Default empty (no file).
+	 */
+	public static final String THIN_METRICS = "thin.metrics";
+
+	/**
+	 * Flag to say that the resolver metrics should be registered as a JMX MBean (named
+	 * {@value ResolverMetrics#OBJECT_NAME}) in the platform MBean server, so they can be
+	 * watched while the application runs. Default false.
+	 */
+	public static final String THIN_METRICS_JMX = "thin.metrics.jmx";
+
+	/**
+	 * Flag to print a report on the content store (in
+	 * {@link DependencyResolver#THIN_STORE}) instead of running the app: the number and
+	 * size of the distinct files, how many repository files link to them, and the
+	 * bytes saved by sharing them. Default false.
+	 */
+	public static final String THIN_STORE_REPORT = "thin.store.report";
+
 	private StandardEnvironment environment = new StandardEnvironment();
 
 	private boolean debug;
@@ -196,6 +229,10 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 			}
 		}
 		this.libs.addAll(ArchiveUtils.getArchives(environment.resolvePlaceholders("${thin.libs:}")));
+		if (!"false".equals(environment
+				.resolvePlaceholders("${" + THIN_METRICS_JMX + ":false}"))) {
+			DependencyResolver.metrics().register();
+		}
 		if (classpath) {
 			List<Archive> archives = getClassPathArchives();
 			System.out.println(classpath(archives));
@@ -206,6 +243,22 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 			System.out.println(properties(dependencies));
 			return;
 		}
+		if (!"false".equals(environment
+				.resolvePlaceholders("${" + THIN_STORE_REPORT + ":false}"))) {
+			String store = environment
+					.resolvePlaceholders("${" + DependencyResolver.THIN_STORE + ":}");
+			if (!StringUtils.hasText(store)) {
+				throw new IllegalStateException(
+						"No content store (" + DependencyResolver.THIN_STORE + ")");
+			}
+			System.out.println(new ContentStore(new File(store)).report());
+			return;
+		}
+		String trim = environment.resolvePlaceholders("${" + THIN_TRIM + ":}");
+		if (StringUtils.hasText(trim)) {
+			trim(new File(trim));
+			return;
+		}
 		log.info("Version: " + getVersion());
 		if (!"false".equals(
 				environment.resolvePlaceholders("${" + THIN_DRYRUN + ":false}"))) {
@@ -218,6 +271,22 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		super.launch(args);
 	}
 
+	private void trim(File output) throws Exception {
+		List<Dependency> dependencies = getDependencies();
+		ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(
+				ArchiveUtils.getArchiveRoot(getArchive()), dependencies);
+		ReachabilityAnalyzer.Report report = analyzer.analyze(getMainClass());
+		if (output.getParentFile() != null) {
+			output.getParentFile().mkdirs();
+		}
+		try (OutputStream stream = new FileOutputStream(output)) {
+			report.toProperties().store(stream, "Suggested exclusions from thin launcher");
+		}
+		log.info("Unreachable dependencies: " + report.getUnused().size() + " ("
+				+ report.getSavedClasses() + " classes, " + report.getSavedBytes()
+				+ " bytes)");
+	}
+
 	@Override
 	protected Iterator<Archive> getClassPathArchivesIterator() throws Exception {
 		return getClassPathArchives().iterator();
@@ -400,9 +469,23 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		if (log.isInfoEnabled()) {
 			log.info("Dependencies resolved in: " + (t1 - t0) + "ms");
 		}
+		String metrics = environment.resolvePlaceholders("${" + THIN_METRICS + ":}");
+		if (StringUtils.hasText(metrics)) {
+			metrics(new File(metrics));
+		}
 		return archives;
 	}
 
+	private void metrics(File output) throws Exception {
+		if (output.getParentFile() != null) {
+			output.getParentFile().mkdirs();
+		}
+		try (OutputStream stream = new FileOutputStream(output)) {
+			DependencyResolver.metrics().toProperties().store(stream,
+					"Dependency resolver metrics from thin launcher");
+		}
+	}
+
 	protected List<Dependency> getDependencies() throws Exception {
 		String name = environment
 				.resolvePlaceholders("${" + ThinJarLauncher.THIN_NAME + ":thin}");
@@ -441,7 +524,14 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		if (!"false".equals(force)) {
 			resolver.setForce(true);
 		}
-		resolver.setOverrides(getSystemProperties());
+		Properties overrides = getSystemProperties();
+		for (String option : DependencyResolver.OPTIONS) {
+			String value = environment.getProperty(option);
+			if (value != null) {
+				overrides.setProperty(option, value);
+			}
+		}
+		resolver.setOverrides(overrides);
 		return resolver;
 	}
 
@@ -33,6 +33,7 @@ import org.apache.maven.model.DependencyManagement;
 import org.apache.maven.model.Exclusion;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.building.DefaultModelProcessor;
+import org.apache.maven.model.building.ModelProcessor;
 import org.eclipse.aether.artifact.DefaultArtifact;
 
 import org.springframework.util.Assert;
@@ -59,13 +60,13 @@ class ThinPropertiesModelProcessor extends DefaultModelProcessor {
 	@Override
 	public Model read(File input, Map<String, ?> options) throws IOException {
 		Model model = super.read(input, options);
-		return process(model);
+		return process(model, options);
 	}
 
 	@Override
 	public Model read(Reader input, Map<String, ?> options) throws IOException {
 		Model model = super.read(input, options);
-		return process(model);
+		return process(model, options);
 	}
 
 	@Override
@@ -76,14 +77,19 @@ class ThinPropertiesModelProcessor extends DefaultModelProcessor {
 				public void close() throws IOException {
 				}
 			}, options);
-			return process(model);
+			return process(model, options);
 		} finally {
 			input.close();
 		}
 	}
 
-	private Model process(Model model) {
-		Properties properties = DependencyResolver.getGlobals();
+	private Model process(Model model, Map<String, ?> options) {
+		// Only the root model (from the archive being resolved) carries thin properties,
+		// and they travel with its source, so concurrent builds do not see each other's
+		Object source = options == null ? null : options.get(ModelProcessor.SOURCE);
+		Properties properties = source instanceof DependencyResolver.PropertiesModelSource
+				? ((DependencyResolver.PropertiesModelSource) source).getProperties()
+				: null;
 		return process(model, properties);
 	}
 
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the files in a local repository that have been verified against their
+ * SHA-1 checksums (the <code>.sha1</code> files next to them), with the size and
+ * modification time they had when they were verified. A file that has not changed since
+ * then is trusted without reading it again, so verification is free on a warm start.
+ * Files that were just downloaded are recorded without hashing them again, because the
+ * connector validated them while they were streamed to disk. If the checksum came in a
+ * response header, so there is no <code>.sha1</code> file, the download is hashed once
+ * and the index keeps the result. Everything else is hashed in parallel, and a file with
+ * no checksum at all fails. The index is kept in a single binary file in the local
+ * repository.
+ *
+ * @author Dave Syer
+ *
+ */
+class VerifiedDigests extends AbstractRepositoryListener {
+
+	static final String FILE_NAME = ".thin-verified";
+
+	private static final Logger log = LoggerFactory.getLogger(VerifiedDigests.class);
+
+	private static final int MAGIC = 0x7468696e;
+
+	private static final int VERSION = 1;
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	private final File repository;
+
+	private final File file;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private volatile boolean dirty;
+
+	VerifiedDigests(File repository) {
+		this.repository = repository.getAbsoluteFile();
+		this.file = new File(this.repository, FILE_NAME);
+		load();
+	}
+
+	@Override
+	public void artifactDownloaded(RepositoryEvent event) {
+		if (event.getException() == null && event.getFile() != null) {
+			File file = event.getFile();
+			String checksum = expected(file);
+			if (checksum == null) {
+				// Validated against a header, so there is no file to check it against
+				// later
+				try {
+					checksum = Digests.sha1(file.toPath());
+				}
+				catch (IOException e) {
+					log.debug("Cannot hash download: " + file, e);
+					return;
+				}
+			}
+			this.entries.put(path(file),
+					new Entry(file.length(), file.lastModified(), checksum));
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Verify the files against their checksums, using the index for the ones that have
+	 * not changed since they were last verified, and hashing the rest in parallel.
+	 * Files that are not in the local repository are ignored, and files that have no
+	 * checksum fail.
+	 * @param files the files to verify
+	 * @param threads the maximum number of files to hash concurrently
+	 * @return the files that failed verification (empty if they are all OK)
+	 */
+	List<File> verify(Collection<File> files, int threads) {
+		List<File> pending = new ArrayList<>();
+		for (File file : files) {
+			if (file == null || !file.isFile() || !isLocal(file)) {
+				continue;
+			}
+			Entry entry = this.entries.get(path(file));
+			if (entry != null && entry.size == file.length()
+					&& entry.modified == file.lastModified()) {
+				continue;
+			}
+			pending.add(file);
+		}
+		List<File> failed = new ArrayList<>();
+		if (pending.isEmpty()) {
+			return failed;
+		}
+		log.info("Verifying checksums of " + pending.size() + " files");
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.min(threads, pending.size()), runnable -> {
+					Thread thread = new Thread(runnable,
+							"thin-verify-" + counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (File file : pending) {
+				results.add(executor.submit(() -> check(file)));
+			}
+			for (int i = 0; i < pending.size(); i++) {
+				try {
+					if (!results.get(i).get()) {
+						failed.add(pending.get(i));
+					}
+				}
+				catch (Exception e) {
+					failed.add(pending.get(i));
+				}
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return failed;
+	}
+
+	/**
+	 * Save the index if it has changed.
+	 */
+	synchronized void save() {
+		if (!this.dirty) {
+			return;
+		}
+		this.dirty = false;
+		try {
+			File temp = File.createTempFile(FILE_NAME, ".tmp", this.repository);
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				List<Map.Entry<String, Entry>> values = new ArrayList<>(
+						this.entries.entrySet());
+				output.writeInt(values.size());
+				for (Map.Entry<String, Entry> value : values) {
+					output.writeUTF(value.getKey());
+					output.writeLong(value.getValue().size);
+					output.writeLong(value.getValue().modified);
+					output.writeUTF(value.getValue().checksum);
+				}
+			}
+			Files.move(temp.toPath(), this.file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException e) {
+			log.debug("Cannot save verified digests: " + this.file, e);
+		}
+	}
+
+	private void load() {
+		if (!this.file.exists()) {
+			return;
+		}
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(this.file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				return;
+			}
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = input.readUTF();
+				long size = input.readLong();
+				long modified = input.readLong();
+				this.entries.put(path, new Entry(size, modified, input.readUTF()));
+			}
+		}
+		catch (IOException e) {
+			log.debug("Cannot read verified digests: " + this.file, e);
+			this.entries.clear();
+		}
+	}
+
+	private boolean check(File file) throws IOException {
+		String expected = expected(file);
+		if (expected == null) {
+			Entry entry = this.entries.get(path(file));
+			if (entry == null) {
+				log.warn("No checksum for " + file);
+				return false;
+			}
+			expected = entry.checksum;
+		}
+		long size = file.length();
+		long modified = file.lastModified();
+		String actual = Digests.sha1(file.toPath());
+		if (!expected.equals(actual)) {
+			log.warn("Checksum mismatch for " + file + ": expected " + expected
+					+ " but was " + actual);
+			this.entries.remove(path(file));
+			return false;
+		}
+		this.entries.put(path(file), new Entry(size, modified, actual));
+		this.dirty = true;
+		return true;
+	}
+
+	private boolean isLocal(File file) {
+		return file.getAbsolutePath().startsWith(this.repository.getPath());
+	}
+
+	private String path(File file) {
+		return file.getAbsolutePath().substring(this.repository.getPath().length());
+	}
+
+	private static String expected(File file) {
+		File sha1 = new File(file.getPath() + ".sha1");
+		if (!sha1.isFile()) {
+			return null;
+		}
+		try {
+			String value = new String(Files.readAllBytes(sha1.toPath()),
+					StandardCharsets.UTF_8).trim();
+			// Some repositories add the file name after the checksum
+			int space = value.indexOf(' ');
+			return (space < 0 ? value : value.substring(0, space)).toLowerCase();
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static class Entry {
+
+		private final long size;
+
+		private final long modified;
+
+		private final String checksum;
+
+		Entry(long size, long modified, String checksum) {
+			this.size = size;
+			this.modified = modified;
+			this.checksum = checksum;
+		}
+
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverBomTests {
+
+	private static final String GROUP = "com.example.bom";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.install(remote, GROUP, "lib", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "lib", "2.0", 1024);
+		LocalRepositoryServer.pom(remote, GROUP, "parent", "1.0",
+				"<packaging>pom</packaging>"
+						+ "<properties><lib.version>1.0</lib.version></properties>");
+		bom(remote, "${lib.version}");
+		app = LocalRepositoryServer.app(dir, "<dependency><groupId>" + GROUP
+				+ "</groupId><artifactId>lib</artifactId></dependency>");
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void cached() throws Exception {
+		Properties properties = properties();
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		assertThat(new File(root, "cache/boms").list()).hasSize(1);
+		DependencyResolver.close();
+		// The parent of the BOM is not needed any more
+		FileSystemUtils.deleteRecursively(
+				new File(root, "repository/com/example/bom/parent"));
+		server.reset();
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		assertThat(server.getRequests()).noneMatch(request -> request.contains("parent"));
+	}
+
+	@Test
+	public void staticBootstrap() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_BOOTSTRAP, "static");
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		assertThat(new File(root, "cache/boms").list()).hasSize(1);
+	}
+
+	@Test
+	public void changed() throws Exception {
+		Properties properties = properties();
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		DependencyResolver.close();
+		// Installed locally with different content
+		bom(new File(root, "repository"), "2.0");
+		assertThat(resolve(properties)).isEqualTo("2.0");
+	}
+
+	@Test
+	public void overridden() throws Exception {
+		Properties properties = properties();
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		DependencyResolver.close();
+		properties.setProperty("lib.version", "2.0");
+		assertThat(resolve(properties)).isEqualTo("2.0");
+		assertThat(new File(root, "cache/boms").list()).hasSize(2);
+	}
+
+	@Test
+	public void switchedOff() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_BOMS, "false");
+		assertThat(resolve(properties)).isEqualTo("1.0");
+		assertThat(new File(root, "cache/boms")).doesNotExist();
+	}
+
+	private void bom(File repository, String version) throws Exception {
+		LocalRepositoryServer.pom(repository, GROUP, "bom", "1.0",
+				"<packaging>pom</packaging><parent><groupId>" + GROUP
+						+ "</groupId><artifactId>parent</artifactId>"
+						+ "<version>1.0</version></parent>"
+						+ "<dependencyManagement><dependencies><dependency><groupId>"
+						+ GROUP + "</groupId><artifactId>lib</artifactId><version>"
+						+ version + "</version></dependency></dependencies>"
+						+ "</dependencyManagement>");
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty("boms.bom", GROUP + ":bom:1.0");
+		return properties;
+	}
+
+	private String resolve(Properties properties) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		assertThat(dependencies).hasSize(1);
+		return dependencies.get(0).getArtifact().getVersion();
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.apache.maven.model.Model;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverBootstrapTests {
+
+	private static final String GROUP = "com.example.bootstrap";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.pom(remote, GROUP, "parent", "1.0",
+				"<packaging>pom</packaging><properties><c.version>1.0</c.version>"
+						+ "</properties>");
+		LocalRepositoryServer.pom(remote, GROUP, "bom", "1.0",
+				"<packaging>pom</packaging><dependencyManagement><dependencies>"
+						+ dependency("c", "2.0", "") + "</dependencies>"
+						+ "</dependencyManagement>");
+		LocalRepositoryServer.install(remote, GROUP, "a", "1.0", 1024,
+				"<dependencies>" + dependency("b", "1.0", "")
+						+ dependency("c", "1.0", "") + "</dependencies>");
+		LocalRepositoryServer.install(remote, GROUP, "b", "1.0", 1024,
+				"<dependencies>" + dependency("d", "1.0", "<scope>test</scope>")
+						+ "</dependencies>");
+		LocalRepositoryServer.install(remote, GROUP, "c", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "c", "2.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "d", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "e", "1.0", 1024);
+		app = LocalRepositoryServer.app(dir, "0.0.1",
+				"<parent><groupId>" + GROUP + "</groupId><artifactId>parent</artifactId>"
+						+ "<version>1.0</version></parent>"
+						+ "<dependencyManagement><dependencies>"
+						+ dependency("bom", "1.0",
+								"<type>pom</type><scope>import</scope>")
+						+ "</dependencies></dependencyManagement><dependencies>"
+						+ dependency("a", "1.0", "") + "</dependencies>");
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void sameDependencies() throws Exception {
+		List<String> expected = resolve("plexus");
+		assertThat(expected).contains(GROUP + ":c:jar:2.0", GROUP + ":e:jar:1.0");
+		assertThat(expected).noneMatch(coordinates -> coordinates.contains(":d:"));
+		DependencyResolver.close();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache"));
+		assertThat(resolve("static")).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	public void sameModel() throws Exception {
+		Model expected = model("plexus");
+		DependencyResolver.close();
+		Model model = model("static");
+		assertThat(model.getParent().getArtifactId()).isEqualTo("parent");
+		assertThat(model.getProperties()).isEqualTo(expected.getProperties());
+		assertThat(coordinates(model.getDependencies()))
+				.isEqualTo(coordinates(expected.getDependencies()));
+		assertThat(coordinates(model.getDependencyManagement().getDependencies()))
+				.isEqualTo(coordinates(
+						expected.getDependencyManagement().getDependencies()));
+	}
+
+	private Model model(String bootstrap) {
+		return DependencyResolver.instance().readModel(app, properties(bootstrap));
+	}
+
+	private List<String> resolve(String bootstrap) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties(bootstrap));
+		return dependencies.stream().map(d -> d.getArtifact().toString())
+				.collect(Collectors.toList());
+	}
+
+	private Properties properties(String bootstrap) {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_BOOTSTRAP, bootstrap);
+		properties.setProperty("dependencies.e", GROUP + ":e:1.0");
+		return properties;
+	}
+
+	private List<String> coordinates(List<org.apache.maven.model.Dependency> list) {
+		return list.stream().map(d -> d.getManagementKey() + ":" + d.getVersion() + ":"
+				+ d.getScope()).collect(Collectors.toList());
+	}
+
+	private String dependency(String artifactId, String version, String extra) {
+		return "<dependency><groupId>" + GROUP + "</groupId><artifactId>" + artifactId
+				+ "</artifactId><version>" + version + "</version>" + extra
+				+ "</dependency>";
+	}
+
+}
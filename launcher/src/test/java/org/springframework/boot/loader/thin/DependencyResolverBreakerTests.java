@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverBreakerTests {
+
+	private static final String GROUP = "com.example.breaker";
+
+	private static final int COUNT = 6;
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private Blackhole blackhole;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < COUNT; i++) {
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 1024);
+			dependencies.append(LocalRepositoryServer.dependency(GROUP, "a" + i, "1.0"));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		blackhole = new Blackhole();
+		DependencyResolver.close();
+		DependencyResolver.metrics().reset();
+	}
+
+	@AfterEach
+	public void close() throws Exception {
+		server.stop();
+		blackhole.close();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void circuitOpens() throws Exception {
+		// The unreachable repository comes first, so it is asked for everything
+		settings(blackhole.getUrl() + "down/", server.getUrl());
+		Properties properties = properties();
+		assertThat(resolve(properties)).hasSize(COUNT);
+		// One timeout per failure before the circuit opens, not one per artifact
+		assertThat(attempts()).isEqualTo(2);
+		assertThat(new File(root, "cache/breakers.properties")).doesNotExist();
+	}
+
+	@Test
+	public void circuitRemembered() throws Exception {
+		settings(blackhole.getUrl() + "down/", server.getUrl());
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_BREAKERS, "1m");
+		assertThat(resolve(properties)).hasSize(COUNT);
+		assertThat(new File(root, "cache/breakers.properties")).exists();
+		DependencyResolver.close();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		long attempts = attempts();
+		assertThat(resolve(properties)).hasSize(COUNT);
+		assertThat(attempts()).isEqualTo(attempts);
+	}
+
+	@Test
+	public void halfOpen() throws Exception {
+		CircuitBreakingRepositoryConnectorFactory.Breakers breakers = breakers();
+		RemoteRepository repository = repository();
+		assertThat(breakers.failure(repository, 2, 2, 0L, 0L, false)).isTrue();
+		assertThat(breakers.isTripped(repository)).isTrue();
+		// Cooled down already, so one probe (and only one) is let through
+		assertThat(breakers.probe(repository)).isTrue();
+		assertThat(breakers.probe(repository)).isFalse();
+		// It fails, so the circuit is open again for another cool-down
+		assertThat(breakers.failure(repository, 1, 2, 0L, 60000L, true)).isFalse();
+		breakers.probed(repository);
+		assertThat(breakers.isOpen(repository)).isTrue();
+		assertThat(breakers.probe(repository)).isFalse();
+	}
+
+	@Test
+	public void probeCloses() throws Exception {
+		CircuitBreakingRepositoryConnectorFactory.Breakers breakers = breakers();
+		RemoteRepository repository = repository();
+		assertThat(breakers.failure(repository, 2, 2, 0L, 0L, false)).isTrue();
+		assertThat(breakers.probe(repository)).isTrue();
+		breakers.success(repository);
+		breakers.probed(repository);
+		assertThat(breakers.isTripped(repository)).isFalse();
+		// Back to counting failures from scratch
+		assertThat(breakers.failure(repository, 1, 2, 0L, 0L, false)).isFalse();
+	}
+
+	@Test
+	public void connectFailuresOnly() throws Exception {
+		assertThat(CircuitBreakingRepositoryConnectorFactory
+				.isUnreachable(new IOException(new ConnectException("refused"))))
+						.isTrue();
+		assertThat(CircuitBreakingRepositoryConnectorFactory
+				.isUnreachable(new SocketTimeoutException("connect timed out"))).isTrue();
+		assertThat(CircuitBreakingRepositoryConnectorFactory
+				.isUnreachable(new UnknownHostException("nowhere"))).isTrue();
+		// The connection was made, so resuming might help, but not giving up
+		assertThat(CircuitBreakingRepositoryConnectorFactory
+				.isUnreachable(new SocketException("Connection reset"))).isFalse();
+		assertThat(CircuitBreakingRepositoryConnectorFactory
+				.isUnreachable(new SocketTimeoutException("Read timed out"))).isFalse();
+	}
+
+	@Test
+	public void noNetwork() throws Exception {
+		// All the remote repositories are unreachable
+		settings(blackhole.getUrl() + "down/", blackhole.getUrl() + "also/");
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_BREAKER, "1");
+		properties.setProperty(DependencyResolver.THIN_BREAKER_COOLDOWN, "1m");
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("a0");
+		long attempts = attempts();
+		assertThat(attempts).isGreaterThan(0);
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("offline");
+		assertThat(attempts()).isEqualTo(attempts);
+	}
+
+	@Test
+	public void backOnline() throws Exception {
+		LocalRepositoryServer.settings().repository("central", server.getUrl())
+				.disabled("spring-snapshots").write(root);
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_BREAKER, "1");
+		properties.setProperty(DependencyResolver.THIN_BREAKER_COOLDOWN, "1s");
+		server.stop();
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("a0");
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("offline");
+		// The same resolver goes back online when the circuit cools down
+		Thread.sleep(1100L);
+		server.start();
+		assertThat(resolve(properties)).hasSize(COUNT);
+	}
+
+	@Test
+	public void switchedOff() throws Exception {
+		settings(blackhole.getUrl() + "down/", server.getUrl());
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_BREAKER, "0");
+		properties.setProperty(DependencyResolver.THIN_TIMEOUT, "100ms");
+		assertThat(resolve(properties)).hasSize(COUNT);
+		assertThat(attempts()).isGreaterThanOrEqualTo(COUNT);
+	}
+
+	private void settings(String first, String second) throws Exception {
+		LocalRepositoryServer.settings().repository("spring-snapshots", first)
+				.repository("central", second).write(root);
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "false");
+		properties.setProperty(DependencyResolver.THIN_BREAKER, "2");
+		properties.setProperty(DependencyResolver.THIN_TIMEOUT, "500ms");
+		return properties;
+	}
+
+	private CircuitBreakingRepositoryConnectorFactory.Breakers breakers() {
+		return new CircuitBreakingRepositoryConnectorFactory.Breakers(
+				new File(root, "cache/breakers.properties"));
+	}
+
+	private RemoteRepository repository() {
+		return new RemoteRepository.Builder("down", "default", blackhole.getUrl())
+				.build();
+	}
+
+	/**
+	 * The number of requests (all of which time out) to the unreachable repository.
+	 */
+	private long attempts() {
+		ResolverMetrics.RepositoryMetrics metrics = DependencyResolver.metrics()
+				.getRepositories().get("spring-snapshots");
+		return metrics == null ? 0 : metrics.getRequests();
+	}
+
+	private List<Dependency> resolve(Properties properties) {
+		return DependencyResolver.instance().dependencies(app, properties);
+	}
+
+	/**
+	 * A stand-in for a repository behind a firewall that drops packets: its accept
+	 * queue is full (and nothing ever accepts), so new connections time out.
+	 */
+	static class Blackhole {
+
+		private final ServerSocket socket;
+
+		private final List<Socket> queued = new ArrayList<>();
+
+		Blackhole() throws IOException {
+			this.socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+			for (int i = 0; i < 10; i++) {
+				Socket queued = new Socket();
+				try {
+					queued.connect(this.socket.getLocalSocketAddress(), 200);
+				}
+				catch (SocketTimeoutException e) {
+					queued.close();
+					break;
+				}
+				this.queued.add(queued);
+			}
+		}
+
+		String getUrl() {
+			return "http://localhost:" + this.socket.getLocalPort() + "/";
+		}
+
+		void close() throws IOException {
+			this.socket.close();
+			for (Socket queued : this.queued) {
+				queued.close();
+			}
+		}
+
+	}
+
+}
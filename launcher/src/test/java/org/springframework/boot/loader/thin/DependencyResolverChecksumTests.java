@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverChecksumTests {
+
+	private static final String GROUP = "com.example.checksums";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File remote;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < 4; i++) {
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 64 * 1024);
+			dependencies.append(dependency("a" + i));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void downloadsRecordedAsVerified() throws Exception {
+		assertThat(resolve("fail")).hasSize(4);
+		assertThat(new File(root, "repository/" + VerifiedDigests.FILE_NAME)).exists();
+		// Change the recorded checksum but not the jar: it was verified already so it
+		// is not read again
+		File jar = local("a0");
+		Files.write(new File(jar.getPath() + ".sha1").toPath(),
+				"0000000000000000000000000000000000000000".getBytes(StandardCharsets.UTF_8));
+		DependencyResolver.close();
+		assertThat(resolve("fail")).hasSize(4);
+	}
+
+	@Test
+	public void changedFileFailsVerification() throws Exception {
+		assertThat(resolve("fail")).hasSize(4);
+		File jar = local("a1");
+		byte[] bytes = Files.readAllBytes(jar.toPath());
+		bytes[0]++;
+		Files.write(jar.toPath(), bytes);
+		jar.setLastModified(jar.lastModified() + 2000);
+		DependencyResolver.close();
+		assertThat(resolve("warn")).hasSize(4);
+		DependencyResolver.close();
+		assertThatThrownBy(() -> resolve("fail")).hasMessageContaining("a1-1.0.jar");
+	}
+
+	@Test
+	public void badDownloadFails() throws Exception {
+		File jar = new File(remote, GROUP.replace(".", "/") + "/a2/1.0/a2-1.0.jar");
+		Files.write(new File(jar.getPath() + ".sha1").toPath(),
+				"0000000000000000000000000000000000000000".getBytes(StandardCharsets.UTF_8));
+		assertThatThrownBy(() -> resolve("fail")).hasMessageContaining("a2");
+		DependencyResolver.close();
+		assertThat(resolve("warn")).hasSize(4);
+	}
+
+	@Test
+	public void indexedWithoutChecksumFile() throws Exception {
+		Properties properties = properties("fail");
+		properties.setProperty(DependencyResolver.THIN_TRANSPORT, "jdk");
+		assertThat(resolve(properties)).hasSize(4);
+		// The index does not depend on the checksum file being kept
+		File jar = local("a1");
+		assertThat(new File(jar.getPath() + ".sha1").delete()).isTrue();
+		byte[] bytes = Files.readAllBytes(jar.toPath());
+		bytes[0]++;
+		Files.write(jar.toPath(), bytes);
+		jar.setLastModified(jar.lastModified() + 2000);
+		DependencyResolver.close();
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("a1-1.0.jar");
+	}
+
+	@Test
+	public void missingChecksumFails() throws Exception {
+		assertThat(resolve("warn")).hasSize(4);
+		File jar = local("a3");
+		assertThat(new File(jar.getPath() + ".sha1").delete()).isTrue();
+		DependencyResolver.close();
+		assertThatThrownBy(() -> resolve("fail")).hasMessageContaining("a3-1.0.jar");
+	}
+
+	private File local(String artifactId) {
+		return new File(root, "repository/" + GROUP.replace(".", "/") + "/" + artifactId
+				+ "/1.0/" + artifactId + "-1.0.jar");
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(String checksums) {
+		return resolve(properties(checksums));
+	}
+
+	private Properties properties(String checksums) {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_CHECKSUMS, checksums);
+		return properties;
+	}
+
+	private List<String> resolve(Properties properties) {
+		return LocalRepositoryServer.resolve(app, properties);
+	}
+
+}
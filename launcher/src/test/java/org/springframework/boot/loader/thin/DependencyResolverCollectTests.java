@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverCollectTests {
+
+	private static final String[] APPS = { "petclinic", "petclinic-preresolved",
+			"profiles", "cloud", "exclusions", "inclusions", "classifier", "provided",
+			"test", "excluded", "inline", "placeholders", "parent-properties",
+			"projectvariables", "dep-man" };
+
+	private static final String GROUP = "com.example.collect";
+
+	@TempDir
+	File dir;
+
+	@AfterEach
+	public void close() {
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void sameResultsAsDefault() throws Exception {
+		for (String app : APPS) {
+			Resource resource = new ClassPathResource("apps/" + app + "/pom.xml");
+			Resource thin = new ClassPathResource("apps/" + app + "/META-INF/thin.properties");
+			Properties properties = thin.exists()
+					? PropertiesLoaderUtils.loadProperties(thin) : new Properties();
+			if ("profiles".equals(app)) {
+				properties.setProperty(ThinJarLauncher.THIN_PROFILE, "secure");
+			}
+			List<String> expected = resolve(resource, properties, "default");
+			List<String> actual = resolve(resource, properties, "parallel");
+			assertThat(actual).as(app).containsExactlyElementsOf(expected);
+		}
+	}
+
+	@Test
+	public void parallelReadsPomsConcurrently() throws Exception {
+		File remote = new File(dir, "remote");
+		StringBuilder top = new StringBuilder();
+		for (int i = 0; i < 4; i++) {
+			StringBuilder middle = new StringBuilder();
+			for (int j = 0; j < 3; j++) {
+				LocalRepositoryServer.install(remote, GROUP, "c" + i + j, "1.0", 128);
+				LocalRepositoryServer.install(remote, GROUP, "b" + i + j, "1.0", 128,
+						"<dependencies>" + dependency("c" + i + j) + "</dependencies>");
+				middle.append(dependency("b" + i + j));
+			}
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 128,
+					"<dependencies>" + middle + "</dependencies>");
+			top.append(dependency("a" + i));
+		}
+		Resource app = LocalRepositoryServer.app(dir, top.toString());
+		LocalRepositoryServer server = new LocalRepositoryServer(remote, 50);
+		server.start();
+		try {
+			File root = new File(dir, "root");
+			LocalRepositoryServer.settings(root, server.getUrl());
+			Properties properties = new Properties();
+			properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+			server.reset();
+			List<String> expected = resolve(app, properties, "default");
+			// The default collector reads one pom at a time
+			assertThat(server.getMaxActive(".pom")).isEqualTo(1);
+			FileSystemUtils.deleteRecursively(new File(root, "repository"));
+			FileSystemUtils.deleteRecursively(new File(root, "cache"));
+			server.reset();
+			List<String> actual = resolve(app, properties, "parallel");
+			assertThat(actual).hasSize(28).containsExactlyElementsOf(expected);
+			assertThat(server.getMaxActive(".pom")).isGreaterThan(1);
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(Resource resource, Properties properties,
+			String mode) {
+		DependencyResolver.close();
+		Properties copy = new Properties();
+		copy.putAll(properties);
+		copy.setProperty(DependencyResolver.THIN_COLLECT, mode);
+		List<Dependency> dependencies = DependencyResolver.instance()
+				.dependencies(resource, copy);
+		return dependencies.stream().map(dependency -> dependency.getArtifact() + ":"
+				+ dependency.getScope() + "=" + dependency.getArtifact().getFile())
+				.collect(Collectors.toList());
+	}
+
+}
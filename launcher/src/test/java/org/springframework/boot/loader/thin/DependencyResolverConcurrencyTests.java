@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverConcurrencyTests {
+
+	private static final int ROUNDS = 4;
+
+	@AfterEach
+	public void close() {
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void differentPropertiesInParallel() throws Exception {
+		DependencyResolver resolver = DependencyResolver.instance();
+		Resource exclusions = new ClassPathResource("apps/exclusions/pom.xml");
+		Properties excluded = PropertiesLoaderUtils.loadProperties(
+				new ClassPathResource("apps/exclusions/META-INF/thin.properties"));
+		Resource inclusions = new ClassPathResource("apps/inclusions/pom.xml");
+		Properties included = PropertiesLoaderUtils.loadProperties(
+				new ClassPathResource("apps/inclusions/META-INF/thin.properties"));
+		// Warm up the local repository so the threads overlap in model building
+		assertThat(resolver.dependencies(exclusions, excluded))
+				.filteredOn("artifact.artifactId", "tomcat-embed-core").isEmpty();
+		assertThat(resolver.dependencies(inclusions, included))
+				.filteredOn("artifact.artifactId", "jackson-core").isNotEmpty();
+		ExecutorService executor = Executors.newFixedThreadPool(3 * ROUNDS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<Dependency>>> withExclusions = new ArrayList<>();
+		List<Future<List<Dependency>>> withoutExclusions = new ArrayList<>();
+		List<Future<List<Dependency>>> withInclusions = new ArrayList<>();
+		try {
+			for (int i = 0; i < ROUNDS; i++) {
+				withExclusions.add(executor
+						.submit(resolve(start, resolver, exclusions, excluded)));
+				withoutExclusions.add(executor
+						.submit(resolve(start, resolver, exclusions, new Properties())));
+				withInclusions.add(executor
+						.submit(resolve(start, resolver, inclusions, included)));
+			}
+			start.countDown();
+			for (int i = 0; i < ROUNDS; i++) {
+				List<Dependency> dependencies = withExclusions.get(i).get(5,
+						TimeUnit.MINUTES);
+				assertThat(dependencies)
+						.filteredOn("artifact.artifactId", "tomcat-embed-core").isEmpty();
+				assertThat(dependencies).filteredOn("artifact.artifactId", "jetty-server")
+						.isNotEmpty();
+				dependencies = withoutExclusions.get(i).get(5, TimeUnit.MINUTES);
+				assertThat(dependencies)
+						.filteredOn("artifact.artifactId", "tomcat-embed-core")
+						.isNotEmpty();
+				dependencies = withInclusions.get(i).get(5, TimeUnit.MINUTES);
+				assertThat(dependencies).filteredOn("artifact.artifactId", "jackson-core")
+						.isNotEmpty();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Callable<List<Dependency>> resolve(CountDownLatch start,
+			DependencyResolver resolver, Resource resource, Properties properties) {
+		return () -> {
+			start.await();
+			return resolver.dependencies(resource, properties);
+		};
+	}
+
+}
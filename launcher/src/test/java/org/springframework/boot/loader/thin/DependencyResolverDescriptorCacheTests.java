@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverDescriptorCacheTests {
+
+	private static final String GROUP = "com.example.cache";
+
+	private static final String PARENT = "<parent><groupId>" + GROUP
+			+ "</groupId><artifactId>parent</artifactId><version>1.0</version></parent>";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File remote;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.pom(remote, GROUP, "parent", "1.0",
+				"<packaging>pom</packaging><dependencyManagement><dependencies>"
+						+ dependency("lib2", "1.0") + dependency("lib3", "1.0")
+						+ "</dependencies></dependencyManagement>");
+		LocalRepositoryServer.install(remote, GROUP, "lib1", "1.0", 1024,
+				PARENT + "<dependencies>" + dependency("lib2", null) + "</dependencies>");
+		LocalRepositoryServer.install(remote, GROUP, "lib2", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "lib3", "1.0", 1024);
+		app = LocalRepositoryServer.app(dir, dependency("lib1", "1.0"));
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void descriptorsStoredInRoot() throws Exception {
+		assertThat(resolve(new Properties())).contains("lib1", "lib2");
+		assertThat(new File(root, "cache/descriptors").list())
+				.anyMatch(name -> name.startsWith("lib1-1.0-"));
+	}
+
+	@Test
+	public void cachedDescriptorDoesNotNeedParent() throws Exception {
+		assertThat(resolve(new Properties())).contains("lib1", "lib2");
+		DependencyResolver.close();
+		FileSystemUtils.deleteRecursively(new File(remote, "com/example/cache/parent"));
+		FileSystemUtils
+				.deleteRecursively(new File(root, "repository/com/example/cache/parent"));
+		server.reset();
+		// No speculative downloads of the parent either
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		assertThat(resolve(properties)).contains("lib1", "lib2");
+		assertThat(server.getRequests()).noneMatch(request -> request.contains("parent"));
+	}
+
+	@Test
+	public void changedPomInvalidatesCache() throws Exception {
+		assertThat(resolve(new Properties())).doesNotContain("lib3");
+		DependencyResolver.close();
+		File pom = new File(root, "repository/com/example/cache/lib1/1.0/lib1-1.0.pom");
+		String content = new String(Files.readAllBytes(pom.toPath()),
+				StandardCharsets.UTF_8);
+		content = content.replace("</dependencies>",
+				dependency("lib3", null) + "</dependencies>");
+		Files.write(pom.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		assertThat(resolve(new Properties())).contains("lib1", "lib2", "lib3");
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_DESCRIPTORS, "false");
+		assertThat(resolve(properties)).contains("lib1", "lib2");
+		assertThat(new File(root, "cache/descriptors")).doesNotExist();
+	}
+
+	@Test
+	public void coldAndWarm() throws Exception {
+		Resource resource = new ClassPathResource("apps/petclinic/pom.xml");
+		Properties cold = new Properties();
+		cold.setProperty(DependencyResolver.THIN_CACHE_DESCRIPTORS, "false");
+		// Warm up the local repository (and the JVM), and populate the cache
+		DependencyResolver.instance().dependencies(resource, cold);
+		DependencyResolver.close();
+		DependencyResolver.instance().dependencies(resource);
+		DependencyResolver.close();
+		List<Dependency> expected = DependencyResolver.instance().dependencies(resource,
+				cold);
+		DependencyResolver.close();
+		List<Dependency> actual = DependencyResolver.instance().dependencies(resource);
+		assertThat(actual).hasSameSizeAs(expected);
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).getArtifact())
+					.isEqualTo(expected.get(i).getArtifact());
+		}
+	}
+
+	private String dependency(String artifactId, String version) {
+		return "<dependency><groupId>" + GROUP + "</groupId><artifactId>" + artifactId
+				+ "</artifactId>" + (version == null ? "" : "<version>" + version + "</version>")
+				+ "</dependency>";
+	}
+
+	private List<String> resolve(Properties properties) {
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		return LocalRepositoryServer.resolve(app, properties);
+	}
+
+}
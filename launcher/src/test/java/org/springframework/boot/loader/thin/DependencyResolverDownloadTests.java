@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverDownloadTests {
+
+	private static final int COUNT = 12;
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File repository = new File(dir, "remote");
+		for (int i = 0; i < COUNT; i++) {
+			LocalRepositoryServer.install(repository, "com.example.download", "lib" + i,
+					"1.0", 1024 * (i + 1));
+		}
+		server = new LocalRepositoryServer(repository, 100);
+		server.start();
+		LocalRepositoryServer.settings(new File(dir, "root"), server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void singleThread() throws Exception {
+		resolve("1");
+		assertThat(server.getMaxActive()).isEqualTo(1);
+	}
+
+	@Test
+	public void parallel() throws Exception {
+		resolve("6");
+		assertThat(server.getMaxActive()).isGreaterThan(1);
+	}
+
+	@Test
+	public void parallelSameRequestsAsSerial() throws Exception {
+		resolve("1");
+		List<String> serial = new ArrayList<>(server.getRequests());
+		FileSystemUtils.deleteRecursively(new File(dir, "root/repository"));
+		DependencyResolver.close();
+		resolve("6");
+		// Only the order changes, nothing is downloaded twice
+		assertThat(server.getRequests()).containsExactlyInAnyOrderElementsOf(serial);
+		assertThat(server.getMaxActive(".jar")).isGreaterThan(1);
+	}
+
+	private void resolve(String threads) {
+		Properties properties = new Properties();
+		properties.setProperty("computed", "true");
+		properties.setProperty(DependencyResolver.THIN_ROOT,
+				new File(dir, "root").getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_DOWNLOAD_THREADS, threads);
+		for (int i = 0; i < COUNT; i++) {
+			properties.setProperty("dependencies.lib" + i,
+					"com.example.download:lib" + i + ":1.0");
+		}
+		server.reset();
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(
+				new ClassPathResource("META-INF/thin/empty-pom.xml"), properties);
+		assertThat(dependencies).hasSize(COUNT);
+		for (Dependency dependency : dependencies) {
+			assertThat(dependency.getArtifact().getFile()).exists();
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverLookupTests {
+
+	private static final String GROUP = "com.example.lookup";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer snapshots;
+
+	private LocalRepositoryServer central;
+
+	private LocalRepositoryServer disabled;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		// A chain, so every level waits for a miss in the first repository
+		String[] chain = { "a", "b", "c", "d" };
+		for (int i = 0; i < chain.length; i++) {
+			String content = i < chain.length - 1
+					? "<dependencies>" + dependency(chain[i + 1]) + "</dependencies>" : "";
+			LocalRepositoryServer.install(remote, GROUP, chain[i], "1.0", 1024, content);
+		}
+		app = LocalRepositoryServer.app(dir, dependency("a"));
+		// Only snapshots, so always a miss for releases (and slow)
+		snapshots = new LocalRepositoryServer(new File(dir, "empty"), 200);
+		snapshots.start();
+		central = new LocalRepositoryServer(remote, 20);
+		central.start();
+		// Requests in flight are counted across both
+		central.share(snapshots);
+		// Has everything but releases are switched off
+		disabled = new LocalRepositoryServer(remote, 0);
+		disabled.start();
+		LocalRepositoryServer.settings()
+				.repository("disabled", disabled.getUrl(), releases(false))
+				.repository("snapshots", snapshots.getUrl(), releases(true))
+				.repository("central", central.getUrl(), releases(true)).write(root);
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		snapshots.stop();
+		central.stop();
+		disabled.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void parallelAsksRepositoriesAtOnce() throws Exception {
+		List<String> expected = resolve("ordered");
+		// Each repository is asked in turn
+		assertThat(snapshots.getMaxActive(".pom")).isEqualTo(1);
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache"));
+		snapshots.reset();
+		List<String> actual = resolve("parallel");
+		assertThat(actual).hasSize(4).containsExactlyElementsOf(expected);
+		assertThat(snapshots.getMaxActive(".pom")).isGreaterThan(1);
+		// Release policy is honoured
+		assertThat(disabled.getRequests()).isEmpty();
+	}
+
+	@Test
+	public void resolvedFromLocalRepositoryWithoutLookup() throws Exception {
+		resolve("parallel");
+		snapshots.reset();
+		central.reset();
+		assertThat(resolve("parallel")).hasSize(4);
+		assertThat(snapshots.getRequests()).isEmpty();
+		assertThat(central.getRequests()).isEmpty();
+	}
+
+	private String releases(boolean enabled) {
+		return "<releases><enabled>" + enabled + "</enabled></releases>";
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(String lookup) {
+		DependencyResolver.close();
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_LOOKUP, lookup);
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		return dependencies.stream().map(dependency -> dependency.getArtifact() + "="
+				+ dependency.getArtifact().getFile()).collect(Collectors.toList());
+	}
+
+}
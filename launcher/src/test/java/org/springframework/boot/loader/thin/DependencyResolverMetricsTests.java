@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+
+import javax.management.ObjectName;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositoryEvent.EventType;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.boot.loader.thin.ResolverMetrics.RepositoryMetrics;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverMetricsTests {
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer empty;
+
+	private LocalRepositoryServer central;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			LocalRepositoryServer.install(remote, "com.example.metrics", "a" + i, "1.0",
+					1024);
+			dependencies.append(LocalRepositoryServer.dependency("com.example.metrics",
+					"a" + i, "1.0"));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		// Never has anything
+		empty = new LocalRepositoryServer(new File(dir, "empty"), 0);
+		empty.start();
+		central = new LocalRepositoryServer(remote, 0);
+		central.start();
+		LocalRepositoryServer.settings().repository("empty", empty.getUrl())
+				.repository("central", central.getUrl()).write(root);
+		DependencyResolver.close();
+		DependencyResolver.metrics().reset();
+	}
+
+	@AfterEach
+	public void close() {
+		empty.stop();
+		central.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void downloads() throws Exception {
+		assertThat(resolve()).hasSize(3);
+		ResolverMetrics metrics = DependencyResolver.metrics();
+		assertThat(metrics.getResolutions()).isEqualTo(1);
+		assertThat(metrics.getArtifactsResolved()).isGreaterThanOrEqualTo(3);
+		assertThat(metrics.getDownloads()).isGreaterThanOrEqualTo(3);
+		assertThat(metrics.getLocalHits()).isEqualTo(0);
+		assertThat(metrics.getBytesDownloaded()).isGreaterThanOrEqualTo(3 * 1024);
+		RepositoryMetrics hit = metrics.getRepositories().get("central");
+		assertThat(hit.getRequests()).isGreaterThanOrEqualTo(6);
+		assertThat(hit.getMisses()).isEqualTo(0);
+		assertThat(hit.getBytes()).isGreaterThanOrEqualTo(3 * 1024);
+		assertThat(sum(hit.getLatencyHistogram())).isEqualTo(hit.getRequests());
+		RepositoryMetrics miss = metrics.getRepositories().get("empty");
+		assertThat(miss.getMisses()).isGreaterThanOrEqualTo(3);
+		assertThat(miss.getErrors()).isEqualTo(0);
+		assertThat(miss.getBytes()).isEqualTo(0);
+	}
+
+	@Test
+	public void localHits() throws Exception {
+		resolve();
+		DependencyResolver.close();
+		DependencyResolver.metrics().reset();
+		central.reset();
+		assertThat(resolve()).hasSize(3);
+		ResolverMetrics metrics = DependencyResolver.metrics();
+		assertThat(metrics.getLocalHits()).isGreaterThanOrEqualTo(3);
+		assertThat(metrics.getDownloads()).isEqualTo(0);
+		assertThat(metrics.getBytesDownloaded()).isEqualTo(0);
+	}
+
+	@Test
+	public void properties() throws Exception {
+		resolve();
+		Properties properties = DependencyResolver.metrics().toProperties();
+		assertThat(properties.getProperty("artifacts.downloaded")).isNotEqualTo("0");
+		assertThat(properties.getProperty("repositories.central.url"))
+				.isEqualTo(central.getUrl());
+		assertThat(properties).containsKey("repositories.empty.misses");
+		assertThat(properties).containsKey("repositories.central.latency.le10");
+		assertThat(properties).containsKey("repositories.central.latency.gt5000");
+	}
+
+	@Test
+	public void transferBeforeRepositoryEvent() throws Exception {
+		ResolverMetrics metrics = new ResolverMetrics();
+		RepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		TransferResource resource = new TransferResource("http://example.com/repo/",
+				"com/example/a/1.0/a-1.0.jar", null, null);
+		metrics.getTransferListener().transferInitiated(
+				new TransferEvent.Builder(session, resource).build());
+		metrics.getRepositoryListener().artifactDownloading(
+				new RepositoryEvent.Builder(session, EventType.ARTIFACT_DOWNLOADING)
+						.setArtifact(new DefaultArtifact("com.example:a:1.0"))
+						.setRepository(new RemoteRepository.Builder("central", "default",
+								"http://example.com/repo").build())
+						.build());
+		metrics.getTransferListener().transferSucceeded(
+				new TransferEvent.Builder(session, resource).build());
+		assertThat(metrics.getRepositories()).containsOnlyKeys("central");
+		RepositoryMetrics central = metrics.getRepositories().get("central");
+		assertThat(central.getRequests()).isEqualTo(1);
+		assertThat(sum(central.getLatencyHistogram())).isEqualTo(1);
+		assertThat(metrics.toProperties()).containsEntry("repositories.central.requests",
+				"1");
+	}
+
+	@Test
+	public void mbean() throws Exception {
+		DependencyResolver.metrics().register();
+		DependencyResolver.metrics().register();
+		resolve();
+		Object value = ManagementFactory.getPlatformMBeanServer().getAttribute(
+				new ObjectName(ResolverMetrics.OBJECT_NAME), "ArtifactsResolved");
+		assertThat((Long) value).isGreaterThanOrEqualTo(3);
+	}
+
+	private long sum(long[] values) {
+		long total = 0;
+		for (long value : values) {
+			total += value;
+		}
+		return total;
+	}
+
+	private List<Dependency> resolve() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "false");
+		return DependencyResolver.instance().dependencies(app, properties);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverMissesTests {
+
+	private static final String GROUP = "com.example.misses";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer snapshots;
+
+	private LocalRepositoryServer central;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 1024);
+			dependencies.append(dependency("a" + i));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		// Never has anything
+		snapshots = new LocalRepositoryServer(new File(dir, "empty"), 0);
+		snapshots.start();
+		central = new LocalRepositoryServer(remote, 0);
+		central.start();
+		LocalRepositoryServer.settings().repository("snapshots", snapshots.getUrl())
+				.repository("central", central.getUrl()).write(root);
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		snapshots.stop();
+		central.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void missesRemembered() throws Exception {
+		List<String> expected = resolve(misses());
+		assertThat(snapshots.getRequests()).isNotEmpty();
+		assertThat(new File(root, "cache/misses").listFiles()).hasSize(1);
+		clear();
+		assertThat(resolve(misses())).containsExactlyElementsOf(expected);
+		assertThat(snapshots.getRequests()).isEmpty();
+		assertThat(central.getRequests()).isNotEmpty();
+	}
+
+	@Test
+	public void force() throws Exception {
+		resolve(misses());
+		clear();
+		Properties properties = misses();
+		properties.setProperty(ThinJarLauncher.THIN_FORCE, "true");
+		assertThat(resolve(properties)).hasSize(3);
+		assertThat(snapshots.getRequests()).isNotEmpty();
+	}
+
+	@Test
+	public void expired() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "200ms");
+		resolve(properties);
+		clear();
+		Thread.sleep(300L);
+		assertThat(resolve(properties)).hasSize(3);
+		assertThat(snapshots.getRequests()).isNotEmpty();
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "false");
+		resolve(properties);
+		assertThat(new File(root, "cache/misses")).doesNotExist();
+	}
+
+	@Test
+	public void disabledByDefault() throws Exception {
+		resolve(new Properties());
+		assertThat(new File(root, "cache/misses")).doesNotExist();
+		clear();
+		resolve(new Properties());
+		assertThat(snapshots.getRequests()).isNotEmpty();
+	}
+
+	private Properties misses() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "1d");
+		return properties;
+	}
+
+	private void clear() {
+		DependencyResolver.close();
+		snapshots.reset();
+		central.reset();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache/descriptors"));
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(Properties properties) {
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		return LocalRepositoryServer.resolve(app, properties);
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverPrefetchTests {
+
+	private static final String GROUP = "com.example.prefetch";
+
+	private static final String[] CHAIN = { "a", "b", "c", "d", "e", "f" };
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		// A deep chain, so collection has to wait for each pom in turn
+		for (int i = 0; i < CHAIN.length; i++) {
+			String content = i < CHAIN.length - 1
+					? "<dependencies>" + dependency(CHAIN[i + 1]) + "</dependencies>" : "";
+			LocalRepositoryServer.install(remote, GROUP, CHAIN[i], "1.0", 1024, content);
+		}
+		LocalRepositoryServer.install(remote, GROUP, "extra", "1.0", 1024);
+		server = new LocalRepositoryServer(remote, 100);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void graphRecorded() throws Exception {
+		assertThat(resolve(app("0.0.1", "a"), new Properties())).hasSize(CHAIN.length);
+		File[] graphs = new File(root, "cache/graphs").listFiles();
+		assertThat(graphs).hasSize(1);
+		String graph = new String(Files.readAllBytes(graphs[0].toPath()),
+				StandardCharsets.UTF_8);
+		assertThat(graph).contains(GROUP + ":e:pom:1.0 standin")
+				.contains(GROUP + ":e:jar:1.0 standin");
+	}
+
+	@Test
+	public void prefetchAfterUpgrade() throws Exception {
+		assertThat(resolve(app("0.0.1", "a"), new Properties())).hasSize(CHAIN.length);
+		// New version of the app with an extra dependency and an empty local repository
+		Resource upgrade = app("0.0.2", "a", "extra");
+		clear();
+		server.reset();
+		List<String> expected = resolve(upgrade, prefetch(false));
+		// Without the graph each pom in the chain waits for the one before
+		assertThat(server.getMaxActive(".pom")).isEqualTo(1);
+		clear();
+		server.reset();
+		List<String> actual = resolve(upgrade, prefetch(true));
+		assertThat(actual).containsExactlyElementsOf(expected).contains("extra");
+		assertThat(server.getMaxActive(".pom")).isGreaterThan(1);
+	}
+
+	@Test
+	public void repositoryChanged() throws Exception {
+		assertThat(resolve(app("0.0.1", "a"), new Properties())).hasSize(CHAIN.length);
+		// The repository in the graph is not in the settings any more
+		LocalRepositoryServer moved = new LocalRepositoryServer(new File(dir, "remote"),
+				0);
+		moved.start();
+		try {
+			LocalRepositoryServer.settings(root, moved.getUrl());
+			clear();
+			server.reset();
+			assertThat(resolve(app("0.0.1", "a"), prefetch(true)))
+					.hasSize(CHAIN.length);
+			assertThat(server.getRequests()).isEmpty();
+		}
+		finally {
+			moved.stop();
+		}
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		resolve(app("0.0.1", "a"), prefetch(false));
+		assertThat(new File(root, "cache/graphs")).doesNotExist();
+	}
+
+	private void clear() {
+		DependencyResolver.close();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache/descriptors"));
+	}
+
+	private Properties prefetch(boolean enabled) {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "" + enabled);
+		return properties;
+	}
+
+	private Resource app(String version, String... dependencies) throws Exception {
+		StringBuilder content = new StringBuilder("<dependencies>");
+		for (String dependency : dependencies) {
+			content.append(dependency(dependency));
+		}
+		content.append("</dependencies>");
+		return LocalRepositoryServer.app(dir, version, content.toString());
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(Resource resource, Properties properties) {
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		return LocalRepositoryServer.resolve(resource, properties);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverRepositoriesTests {
+
+	private static final String GROUP = "com.example.computed";
+
+	private static final int COUNT = 200;
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		for (int i = 0; i < COUNT; i++) {
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 128);
+		}
+		app = LocalRepositoryServer.app(dir, "0.0.1", "");
+		server = new LocalRepositoryServer(remote, 0);
+		server.setCredentials("user", "secret");
+		server.start();
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void mirrored() throws Exception {
+		// Everything goes through an authenticated mirror
+		LocalRepositoryServer.SettingsBuilder settings = LocalRepositoryServer.settings()
+				.mirror("standin", "*", server.getUrl())
+				.server("standin", "user", "secret");
+		for (int i = 0; i < 4; i++) {
+			settings.repository("r" + i, "http://localhost:1/r" + i);
+		}
+		settings.write(root);
+		List<Dependency> dependencies = resolve();
+		assertThat(dependencies).hasSize(COUNT);
+		assertThat(dependencies).allMatch(d -> d.getArtifact().getFile().exists());
+		assertThat(server.getRequests()).isNotEmpty();
+		assertThat(server.getRequests()).noneMatch(request -> request.contains("/r0/"));
+	}
+
+	@Test
+	public void resolvedLocallyOnceDownloaded() throws Exception {
+		LocalRepositoryServer.settings(root, server.getUrl(), "user", "secret");
+		assertThat(resolve()).hasSize(COUNT);
+		server.reset();
+		for (int i = 0; i < 3; i++) {
+			assertThat(resolve()).hasSize(COUNT);
+		}
+		assertThat(server.getRequests()).isEmpty();
+	}
+
+	private List<Dependency> resolve() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty("computed", "true");
+		for (int i = 0; i < COUNT; i++) {
+			properties.setProperty("dependencies.a" + i, GROUP + ":a" + i + ":1.0");
+		}
+		return DependencyResolver.instance().dependencies(app, properties);
+	}
+
+}
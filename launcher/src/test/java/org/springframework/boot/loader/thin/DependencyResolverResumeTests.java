@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverResumeTests {
+
+	private static final String JAR = "/com/example/resume/big/1.0/big-1.0.jar";
+
+	private static final int SIZE = 1024 * 1024;
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File remote;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.install(remote, "com.example.resume", "big", "1.0", SIZE);
+		// Resumes are only valid if the remote file is older than the partial one
+		new File(remote, JAR).setLastModified(System.currentTimeMillis() - 3600000);
+		app = LocalRepositoryServer.app(dir,
+				LocalRepositoryServer.dependency("com.example.resume", "big", "1.0"));
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings(root, server.getUrl());
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void resumed() throws Exception {
+		server.setDrop(300000);
+		File file = resolve(properties());
+		assertThat(Files.readAllBytes(file.toPath()))
+				.isEqualTo(Files.readAllBytes(new File(remote, JAR).toPath()));
+		assertThat(server.getRequests()).contains("GET " + JAR,
+				"GET " + JAR + " bytes=300000-", "GET " + JAR + " bytes=600000-",
+				"GET " + JAR + " bytes=900000-");
+		assertThat(new File(file.getPath() + ".part")).doesNotExist();
+	}
+
+	@Test
+	public void resumedWithJdkTransport() throws Exception {
+		server.setDrop(400000);
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_TRANSPORT, "jdk");
+		File file = resolve(properties);
+		assertThat(Files.readAllBytes(file.toPath()))
+				.isEqualTo(Files.readAllBytes(new File(remote, JAR).toPath()));
+		// The client might lose some buffered bytes when the connection drops
+		assertThat(server.getRequests())
+				.anyMatch(request -> request.startsWith("GET " + JAR + " bytes="));
+	}
+
+	@Test
+	public void resumedNextLaunch() throws Exception {
+		server.setDrop(300000);
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_DOWNLOAD_RESUME, "0");
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("big:jar");
+		File part = new File(root, "repository" + JAR + ".part");
+		assertThat(part).hasSize(300000);
+		DependencyResolver.close();
+		server.setDrop(0);
+		server.reset();
+		File file = resolve(properties);
+		assertThat(file).hasSize(SIZE);
+		assertThat(server.getRequests()).contains("GET " + JAR + " bytes=300000-")
+				.doesNotContain("GET " + JAR);
+	}
+
+	@Test
+	public void changedSinceInterrupted() throws Exception {
+		changed(properties());
+	}
+
+	@Test
+	public void changedSinceInterruptedWithJdkTransport() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_TRANSPORT, "jdk");
+		changed(properties);
+	}
+
+	private void changed(Properties properties) throws Exception {
+		server.setDrop(300000);
+		properties.setProperty(DependencyResolver.THIN_DOWNLOAD_RESUME, "0");
+		properties.setProperty(DependencyResolver.THIN_CHECKSUMS, "fail");
+		assertThatThrownBy(() -> resolve(properties)).hasMessageContaining("big:jar");
+		// A new jar (with the same name) was published since the partial download
+		LocalRepositoryServer.install(remote, "com.example.resume", "big", "1.0",
+				SIZE + 1);
+		new File(remote, JAR).setLastModified(System.currentTimeMillis() + 3600000);
+		DependencyResolver.close();
+		server.setDrop(0);
+		File file = resolve(properties);
+		assertThat(Files.readAllBytes(file.toPath()))
+				.isEqualTo(Files.readAllBytes(new File(remote, JAR).toPath()));
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_CACHE_MISSES, "false");
+		return properties;
+	}
+
+	private File resolve(Properties properties) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		assertThat(dependencies).hasSize(1);
+		return dependencies.get(0).getArtifact().getFile();
+	}
+
+}
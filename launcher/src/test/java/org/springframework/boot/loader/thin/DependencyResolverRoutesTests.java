@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverRoutesTests {
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer other;
+
+	private LocalRepositoryServer internal;
+
+	private LocalRepositoryServer central;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File acme = new File(dir, "internal");
+		File remote = new File(dir, "central");
+		root = new File(dir, "root");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			LocalRepositoryServer.install(acme, "com.acme.core", "a" + i, "1.0", 1024);
+			LocalRepositoryServer.install(remote, "org.example", "b" + i, "1.0", 1024);
+			dependencies.append(dependency("com.acme.core", "a" + i))
+					.append(dependency("org.example", "b" + i));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		// Has nothing we need but comes first
+		other = new LocalRepositoryServer(new File(dir, "empty"), 0);
+		other.start();
+		internal = new LocalRepositoryServer(acme, 0);
+		internal.start();
+		central = new LocalRepositoryServer(remote, 0);
+		central.start();
+		LocalRepositoryServer.settings().repository("other", other.getUrl())
+				.repository("internal", internal.getUrl())
+				.repository("central", central.getUrl()).write(root);
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		other.stop();
+		internal.stop();
+		central.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void staticRoutes() throws Exception {
+		List<String> expected = resolve(properties());
+		int requests = other.getRequests().size() + internal.getRequests().size()
+				+ central.getRequests().size();
+		assertThat(other.getRequests()).isNotEmpty();
+		clear();
+		Properties properties = properties();
+		properties.setProperty("repositories.routes.com.acme", "internal");
+		properties.setProperty("repositories.routes.org.example", "central");
+		assertThat(resolve(properties)).containsExactlyElementsOf(expected);
+		assertThat(other.getRequests()).isEmpty();
+		assertThat(internal.getRequests()).noneMatch(path -> path.contains("org/example"));
+		assertThat(central.getRequests()).noneMatch(path -> path.contains("com/acme"));
+		assertThat(internal.getRequests().size() + central.getRequests().size())
+				.isLessThan(requests);
+	}
+
+	@Test
+	public void learnedRoutes() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_ROUTES_LEARN, "true");
+		List<String> expected = resolve(properties);
+		assertThat(new File(root, "cache/routes.properties")).exists();
+		clear();
+		assertThat(resolve(properties)).containsExactlyElementsOf(expected);
+		assertThat(other.getRequests()).isEmpty();
+		assertThat(internal.getRequests()).noneMatch(path -> path.contains("org/example"));
+	}
+
+	private void clear() {
+		DependencyResolver.close();
+		other.reset();
+		internal.reset();
+		central.reset();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache/descriptors"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache/misses"));
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		return properties;
+	}
+
+	private String dependency(String groupId, String artifactId) {
+		return LocalRepositoryServer.dependency(groupId, artifactId, "1.0");
+	}
+
+	private List<String> resolve(Properties properties) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		return dependencies.stream().map(d -> d.getArtifact().toString())
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverSessionTests {
+
+	@AfterEach
+	public void close() {
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void sameSettingsShareCache() throws Exception {
+		DependencyResolver resolver = DependencyResolver.instance();
+		RepositorySystemSession first = session(resolver, new Properties());
+		RepositorySystemSession second = session(resolver, new Properties());
+		assertThat(first).isNotSameAs(second);
+		assertThat(first.getLocalRepositoryManager())
+				.isSameAs(second.getLocalRepositoryManager());
+		assertThat(first.getData()).isNotSameAs(second.getData());
+	}
+
+	@Test
+	public void onlyReleasesShareCache() throws Exception {
+		DependencyResolver resolver = DependencyResolver.instance();
+		RepositorySystemSession first = session(resolver, new Properties());
+		RepositorySystemSession second = session(resolver, new Properties());
+		first.getCache().put(first, ReleaseRepositoryCache.SHARED + "release", "foo");
+		first.getCache().put(first, "snapshot", "bar");
+		assertThat(second.getCache().get(second, ReleaseRepositoryCache.SHARED + "release"))
+				.isEqualTo("foo");
+		assertThat(second.getCache().get(second, "snapshot")).isNull();
+		assertThat(first.getCache().get(first, "snapshot")).isEqualTo("bar");
+	}
+
+	@Test
+	public void offlineHasSeparateCache() throws Exception {
+		DependencyResolver resolver = DependencyResolver.instance();
+		Properties offline = new Properties();
+		offline.setProperty(DependencyResolver.THIN_OFFLINE, "true");
+		RepositorySystemSession first = session(resolver, new Properties());
+		RepositorySystemSession second = session(resolver, offline);
+		first.getCache().put(first, ReleaseRepositoryCache.SHARED + "release", "foo");
+		assertThat(second.getCache().get(second, ReleaseRepositoryCache.SHARED + "release"))
+				.isNull();
+		assertThat(second.isOffline()).isTrue();
+	}
+
+	@Test
+	public void closeDiscardsSessions() throws Exception {
+		RepositorySystemSession first = session(DependencyResolver.instance(),
+				new Properties());
+		DependencyResolver.close();
+		first.getCache().put(first, ReleaseRepositoryCache.SHARED + "release", "foo");
+		RepositorySystemSession second = session(DependencyResolver.instance(),
+				new Properties());
+		assertThat(second.getCache().get(second, ReleaseRepositoryCache.SHARED + "release"))
+				.isNull();
+	}
+
+	@Test
+	public void repeatedResolution() throws Exception {
+		DependencyResolver resolver = DependencyResolver.instance();
+		Resource resource = new ClassPathResource("apps/petclinic/pom.xml");
+		// Warm up the local repository (and the JVM)
+		resolver.dependencies(resource);
+		DependencyResolver.close();
+		resolver = DependencyResolver.instance();
+		int size = 0;
+		for (int i = 0; i < 3; i++) {
+			List<Dependency> dependencies = resolver.dependencies(resource);
+			if (i > 0) {
+				assertThat(dependencies).hasSize(size);
+			}
+			size = dependencies.size();
+		}
+		assertThat(size).isGreaterThan(20);
+	}
+
+	private RepositorySystemSession session(DependencyResolver resolver,
+			Properties properties) {
+		ReflectionTestUtils.invokeMethod(resolver, "initialize", properties);
+		return ReflectionTestUtils.invokeMethod(resolver, "createSession", properties);
+	}
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverSnapshotTests {
+
+	private static final String METADATA = "/com/example/snapshot/lib/1.0-SNAPSHOT/"
+			+ "maven-metadata.xml";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.snapshot(remote, "com.example.snapshot", "lib",
+				"1.0-SNAPSHOT", "20170101.120000", 1);
+		LocalRepositoryServer.install(remote, "com.example.snapshot", "release", "1.0",
+				1024);
+		app = LocalRepositoryServer.app(dir,
+				LocalRepositoryServer.dependency("com.example.snapshot", "lib",
+						"1.0-SNAPSHOT")
+						+ LocalRepositoryServer.dependency("com.example.snapshot",
+								"release", "1.0"));
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		settings("");
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void revalidated() throws Exception {
+		Properties properties = properties();
+		properties.setProperty("repositories.updates.standin", "always");
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		assertThat(server.getRequests()).contains("GET " + METADATA);
+		DependencyResolver.close();
+		server.reset();
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		// Only the snapshot metadata is checked, and it costs a 304 (no checksum)
+		assertThat(server.getRequests()).containsExactly("GET " + METADATA);
+		assertThat(server.getNotModified()).isEqualTo(1);
+	}
+
+	@Test
+	public void changed() throws Exception {
+		Properties properties = properties();
+		properties.setProperty("repositories.updates.*", "always");
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		LocalRepositoryServer.snapshot(new File(dir, "remote"), "com.example.snapshot",
+				"lib", "1.0-SNAPSHOT", "20170102.120000", 2);
+		new File(dir, "remote" + METADATA)
+				.setLastModified(System.currentTimeMillis() + 3600000);
+		DependencyResolver.close();
+		server.reset();
+		assertThat(resolve(properties)).isEqualTo("1.0-20170102.120000-2");
+		assertThat(server.getNotModified()).isEqualTo(0);
+	}
+
+	@Test
+	public void changedInSameResolver() throws Exception {
+		Properties properties = properties();
+		properties.setProperty("repositories.updates.*", "always");
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		LocalRepositoryServer.snapshot(new File(dir, "remote"), "com.example.snapshot",
+				"lib", "1.0-SNAPSHOT", "20170102.120000", 2);
+		new File(dir, "remote" + METADATA)
+				.setLastModified(System.currentTimeMillis() + 3600000);
+		// No close(), so the repository session is the same as last time
+		assertThat(resolve(properties)).isEqualTo("1.0-20170102.120000-2");
+	}
+
+	@Test
+	public void settingsPolicy() throws Exception {
+		settings("<updatePolicy>always</updatePolicy>");
+		Properties properties = properties();
+		resolve(properties);
+		DependencyResolver.close();
+		server.reset();
+		resolve(properties);
+		assertThat(server.getRequests()).containsExactly("GET " + METADATA);
+		assertThat(server.getNotModified()).isEqualTo(1);
+	}
+
+	@Test
+	public void never() throws Exception {
+		settings("<updatePolicy>always</updatePolicy>");
+		Properties properties = properties();
+		properties.setProperty("repositories.updates.*", "never");
+		resolve(properties);
+		DependencyResolver.close();
+		server.reset();
+		resolve(properties);
+		assertThat(server.getRequests()).isEmpty();
+	}
+
+	@Test
+	public void daily() throws Exception {
+		Properties properties = properties();
+		resolve(properties);
+		DependencyResolver.close();
+		server.reset();
+		resolve(properties);
+		assertThat(server.getRequests()).isEmpty();
+	}
+
+	@Test
+	public void untracked() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_TRACKING, "none");
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		assertThat(tracked("release")).isFalse();
+		assertThat(tracked("lib")).isFalse();
+		DependencyResolver.close();
+		server.reset();
+		resolve(properties);
+		assertThat(server.getRequests()).isEmpty();
+	}
+
+	@Test
+	public void snapshotsTracked() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_TRACKING, "snapshots");
+		properties.setProperty("repositories.updates.*", "always");
+		assertThat(resolve(properties)).isEqualTo("1.0-20170101.120000-1");
+		assertThat(tracked("release")).isFalse();
+		assertThat(tracked("lib")).isTrue();
+		LocalRepositoryServer.snapshot(new File(dir, "remote"), "com.example.snapshot",
+				"lib", "1.0-SNAPSHOT", "20170102.120000", 2);
+		new File(dir, "remote" + METADATA)
+				.setLastModified(System.currentTimeMillis() + 3600000);
+		DependencyResolver.close();
+		assertThat(resolve(properties)).isEqualTo("1.0-20170102.120000-2");
+	}
+
+	private boolean tracked(String artifactId) {
+		File directory = new File(root, "repository/com/example/snapshot/" + artifactId);
+		return Files.isDirectory(directory.toPath()) && directory.listFiles()[0]
+				.toPath().resolve("_remote.repositories").toFile().exists();
+	}
+
+	private void settings(String policy) throws Exception {
+		// The default snapshot repository is switched off (so it is not on the network)
+		LocalRepositoryServer.settings()
+				.repository("standin", server.getUrl(),
+						"<snapshots>" + policy + "</snapshots>")
+				.disabled("spring-snapshots").write(root);
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_TRANSPORT, "jdk");
+		return properties;
+	}
+
+	private String resolve(Properties properties) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		assertThat(dependencies).hasSize(2);
+		return dependencies.get(0).getArtifact().getVersion();
+	}
+
+}
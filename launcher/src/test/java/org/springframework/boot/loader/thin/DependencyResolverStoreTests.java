@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverStoreTests {
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File store;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		StringBuilder dependencies = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			LocalRepositoryServer.install(remote, "com.example.store", "a" + i, "1.0",
+					1024);
+			dependencies.append(LocalRepositoryServer.dependency("com.example.store",
+					"a" + i, "1.0"));
+		}
+		app = LocalRepositoryServer.app(dir, dependencies.toString());
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		store = new File(dir, "store");
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void sharedBetweenRoots() throws Exception {
+		List<Dependency> one = resolve(root("one"));
+		List<Dependency> two = resolve(root("two"));
+		assertThat(one).hasSize(3);
+		for (int i = 0; i < one.size(); i++) {
+			File file = one.get(i).getArtifact().getFile();
+			assertThat(file.getAbsolutePath()).contains("one");
+			assertThat(Files.isSameFile(file.toPath(),
+					two.get(i).getArtifact().getFile().toPath())).isTrue();
+		}
+		ContentStore.Report report = new ContentStore(store).report();
+		assertThat(report.getEntries()).isEqualTo(3);
+		assertThat(report.getLinks()).isEqualTo(6);
+		assertThat(report.getUnreferenced()).isEqualTo(0);
+		assertThat(report.getSaved()).isEqualTo(report.getBytes());
+		assertThat(report.toString()).contains("3 entries");
+	}
+
+	@Test
+	public void linkedOnce() throws Exception {
+		File root = root("one");
+		resolve(root);
+		DependencyResolver.close();
+		List<Dependency> dependencies = resolve(root);
+		File file = dependencies.get(0).getArtifact().getFile();
+		long modified = file.lastModified();
+		assertThat(new ContentStore(store).link(new File(root, "repository"),
+				Collections.singletonList(file))).isEqualTo(0);
+		assertThat(file.lastModified()).isEqualTo(modified);
+		assertThat(new ContentStore(store).report().getLinks()).isEqualTo(3);
+	}
+
+	@Test
+	public void unreferenced() throws Exception {
+		File root = root("one");
+		resolve(root);
+		FileSystemUtils.deleteRecursively(root);
+		ContentStore.Report report = new ContentStore(store).report();
+		assertThat(report.getEntries()).isEqualTo(3);
+		assertThat(report.getUnreferenced()).isEqualTo(3);
+		assertThat(report.getSaved()).isEqualTo(0);
+	}
+
+	@Test
+	public void noLinkCount() throws Exception {
+		File root = new File(dir, "one");
+		File file = new File(root, "repository/a.jar");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), new byte[1024]);
+		ContentStore content = new ContentStore(store) {
+			@Override
+			int links(Path path) {
+				return 0;
+			}
+		};
+		// Every file would have to be hashed on every launch, so the store is off
+		assertThat(content.link(new File(root, "repository"),
+				Collections.singletonList(file))).isEqualTo(0);
+		assertThat(new ContentStore(store).report().getEntries()).isEqualTo(0);
+	}
+
+	@Test
+	public void noStore() throws Exception {
+		assertThat(new ContentStore(store).report().getEntries()).isEqualTo(0);
+	}
+
+	private File root(String name) throws Exception {
+		File root = new File(dir, name);
+		LocalRepositoryServer.settings(root, server.getUrl());
+		return root;
+	}
+
+	private List<Dependency> resolve(File root) {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		properties.setProperty(DependencyResolver.THIN_STORE, store.getAbsolutePath());
+		return DependencyResolver.instance().dependencies(app, properties);
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverTraceTests {
+
+	private static final String GROUP = "com.example.trace";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private File trace;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		trace = new File(dir, "trace/resolution.json");
+		LocalRepositoryServer.pom(remote, GROUP, "parent", "1.0",
+				"<packaging>pom</packaging>");
+		LocalRepositoryServer.install(remote, GROUP, "core", "1.0", 4096,
+				"<parent><groupId>" + GROUP + "</groupId><artifactId>parent</artifactId>"
+						+ "<version>1.0</version></parent>");
+		LocalRepositoryServer.install(remote, GROUP, "lib", "1.0", 1024,
+				"<dependencies>" + LocalRepositoryServer.dependency(GROUP, "core", "1.0")
+						+ "</dependencies>");
+		app = LocalRepositoryServer.app(dir,
+				LocalRepositoryServer.dependency(GROUP, "lib", "1.0"));
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings().repository("central", server.getUrl())
+				.disabled("spring-snapshots").write(root);
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void traced() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_TRACE_FILE,
+				trace.getAbsolutePath());
+		assertThat(resolve(properties)).hasSize(2);
+		List<String> events = events();
+		assertThat(events).anyMatch(event -> event.contains(
+				"\"name\":\"" + GROUP + ":core:1.0\",\"cat\":\"descriptor\""));
+		assertThat(events).anyMatch(event -> event.contains(
+				"\"name\":\"" + GROUP + ":core:jar:1.0\",\"cat\":\"artifact\""));
+		// Downloads say which repository served them
+		assertThat(events).anyMatch(event -> event.contains("\"cat\":\"download\"")
+				&& event.contains("lib:jar:1.0") && event.contains("\"url\":\""
+						+ server.getUrl()));
+		// The critical path has a row of its own, and core had to wait for lib
+		List<String> critical = new ArrayList<>();
+		for (String event : events) {
+			if (event.contains("\"ph\":\"X\"") && event.contains("\"tid\":0,")) {
+				critical.add(event);
+			}
+		}
+		assertThat(critical).isNotEmpty()
+				.allMatch(event -> event.contains("\"critical\":\"true\""));
+		assertThat(index(critical, GROUP + ":lib:1.0\",\"cat\":\"descriptor\""))
+				.isGreaterThanOrEqualTo(0).isLessThan(
+						index(critical, GROUP + ":core:1.0\",\"cat\":\"descriptor\""));
+		// The parent pom is highlighted where it was resolved
+		assertThat(events).anyMatch(event -> event.contains(GROUP + ":parent:pom:1.0")
+				&& event.contains("\"cat\":\"artifact\"")
+				&& event.contains("\"cname\":\"terrible\"")
+				&& !event.contains("\"tid\":0,"));
+	}
+
+	@Test
+	public void local() throws Exception {
+		Properties properties = properties();
+		assertThat(resolve(properties)).hasSize(2);
+		assertThat(trace).doesNotExist();
+		DependencyResolver.close();
+		properties.setProperty(DependencyResolver.THIN_TRACE_FILE,
+				trace.getAbsolutePath());
+		assertThat(resolve(properties)).hasSize(2);
+		List<String> events = events();
+		assertThat(events).anyMatch(event -> event.contains(
+				"\"name\":\"" + GROUP + ":lib:jar:1.0\",\"cat\":\"artifact\""));
+		assertThat(events).noneMatch(event -> event.contains("\"cat\":\"download\""));
+	}
+
+	private int index(List<String> events, String name) {
+		for (int i = 0; i < events.size(); i++) {
+			if (events.get(i).contains(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private List<String> events() throws Exception {
+		assertThat(trace).exists();
+		List<String> lines = Files.readAllLines(trace.toPath());
+		assertThat(lines.get(0)).isEqualTo("{\"traceEvents\":[");
+		assertThat(lines.get(lines.size() - 1)).startsWith("],\"displayTimeUnit\"");
+		return lines;
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		return properties;
+	}
+
+	private List<Dependency> resolve(Properties properties) {
+		return DependencyResolver.instance().dependencies(app, properties);
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.Proxy;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.PeekTask;
+import org.eclipse.aether.transfer.NoTransporterException;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverTransportTests {
+
+	private static final String GROUP = "com.example.transport";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File root;
+
+	private Resource app;
+
+	@BeforeEach
+	public void init() throws Exception {
+		File remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		StringBuilder top = new StringBuilder();
+		for (int i = 0; i < 6; i++) {
+			LocalRepositoryServer.install(remote, GROUP, "b" + i, "1.0", 4096);
+			LocalRepositoryServer.install(remote, GROUP, "a" + i, "1.0", 4096,
+					"<dependencies>" + dependency("b" + i) + "</dependencies>");
+			top.append(dependency("a" + i));
+		}
+		app = LocalRepositoryServer.app(dir, top.toString());
+		server = new LocalRepositoryServer(remote, 20);
+		server.start();
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void jdkSameResultsAsDefault() throws Exception {
+		LocalRepositoryServer.settings(root, server.getUrl());
+		List<String> expected = resolve("default");
+		List<String> defaults = server.getRequests();
+		int requests = defaults.size();
+		assertThat(defaults).anyMatch(request -> request.endsWith(".sha1"));
+		clear();
+		List<String> actual = resolve("jdk");
+		assertThat(actual).hasSize(12).containsExactlyElementsOf(expected);
+		// Checksums come in the response headers
+		assertThat(server.getRequests()).noneMatch(request -> request.endsWith(".sha1"));
+		assertThat(server.getRequests().size()).isLessThan(requests);
+		// Connections are pooled and kept alive
+		assertThat(server.getConnections()).isLessThan(server.getRequests().size());
+	}
+
+	@Test
+	public void jdkWithCredentials() throws Exception {
+		server.setCredentials("user", "secret");
+		LocalRepositoryServer.settings(root, server.getUrl(), "user", "secret");
+		assertThat(resolve("jdk")).hasSize(12);
+	}
+
+	@Test
+	public void jdkCredentialsNotRedirected() throws Exception {
+		LocalRepositoryServer mirror = new LocalRepositoryServer(new File(dir, "remote"),
+				0);
+		mirror.start();
+		try {
+			server.setCredentials("user", "secret");
+			server.setRedirect(mirror.getUrl());
+			LocalRepositoryServer.settings(root, server.getUrl(), "user", "secret");
+			assertThat(resolve("jdk")).hasSize(12);
+			assertThat(server.getAuthorized()).isGreaterThan(0);
+			// The other host got the requests but not the credentials
+			assertThat(mirror.getRequests()).isNotEmpty();
+			assertThat(mirror.getAuthorized()).isEqualTo(0);
+		}
+		finally {
+			mirror.stop();
+		}
+	}
+
+	@Test
+	public void jdkThroughAuthenticatingProxy() throws Exception {
+		server.setProxyCredentials("user", "secret");
+		// Nothing is listening at the repository URL, so only the proxy can serve it
+		LocalRepositoryServer.settings().repository("standin", "http://standin.invalid/")
+				.proxy("http", "localhost", server.getPort(), "user", "secret")
+				.write(root);
+		assertThat(resolve("jdk")).hasSize(12);
+		assertThat(server.getRequests()).isNotEmpty();
+	}
+
+	@Test
+	public void jdkHttpsProxyCredentialsRefused() throws Exception {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+		session.setConfigProperty(JdkHttpTransporterFactory.TRANSPORT, "jdk");
+		RemoteRepository repository = new RemoteRepository.Builder("secure", "default",
+				"https://secure.invalid/")
+						.setProxy(new Proxy("http", "localhost", server.getPort(),
+								new AuthenticationBuilder().addUsername("user")
+										.addPassword("secret").build()))
+						.build();
+		// The JDK will not send basic credentials for a tunnel (by default)
+		assertThat(JdkHttpTransporter.isTunnelAuthentication()).isFalse();
+		assertThatThrownBy(
+				() -> new JdkHttpTransporterFactory().newInstance(session, repository))
+						.isInstanceOf(NoTransporterException.class)
+						.hasMessageContaining("proxy");
+	}
+
+	@Test
+	public void jdkWithoutTimeouts() throws Exception {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+		// Zero means no timeout at all
+		session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT, 0);
+		session.setConfigProperty(ConfigurationProperties.CONNECT_TIMEOUT, 0);
+		RemoteRepository repository = new RemoteRepository.Builder("standin", "default",
+				server.getUrl()).build();
+		JdkHttpTransporter transporter = new JdkHttpTransporter(session, repository);
+		transporter.peek(new PeekTask(
+				URI.create("com/example/transport/a0/1.0/a0-1.0.pom")));
+		assertThat(server.getRequests())
+				.containsExactly("HEAD /com/example/transport/a0/1.0/a0-1.0.pom");
+	}
+
+	private void clear() {
+		DependencyResolver.close();
+		server.reset();
+		FileSystemUtils.deleteRecursively(new File(root, "repository"));
+		FileSystemUtils.deleteRecursively(new File(root, "cache"));
+	}
+
+	private String dependency(String artifactId) {
+		return LocalRepositoryServer.dependency(GROUP, artifactId, "1.0");
+	}
+
+	private List<String> resolve(String transport) {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_TRANSPORT, transport);
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		return dependencies.stream()
+				.map(dependency -> dependency.getArtifact().getArtifactId() + "="
+						+ dependency.getArtifact().getFile().length())
+				.collect(Collectors.toList());
+	}
+
+}
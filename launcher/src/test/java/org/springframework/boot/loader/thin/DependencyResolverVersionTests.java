@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverVersionTests {
+
+	private static final String GROUP = "com.example.version";
+
+	private static final String METADATA = "/com/example/version/lib/maven-metadata.xml";
+
+	@TempDir
+	File dir;
+
+	private LocalRepositoryServer server;
+
+	private File remote;
+
+	private File root;
+
+	@BeforeEach
+	public void init() throws Exception {
+		remote = new File(dir, "remote");
+		root = new File(dir, "root");
+		LocalRepositoryServer.install(remote, GROUP, "lib", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "lib", "1.5", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "lib", "1.8", 1024);
+		metadata("1.0", "1.5");
+		server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		LocalRepositoryServer.settings().repository("central", server.getUrl())
+				.disabled("spring-snapshots").write(root);
+		DependencyResolver.close();
+	}
+
+	@AfterEach
+	public void close() {
+		server.stop();
+		DependencyResolver.close();
+	}
+
+	@Test
+	public void cached() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_VERSIONS, "1h");
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		assertThat(server.getRequests()).contains("GET " + METADATA);
+		DependencyResolver.close();
+		DependencyResolver.metrics().reset();
+		server.reset();
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		// No metadata round trips on a warm restart
+		assertThat(server.getRequests()).isEmpty();
+		Properties metrics = DependencyResolver.metrics().toProperties();
+		assertThat(metrics.getProperty("versions.cached")).isEqualTo("1");
+		assertThat(metrics.getProperty("versions.cached." + GROUP + ":lib:[1.0,2.0)"))
+				.isEqualTo("1.0,1.5");
+	}
+
+	@Test
+	public void latest() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_VERSIONS, "1h");
+		assertThat(resolve(properties, "LATEST")).isEqualTo("1.5");
+		DependencyResolver.close();
+		server.reset();
+		assertThat(resolve(properties, "LATEST")).isEqualTo("1.5");
+		assertThat(server.getRequests()).isEmpty();
+	}
+
+	@Test
+	public void pinned() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_VERSIONS, "pin");
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		metadata("1.0", "1.5", "1.8");
+		DependencyResolver.close();
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		DependencyResolver.close();
+		properties.setProperty(ThinJarLauncher.THIN_FORCE, "true");
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.8");
+	}
+
+	@Test
+	public void expired() throws Exception {
+		Properties properties = properties();
+		properties.setProperty(DependencyResolver.THIN_CACHE_VERSIONS, "100ms");
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		metadata("1.0", "1.5", "1.8");
+		DependencyResolver.close();
+		Thread.sleep(200L);
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.8");
+	}
+
+	@Test
+	public void switchedOff() throws Exception {
+		Properties properties = properties();
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.5");
+		metadata("1.0", "1.5", "1.8");
+		DependencyResolver.close();
+		assertThat(resolve(properties, "[1.0,2.0)")).isEqualTo("1.8");
+		assertThat(new File(root, "cache/versions")).doesNotExist();
+	}
+
+	private void metadata(String... versions) throws Exception {
+		StringBuilder builder = new StringBuilder();
+		for (String version : versions) {
+			builder.append("<version>").append(version).append("</version>");
+		}
+		String latest = versions[versions.length - 1];
+		String metadata = "<metadata><groupId>" + GROUP + "</groupId>"
+				+ "<artifactId>lib</artifactId><versioning><latest>" + latest
+				+ "</latest><release>" + latest + "</release><versions>" + builder
+				+ "</versions><lastUpdated>20170101120000</lastUpdated></versioning>"
+				+ "</metadata>";
+		Files.write(new File(remote, METADATA).toPath(),
+				metadata.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+		properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+		// Otherwise the metadata is only checked once a day anyway
+		properties.setProperty("repositories.updates.*", "always");
+		return properties;
+	}
+
+	private String resolve(Properties properties, String version) throws Exception {
+		Resource app = LocalRepositoryServer.app(dir,
+				LocalRepositoryServer.dependency(GROUP, "lib", version));
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(app,
+				properties);
+		assertThat(dependencies).hasSize(1);
+		return dependencies.get(0).getArtifact().getVersion();
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DigestsTests {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void sha1() throws Exception {
+		assertThat(Digests.sha1("abc"))
+				.isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+		File file = new File(dir, "abc.txt");
+		Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+		assertThat(Digests.sha1(file.toPath())).isEqualTo(Digests.sha1("abc"));
+	}
+
+	@Test
+	public void sha256() throws Exception {
+		File file = new File(dir, "abc.txt");
+		Files.write(file.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+		assertThat(Digests.sha256(file.toPath())).isEqualTo(
+				"ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+	}
+
+	@Test
+	public void hex() throws Exception {
+		assertThat(Digests.hex(new byte[] { 0, 15, 16, -1 })).isEqualTo("000f10ff");
+	}
+
+}
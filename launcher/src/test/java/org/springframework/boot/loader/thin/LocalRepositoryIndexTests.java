@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.FileSystemResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class LocalRepositoryIndexTests {
+
+	private static final String GROUP = "com.example.index";
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void addAndSave() throws Exception {
+		LocalRepositoryIndex index = new LocalRepositoryIndex(dir);
+		index.add("com/example/foo/1.0/foo-1.0.jar", 123, "central");
+		index.add("com/example/foo/1.0/foo-1.0.jar", 123, "spring");
+		index.add("com/example/bar/1.0/bar-1.0.jar", 456, null);
+		assertThat(index.get("com/example/foo/1.0/foo-1.0.jar").getIds())
+				.containsExactly("central", "spring");
+		index.save();
+		assertThat(new File(dir, LocalRepositoryIndex.FILE_NAME)).exists();
+		index = new LocalRepositoryIndex(dir);
+		LocalRepositoryIndex.Entry entry = index
+				.get("com/example/foo/1.0/foo-1.0.jar");
+		assertThat(entry.getSize()).isEqualTo(123);
+		assertThat(entry.isLocal()).isFalse();
+		assertThat(entry.getIds()).containsExactly("central", "spring");
+		assertThat(index.get("com/example/bar/1.0/bar-1.0.jar").isLocal()).isTrue();
+		assertThat(index.get("com/example/spam/1.0/spam-1.0.jar")).isNull();
+	}
+
+	@Test
+	public void readIntoMemory() throws Exception {
+		LocalRepositoryIndex index = new LocalRepositoryIndex(dir);
+		index.add("com/example/foo/1.0/foo-1.0.jar", 123, "central");
+		index.save();
+		File file = new File(dir, LocalRepositoryIndex.FILE_NAME);
+		assertThat(LocalRepositoryIndex.load(file, true).isDirect()).isTrue();
+		// What save() reads (and Windows uses) does not hold on to the file
+		assertThat(LocalRepositoryIndex.load(file, false).isDirect()).isFalse();
+		assertThat(LocalRepositoryIndex.load(file, false))
+				.isEqualTo(LocalRepositoryIndex.load(file, true));
+	}
+
+	@Test
+	public void changedSize() throws Exception {
+		LocalRepositoryIndex index = new LocalRepositoryIndex(dir);
+		index.add("com/example/foo/1.0/foo-1.0.jar", 123, "central");
+		index.add("com/example/foo/1.0/foo-1.0.jar", 124, "spring");
+		// A different file, so the old repository no longer applies
+		assertThat(index.get("com/example/foo/1.0/foo-1.0.jar").getIds())
+				.containsExactly("spring");
+	}
+
+	@Test
+	public void mergedWithOtherProcess() throws Exception {
+		LocalRepositoryIndex one = new LocalRepositoryIndex(dir);
+		LocalRepositoryIndex two = new LocalRepositoryIndex(dir);
+		one.add("com/example/foo/1.0/foo-1.0.jar", 123, "central");
+		two.add("com/example/bar/1.0/bar-1.0.jar", 456, "central");
+		one.save();
+		two.save();
+		LocalRepositoryIndex index = new LocalRepositoryIndex(dir);
+		assertThat(index.get("com/example/foo/1.0/foo-1.0.jar")).isNotNull();
+		assertThat(index.get("com/example/bar/1.0/bar-1.0.jar")).isNotNull();
+		index.remove("com/example/foo/1.0/foo-1.0.jar");
+		index.save();
+		assertThat(new LocalRepositoryIndex(dir).get("com/example/foo/1.0/foo-1.0.jar"))
+				.isNull();
+	}
+
+	@Test
+	public void lookups() throws Exception {
+		LocalRepositoryIndex index = new LocalRepositoryIndex(dir);
+		int count = 10000;
+		for (int i = 0; i < count; i++) {
+			index.add("com/example/a" + i + "/1.0/a" + i + "-1.0.jar", i, "central");
+		}
+		index.save();
+		index = new LocalRepositoryIndex(dir);
+		long best = Long.MAX_VALUE;
+		for (int j = 0; j < 5; j++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				assertThat(index.get("com/example/a" + i + "/1.0/a" + i + "-1.0.jar")
+						.getSize()).isEqualTo(i);
+			}
+			best = Math.min(best, (System.nanoTime() - start) / count);
+		}
+		System.err.println("Index lookup (" + count + " entries): " + best + "ns");
+	}
+
+	@Test
+	public void resolved() throws Exception {
+		File remote = new File(dir, "remote");
+		File root = new File(dir, "root");
+		LocalRepositoryServer.install(remote, GROUP, "foo", "1.0", 1024);
+		LocalRepositoryServer.install(remote, GROUP, "bar", "1.0", 1024);
+		File pom = LocalRepositoryServer.pom(new File(dir, "app"), "com.example", "app",
+				"0.0.1",
+				"<dependencies><dependency><groupId>" + GROUP + "</groupId>"
+						+ "<artifactId>foo</artifactId><version>1.0</version>"
+						+ "</dependency><dependency><groupId>" + GROUP + "</groupId>"
+						+ "<artifactId>bar</artifactId><version>1.0</version>"
+						+ "</dependency></dependencies>");
+		LocalRepositoryServer server = new LocalRepositoryServer(remote, 0);
+		server.start();
+		DependencyResolver.close();
+		try {
+			LocalRepositoryServer.settings(root, server.getUrl());
+			Properties properties = new Properties();
+			properties.setProperty(DependencyResolver.THIN_ROOT, root.getAbsolutePath());
+			properties.setProperty(DependencyResolver.THIN_PREFETCH, "false");
+			FileSystemResource app = new FileSystemResource(
+					new File(pom, "app-0.0.1.pom"));
+			assertThat(DependencyResolver.instance().dependencies(app, properties))
+					.hasSize(2);
+			File repository = new File(root, "repository");
+			LocalRepositoryIndex index = new LocalRepositoryIndex(repository);
+			String jar = "com/example/index/foo/1.0/foo-1.0.jar";
+			assertThat(index.get(jar).getIds()).contains("standin");
+			// Deleted behind the resolver's back, so the index is out of date
+			new File(repository, jar).delete();
+			DependencyResolver.close();
+			server.reset();
+			List<Dependency> dependencies = DependencyResolver.instance()
+					.dependencies(app, properties);
+			assertThat(dependencies).allMatch(d -> d.getArtifact().getFile().exists());
+			assertThat(server.getRequests()).contains("GET /" + jar)
+					.noneMatch(request -> request.contains("/bar/"));
+		}
+		finally {
+			server.stop();
+			DependencyResolver.close();
+		}
+	}
+
+}
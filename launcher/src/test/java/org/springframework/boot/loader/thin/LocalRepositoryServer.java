@@ -0,0 +1,581 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.aether.graph.Dependency;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * A stand-in for a remote Maven repository, serving files from a local directory over
+ * HTTP with some latency injected into every request, so that tests can observe how
+ * the resolver talks to the network.
+ *
+ * @author Dave Syer
+ *
+ */
+class LocalRepositoryServer {
+
+	private final File root;
+
+	private final long latency;
+
+	private HttpServer server;
+
+	private int port;
+
+	private volatile Activity activity = new Activity();
+
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+
+	private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+	private String authorization;
+
+	private String proxyAuthorization;
+
+	private volatile int drop;
+
+	private volatile String redirect;
+
+	private final AtomicInteger authorized = new AtomicInteger();
+
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	LocalRepositoryServer(File root, long latency) {
+		this.root = root;
+		this.latency = latency;
+	}
+
+	/**
+	 * Start the server, on the same port as last time if it was stopped.
+	 */
+	public void start() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", this.port), 0);
+		this.server.setExecutor(Executors.newCachedThreadPool());
+		this.server.createContext("/", this::handle);
+		this.server.start();
+		this.port = this.server.getAddress().getPort();
+	}
+
+	public void stop() {
+		if (this.server != null) {
+			this.server.stop(0);
+		}
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + this.port + "/";
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	public List<String> getRequests() {
+		return this.requests;
+	}
+
+	/**
+	 * The number of conditional requests answered with a 304 since the last reset.
+	 */
+	public int getNotModified() {
+		return this.notModified.get();
+	}
+
+	/**
+	 * The most requests that were in flight at once since the last reset.
+	 */
+	public int getMaxActive() {
+		return getMaxActive("");
+	}
+
+	/**
+	 * The most requests for paths with this extension (e.g. ".pom") that were in flight
+	 * at once since the last reset.
+	 */
+	public int getMaxActive(String extension) {
+		return this.activity.max(extension);
+	}
+
+	/**
+	 * Count requests in flight together with another server, so that
+	 * {@link #getMaxActive()} on either of them shows requests to both at once.
+	 */
+	public void share(LocalRepositoryServer other) {
+		this.activity = other.activity;
+	}
+
+	/**
+	 * The number of distinct client connections (remote ports) seen since the last reset.
+	 */
+	public int getConnections() {
+		return this.connections.size();
+	}
+
+	/**
+	 * Require basic authentication with these credentials for all requests.
+	 */
+	public void setCredentials(String username, String password) {
+		this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+				(username + ":" + password).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Act as a forward proxy (requests for any host are served from the same files)
+	 * that requires basic authentication with these credentials.
+	 */
+	public void setProxyCredentials(String username, String password) {
+		this.proxyAuthorization = "Basic " + Base64.getEncoder().encodeToString(
+				(username + ":" + password).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Drop the connection after sending this many bytes of a response body (0, the
+	 * default, never drops), so a client has to resume to get the whole of a large file.
+	 */
+	public void setDrop(int bytes) {
+		this.drop = bytes;
+	}
+
+	/**
+	 * Redirect (with a 302) every request that gets past the credentials check to the
+	 * same path under this URL (e.g. on another server).
+	 */
+	public void setRedirect(String url) {
+		this.redirect = url;
+	}
+
+	/**
+	 * The number of requests that carried an <code>Authorization</code> header since
+	 * the last reset.
+	 */
+	public int getAuthorized() {
+		return this.authorized.get();
+	}
+
+	public void reset() {
+		this.authorized.set(0);
+		this.requests.clear();
+		this.connections.clear();
+		this.activity.reset();
+		this.notModified.set(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		Activity activity = this.activity;
+		String extension = extension(exchange.getRequestURI().getPath());
+		activity.start(extension);
+		try {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			this.requests.add(exchange.getRequestMethod() + " "
+					+ exchange.getRequestURI().getPath() + (range == null ? "" : " " + range));
+			this.connections.add(exchange.getRemoteAddress().getPort());
+			Thread.sleep(this.latency);
+			if (exchange.getRequestHeaders().containsKey("Authorization")) {
+				this.authorized.incrementAndGet();
+			}
+			if (this.proxyAuthorization != null && !this.proxyAuthorization.equals(
+					exchange.getRequestHeaders().getFirst("Proxy-Authorization"))) {
+				exchange.getResponseHeaders().set("Proxy-Authenticate",
+						"Basic realm=\"proxy\"");
+				exchange.sendResponseHeaders(407, -1);
+				return;
+			}
+			if (this.authorization != null && !this.authorization
+					.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+				exchange.getResponseHeaders().set("WWW-Authenticate",
+						"Basic realm=\"standin\"");
+				exchange.sendResponseHeaders(401, -1);
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if (this.redirect != null) {
+				exchange.getResponseHeaders().set("Location",
+						this.redirect + path.substring(1));
+				exchange.sendResponseHeaders(302, -1);
+				return;
+			}
+			File file = new File(this.root, path);
+			if (!file.isFile()) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			long modified = file.lastModified() / 1000 * 1000;
+			String unmodified = exchange.getRequestHeaders().getFirst("If-Unmodified-Since");
+			if (unmodified != null && modified > ZonedDateTime
+					.parse(unmodified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+					.toEpochMilli()) {
+				exchange.sendResponseHeaders(412, -1);
+				return;
+			}
+			String etag = "\"" + Long.toHexString(modified) + "-"
+					+ Long.toHexString(file.length()) + "\"";
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.getResponseHeaders().set("Last-Modified",
+					DateTimeFormatter.RFC_1123_DATE_TIME
+							.format(Instant.ofEpochMilli(modified).atZone(ZoneOffset.UTC)));
+			String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+			String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			if (match != null ? match.equals(etag)
+					: since != null && modified <= ZonedDateTime
+							.parse(since, DateTimeFormatter.RFC_1123_DATE_TIME)
+							.toInstant().toEpochMilli()) {
+				this.notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			File sha1 = new File(file.getPath() + ".sha1");
+			if (sha1.isFile()) {
+				// Like Artifactory and Nexus, so clients can skip the checksum request
+				exchange.getResponseHeaders().set("X-Checksum-Sha1", new String(
+						Files.readAllBytes(sha1.toPath()), StandardCharsets.UTF_8));
+			}
+			String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if ((path.endsWith(".pom") || path.endsWith(".xml")) && encoding != null
+					&& encoding.contains("gzip")) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+					gzip.write(bytes);
+				}
+				bytes = compressed.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			if ("HEAD".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			int offset = 0;
+			if (range != null && range.matches("bytes=[0-9]+-") && !exchange
+					.getResponseHeaders().containsKey("Content-Encoding")) {
+				offset = Integer.parseInt(range.substring(6, range.length() - 1));
+				offset = offset < bytes.length ? offset : 0;
+			}
+			int length = bytes.length - offset;
+			if (offset > 0) {
+				exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-"
+						+ (bytes.length - 1) + "/" + bytes.length);
+			}
+			exchange.sendResponseHeaders(offset > 0 ? 206 : 200, length);
+			int sent = this.drop > 0 ? Math.min(this.drop, length) : length;
+			OutputStream body = exchange.getResponseBody();
+			body.write(bytes, offset, sent);
+			// If it is short, closing the exchange (not the body) drops the connection
+			body.flush();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			activity.end(extension);
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Create a jar and pom (with checksums) for the given coordinates in a repository
+	 * directory.
+	 */
+	static void install(File repository, String groupId, String artifactId, String version,
+			int size) throws Exception {
+		install(repository, groupId, artifactId, version, size, "");
+	}
+
+	/**
+	 * Create a jar and pom (with checksums) for the given coordinates in a repository
+	 * directory, with some extra content (e.g. parent or dependencies) in the pom.
+	 */
+	static void install(File repository, String groupId, String artifactId, String version,
+			int size, String content) throws Exception {
+		File dir = pom(repository, groupId, artifactId, version, content);
+		String base = artifactId + "-" + version;
+		byte[] jar = new byte[size];
+		for (int i = 0; i < jar.length; i++) {
+			jar[i] = (byte) (i + artifactId.hashCode());
+		}
+		write(new File(dir, base + ".jar"), jar);
+	}
+
+	/**
+	 * Create a pom (with checksum) for the given coordinates in a repository directory,
+	 * with some extra content (e.g. packaging or dependency management).
+	 */
+	static File pom(File repository, String groupId, String artifactId, String version,
+			String content) throws Exception {
+		File dir = new File(repository,
+				groupId.replace(".", "/") + "/" + artifactId + "/" + version);
+		dir.mkdirs();
+		String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+				+ "<modelVersion>4.0.0</modelVersion>" + "<groupId>" + groupId + "</groupId>"
+				+ "<artifactId>" + artifactId + "</artifactId>" + "<version>" + version
+				+ "</version>" + content + "</project>";
+		write(new File(dir, artifactId + "-" + version + ".pom"),
+				pom.getBytes(StandardCharsets.UTF_8));
+		return dir;
+	}
+
+	/**
+	 * Create a snapshot jar and pom (with checksums) in a repository directory, with
+	 * <code>maven-metadata.xml</code> pointing at a timestamped build.
+	 */
+	static void snapshot(File repository, String groupId, String artifactId,
+			String version, String timestamp, int build) throws Exception {
+		String base = version.replace("-SNAPSHOT", "");
+		String unique = base + "-" + timestamp + "-" + build;
+		File dir = new File(repository,
+				groupId.replace(".", "/") + "/" + artifactId + "/" + version);
+		install(repository, groupId, artifactId, version, 1024);
+		Files.move(new File(dir, artifactId + "-" + version + ".pom").toPath(),
+				new File(dir, artifactId + "-" + unique + ".pom").toPath());
+		Files.move(new File(dir, artifactId + "-" + version + ".jar").toPath(),
+				new File(dir, artifactId + "-" + unique + ".jar").toPath());
+		for (String type : new String[] { "pom", "jar" }) {
+			Files.move(new File(dir, artifactId + "-" + version + "." + type + ".sha1")
+					.toPath(),
+					new File(dir, artifactId + "-" + unique + "." + type + ".sha1")
+							.toPath());
+		}
+		String metadata = "<metadata><groupId>" + groupId + "</groupId><artifactId>"
+				+ artifactId + "</artifactId><version>" + version + "</version>"
+				+ "<versioning><snapshot><timestamp>" + timestamp + "</timestamp>"
+				+ "<buildNumber>" + build + "</buildNumber></snapshot>"
+				+ "<lastUpdated>" + timestamp.replace(".", "") + "</lastUpdated>"
+				+ "<snapshotVersions>"
+				+ "<snapshotVersion><extension>pom</extension><value>" + unique
+				+ "</value></snapshotVersion>"
+				+ "<snapshotVersion><extension>jar</extension><value>" + unique
+				+ "</value></snapshotVersion>"
+				+ "</snapshotVersions></versioning></metadata>";
+		write(new File(dir, "maven-metadata.xml"),
+				metadata.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Create a pom for <code>com.example:app</code> with some content (e.g.
+	 * dependencies) in a directory called "app", as a resource to resolve.
+	 */
+	static Resource app(File directory, String version, String content) throws Exception {
+		File pom = pom(new File(directory, "app"), "com.example", "app", version,
+				content);
+		return new FileSystemResource(new File(pom, "app-" + version + ".pom"));
+	}
+
+	/**
+	 * Create a pom for <code>com.example:app:0.0.1</code> with these dependencies (each
+	 * a <code>&lt;dependency&gt;</code> element) in a directory called "app".
+	 */
+	static Resource app(File directory, String dependencies) throws Exception {
+		return app(directory, "0.0.1",
+				"<dependencies>" + dependencies + "</dependencies>");
+	}
+
+	/**
+	 * A <code>&lt;dependency&gt;</code> element for a pom.
+	 */
+	static String dependency(String groupId, String artifactId, String version) {
+		return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId
+				+ "</artifactId><version>" + version + "</version></dependency>";
+	}
+
+	/**
+	 * Resolve the dependencies of a pom and list their artifact ids.
+	 */
+	static List<String> resolve(Resource pom, Properties properties) {
+		List<Dependency> dependencies = DependencyResolver.instance().dependencies(pom,
+				properties);
+		return dependencies.stream().map(d -> d.getArtifact().getArtifactId())
+				.collect(Collectors.toList());
+	}
+
+	static void settings(File root, String url) throws Exception {
+		settings().repository("standin", url).write(root);
+	}
+
+	/**
+	 * Settings with the stand-in repository and basic credentials for it.
+	 */
+	static void settings(File root, String url, String username, String password)
+			throws Exception {
+		settings().repository("standin", url).server("standin", username, password)
+				.write(root);
+	}
+
+	/**
+	 * A builder for settings with more than one repository (or mirrors).
+	 */
+	static SettingsBuilder settings() {
+		return new SettingsBuilder();
+	}
+
+	private static void write(File file, byte[] bytes) throws Exception {
+		Files.write(file.toPath(), bytes);
+		Files.write(new File(file.getPath() + ".sha1").toPath(),
+				Digests.sha1(bytes).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String extension(String path) {
+		int slash = path.lastIndexOf('/');
+		int dot = path.lastIndexOf('.');
+		return dot > slash ? path.substring(dot) : "";
+	}
+
+	/**
+	 * Requests in flight, in total and by extension, with the most seen at once.
+	 */
+	private static class Activity {
+
+		private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+		private final Map<String, AtomicInteger> max = new ConcurrentHashMap<>();
+
+		void start(String extension) {
+			add("", 1);
+			if (!extension.isEmpty()) {
+				add(extension, 1);
+			}
+		}
+
+		void end(String extension) {
+			add("", -1);
+			if (!extension.isEmpty()) {
+				add(extension, -1);
+			}
+		}
+
+		int max(String extension) {
+			AtomicInteger value = this.max.get(extension);
+			return value == null ? 0 : value.get();
+		}
+
+		void reset() {
+			this.max.clear();
+		}
+
+		private void add(String key, int delta) {
+			int current = this.active.computeIfAbsent(key, k -> new AtomicInteger())
+					.addAndGet(delta);
+			this.max.computeIfAbsent(key, k -> new AtomicInteger())
+					.accumulateAndGet(current, Math::max);
+		}
+
+	}
+
+	/**
+	 * Builds a <code>settings.xml</code> with a profile, active by default, that lists
+	 * repositories. Using the ids of the default repositories ("central" and
+	 * "spring-snapshots") replaces them, so a test stays off the network.
+	 */
+	static class SettingsBuilder {
+
+		private final StringBuilder repositories = new StringBuilder();
+
+		private final StringBuilder mirrors = new StringBuilder();
+
+		private final StringBuilder servers = new StringBuilder();
+
+		private final StringBuilder proxies = new StringBuilder();
+
+		SettingsBuilder repository(String id, String url) {
+			return repository(id, url, "");
+		}
+
+		/**
+		 * A repository with some extra content (e.g. release or snapshot policies).
+		 */
+		SettingsBuilder repository(String id, String url, String content) {
+			this.repositories.append("<repository><id>" + id + "</id><url>" + url
+					+ "</url>" + content + "</repository>");
+			return this;
+		}
+
+		/**
+		 * A repository that is switched off for releases and snapshots, so nothing is
+		 * ever requested from it.
+		 */
+		SettingsBuilder disabled(String id) {
+			return repository(id, "http://localhost:1/",
+					"<releases><enabled>false</enabled></releases>"
+							+ "<snapshots><enabled>false</enabled></snapshots>");
+		}
+
+		SettingsBuilder mirror(String id, String mirrorOf, String url) {
+			this.mirrors.append("<mirror><id>" + id + "</id><mirrorOf>" + mirrorOf
+					+ "</mirrorOf><url>" + url + "</url></mirror>");
+			return this;
+		}
+
+		SettingsBuilder server(String id, String username, String password) {
+			this.servers.append("<server><id>" + id + "</id><username>" + username
+					+ "</username><password>" + password + "</password></server>");
+			return this;
+		}
+
+		SettingsBuilder proxy(String protocol, String host, int port, String username,
+				String password) {
+			this.proxies.append("<proxy><active>true</active><protocol>" + protocol
+					+ "</protocol><host>" + host + "</host><port>" + port
+					+ "</port><username>" + username + "</username><password>"
+					+ password + "</password></proxy>");
+			return this;
+		}
+
+		void write(File root) throws IOException {
+			root.mkdirs();
+			String settings = "<settings>"
+					+ (this.mirrors.length() > 0
+							? "<mirrors>" + this.mirrors + "</mirrors>" : "")
+					+ (this.servers.length() > 0
+							? "<servers>" + this.servers + "</servers>" : "")
+					+ (this.proxies.length() > 0
+							? "<proxies>" + this.proxies + "</proxies>" : "")
+					+ "<profiles><profile><id>standin</id>"
+					+ "<activation><activeByDefault>true</activeByDefault></activation>"
+					+ "<repositories>" + this.repositories + "</repositories>"
+					+ "</profile></profiles></settings>";
+			Files.write(new File(root, "settings.xml").toPath(),
+					settings.getBytes(StandardCharsets.UTF_8));
+		}
+
+	}
+
+}
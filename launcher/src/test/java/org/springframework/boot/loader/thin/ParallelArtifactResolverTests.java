@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+import org.eclipse.aether.spi.connector.MetadataUpload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ParallelArtifactResolverTests {
+
+	@TempDir
+	File dir;
+
+	private final AtomicInteger opened = new AtomicInteger();
+
+	private final AtomicInteger closed = new AtomicInteger();
+
+	private final List<ArtifactRequest> resolved = new ArrayList<>();
+
+	private DefaultRepositorySystemSession session;
+
+	private ParallelArtifactResolver resolver;
+
+	@BeforeEach
+	public void init() throws Exception {
+		this.session = MavenRepositorySystemUtils.newSession();
+		this.session.setLocalRepositoryManager(new SimpleLocalRepositoryManagerFactory()
+				.newInstance(this.session, new LocalRepository(this.dir)));
+		this.session.setConfigProperty(ParallelArtifactResolver.PARALLEL, true);
+		this.resolver = new ParallelArtifactResolver(new Recorder(),
+				(session, repository) -> {
+					this.opened.incrementAndGet();
+					return new Connector(repository);
+				});
+	}
+
+	@Test
+	public void oneConnectorPerRepository() throws Exception {
+		List<ArtifactRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			requests.add(new ArtifactRequest(
+					new DefaultArtifact("com.example:lib" + i + ":1.0"),
+					Arrays.asList(repository("snapshots"), repository("central")),
+					null));
+		}
+		this.resolver.resolveArtifacts(this.session, requests);
+		assertThat(this.resolved).hasSize(6).allMatch(request -> request
+				.getRepositories().equals(Arrays.asList(repository("central"))));
+		assertThat(this.opened.get()).isEqualTo(2);
+		assertThat(this.closed.get()).isEqualTo(2);
+	}
+
+	private RemoteRepository repository(String id) {
+		return new RemoteRepository.Builder(id, "default", "http://localhost:1/" + id)
+				.build();
+	}
+
+	/**
+	 * Records the requests it is asked to resolve, after they have been narrowed down.
+	 */
+	private class Recorder implements ArtifactResolver {
+
+		@Override
+		public ArtifactResult resolveArtifact(RepositorySystemSession session,
+				ArtifactRequest request) {
+			ParallelArtifactResolverTests.this.resolved.add(request);
+			return new ArtifactResult(request);
+		}
+
+		@Override
+		public List<ArtifactResult> resolveArtifacts(RepositorySystemSession session,
+				Collection<? extends ArtifactRequest> requests) {
+			List<ArtifactResult> results = new ArrayList<>();
+			for (ArtifactRequest request : requests) {
+				results.add(resolveArtifact(session, request));
+			}
+			return results;
+		}
+
+	}
+
+	/**
+	 * Has everything if it is "central", and nothing otherwise.
+	 */
+	private class Connector implements RepositoryConnector {
+
+		private final RemoteRepository repository;
+
+		Connector(RemoteRepository repository) {
+			this.repository = repository;
+		}
+
+		@Override
+		public void get(Collection<? extends ArtifactDownload> artifactDownloads,
+				Collection<? extends MetadataDownload> metadataDownloads) {
+			for (ArtifactDownload download : artifactDownloads) {
+				if (!"central".equals(this.repository.getId())) {
+					download.setException(new ArtifactNotFoundException(
+							download.getArtifact(), this.repository));
+				}
+			}
+		}
+
+		@Override
+		public void put(Collection<? extends ArtifactUpload> artifactUploads,
+				Collection<? extends MetadataUpload> metadataUploads) {
+		}
+
+		@Override
+		public void close() {
+			ParallelArtifactResolverTests.this.closed.incrementAndGet();
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ReachabilityAnalyzerTests {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void unreachableJarIsReported() throws Exception {
+		File app = jar("app", App.class);
+		List<Dependency> dependencies = new ArrayList<>();
+		dependencies.add(dependency("com.example:used:1.0", jar("used", Used.class)));
+		dependencies
+				.add(dependency("com.example:unused:1.0", jar("unused", Unused.class)));
+		ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(app,
+				dependencies).analyze(App.class.getName());
+		assertThat(report.getUnused()).extracting("artifactId").containsExactly("unused");
+		assertThat(report.getSavedClasses()).isEqualTo(1);
+		assertThat(report.getSavedBytes()).isGreaterThan(0);
+		Properties properties = report.toProperties();
+		assertThat(properties.getProperty("exclusions.unused"))
+				.isEqualTo("com.example:unused");
+		assertThat(properties.getProperty("exclusions.used")).isNull();
+	}
+
+	@Test
+	public void serviceLoaderEntryIsRoot() throws Exception {
+		File app = jar("app", App.class);
+		File plugin = jar("plugin", Unused.class);
+		addEntry(plugin, "META-INF/services/java.lang.Runnable", Unused.class.getName());
+		List<Dependency> dependencies = new ArrayList<>();
+		dependencies.add(dependency("com.example:used:1.0", jar("used", Used.class)));
+		dependencies.add(dependency("com.example:plugin:1.0", plugin));
+		ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(app,
+				dependencies).analyze(App.class.getName());
+		assertThat(report.getUnused()).isEmpty();
+	}
+
+	@Test
+	public void springFactoriesEntryIsRoot() throws Exception {
+		File app = jar("app", App.class);
+		File plugin = jar("plugin", Unused.class);
+		addEntry(plugin, "META-INF/spring.factories",
+				"org.springframework.boot.autoconfigure.EnableAutoConfiguration="
+						+ Unused.class.getName());
+		List<Dependency> dependencies = new ArrayList<>();
+		dependencies.add(dependency("com.example:used:1.0", jar("used", Used.class)));
+		dependencies.add(dependency("com.example:plugin:1.0", plugin));
+		ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(app,
+				dependencies).analyze(App.class.getName());
+		assertThat(report.getUnused()).isEmpty();
+	}
+
+	@Test
+	public void resourceOnlyJarIsKept() throws Exception {
+		File app = jar("app", App.class);
+		File webjar = jar("webjar");
+		addEntry(webjar, "META-INF/resources/index.html", "<html/>");
+		List<Dependency> dependencies = new ArrayList<>();
+		dependencies.add(dependency("com.example:used:1.0", jar("used", Used.class)));
+		dependencies.add(dependency("com.example:webjar:1.0", webjar));
+		ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(app,
+				dependencies).analyze(App.class.getName());
+		assertThat(report.getUnused()).isEmpty();
+	}
+
+	@Test
+	public void constantPoolReferences() throws Exception {
+		byte[] bytes = StreamUtils.copyToByteArray(getClass().getClassLoader()
+				.getResourceAsStream(App.class.getName().replace(".", "/") + ".class"));
+		assertThat(ReachabilityAnalyzer.references(bytes))
+				.contains(Used.class.getName().replace(".", "/"))
+				.doesNotContain(Unused.class.getName().replace(".", "/"));
+	}
+
+	private Dependency dependency(String coordinates, File file) {
+		Artifact artifact = new DefaultArtifact(coordinates).setFile(file);
+		return new Dependency(artifact, "runtime");
+	}
+
+	private File jar(String name, Class<?>... types) throws Exception {
+		File file = new File(dir, name + ".jar");
+		try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(file))) {
+			for (Class<?> type : types) {
+				String path = type.getName().replace(".", "/") + ".class";
+				jar.putNextEntry(new JarEntry(path));
+				try (InputStream stream = getClass().getClassLoader()
+						.getResourceAsStream(path)) {
+					StreamUtils.copy(stream, jar);
+				}
+				jar.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	private void addEntry(File file, String path, String content) throws Exception {
+		File copy = new File(dir, file.getName() + ".tmp");
+		try (JarFile source = new JarFile(file);
+				JarOutputStream jar = new JarOutputStream(new FileOutputStream(copy))) {
+			for (JarEntry entry : Collections.list(source.entries())) {
+				jar.putNextEntry(new JarEntry(entry.getName()));
+				StreamUtils.copy(source.getInputStream(entry), jar);
+				jar.closeEntry();
+			}
+			jar.putNextEntry(new JarEntry(path));
+			jar.write(content.getBytes(StandardCharsets.UTF_8));
+			jar.closeEntry();
+		}
+		file.delete();
+		copy.renameTo(file);
+	}
+
+	static class App {
+
+		public static void main(String[] args) {
+			new Used().run();
+		}
+
+	}
+
+	static class Used implements Runnable {
+
+		@Override
+		public void run() {
+		}
+
+	}
+
+	static class Unused implements Runnable {
+
+		@Override
+		public void run() {
+		}
+
+	}
+
+}
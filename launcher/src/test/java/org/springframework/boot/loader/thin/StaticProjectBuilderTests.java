@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingResult;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.impl.guice.AetherModule;
+import org.eclipse.aether.repository.LocalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class StaticProjectBuilderTests {
+
+	private static final String GROUP = "com.example.static";
+
+	@TempDir
+	File dir;
+
+	private ProjectBuilder builder;
+
+	private ProjectBuildingRequest request;
+
+	@BeforeEach
+	public void init() throws Exception {
+		Injector injector = Guice.createInjector(
+				Modules.override(new AetherModule()).with(
+						new DependencyCollectionModule(), new ArtifactResolutionModule()),
+				new DependencyResolutionModule(), new StaticBootstrapModule());
+		this.builder = injector.getInstance(ProjectBuilder.class);
+		RepositorySystem system = injector.getInstance(RepositorySystem.class);
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session,
+				new LocalRepository(new File(this.dir, "repository"))));
+		this.request = new DefaultProjectBuildingRequest();
+		this.request.setRepositorySession(session);
+		this.request.setSystemProperties(System.getProperties());
+	}
+
+	@Test
+	public void pomFile() throws Exception {
+		File pom = pom(new File(this.dir, "app"), "app", "jar", "");
+		ProjectBuildingResult result = this.builder.build(pom, this.request);
+		assertThat(result.getPomFile()).isEqualTo(pom);
+		assertThat(result.getProject().getFile()).isEqualTo(pom);
+		assertThat(result.getProject().getArtifactId()).isEqualTo("app");
+	}
+
+	@Test
+	public void pomFilesWithModules() throws Exception {
+		File parent = pom(new File(this.dir, "parent"), "parent", "pom",
+				"<modules><module>child</module></modules>");
+		pom(new File(this.dir, "parent/child"), "child", "jar", "");
+		List<ProjectBuildingResult> results = this.builder
+				.build(Arrays.asList(parent), true, this.request);
+		assertThat(results).extracting(result -> result.getProject().getArtifactId())
+				.containsExactly("parent", "child");
+		assertThat(this.builder.build(Arrays.asList(parent), false, this.request))
+				.hasSize(1);
+	}
+
+	@Test
+	public void artifact() throws Exception {
+		pom(new File(this.dir, "repository/com/example/static/lib/1.0"), "lib", "jar", "")
+				.renameTo(new File(this.dir,
+						"repository/com/example/static/lib/1.0/lib-1.0.pom"));
+		ProjectBuildingResult result = this.builder.build(artifact("lib"), this.request);
+		assertThat(result.getProject().getArtifactId()).isEqualTo("lib");
+		assertThat(result.getPomFile()).hasName("lib-1.0.pom");
+	}
+
+	@Test
+	public void missingArtifact() throws Exception {
+		assertThatExceptionOfType(ProjectBuildingException.class)
+				.isThrownBy(() -> this.builder.build(artifact("missing"), this.request));
+		ProjectBuildingResult result = this.builder.build(artifact("missing"), true,
+				this.request);
+		assertThat(result.getProject().getArtifactId()).isEqualTo("missing");
+		assertThat(result.getProject().getPackaging()).isEqualTo("jar");
+	}
+
+	private Artifact artifact(String artifactId) {
+		return new DefaultArtifact(GROUP, artifactId, "1.0", null, "jar", null,
+				new DefaultArtifactHandler("jar"));
+	}
+
+	private File pom(File dir, String artifactId, String packaging, String content)
+			throws Exception {
+		dir.mkdirs();
+		File pom = new File(dir, "pom.xml");
+		Files.write(pom.toPath(),
+				("<project><modelVersion>4.0.0</modelVersion><groupId>" + GROUP
+						+ "</groupId><artifactId>" + artifactId
+						+ "</artifactId><version>1.0</version><packaging>" + packaging
+						+ "</packaging>" + content + "</project>")
+								.getBytes(StandardCharsets.UTF_8));
+		return pom;
+	}
+
+}
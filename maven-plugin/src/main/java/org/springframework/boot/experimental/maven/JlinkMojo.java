@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.FileUtils;
+
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Creates a minimal Java runtime image for the thin jar and its dependencies, as
+ * resolved by the <code>resolve</code> goal in <code>target/thin/root</code>. The JDK
+ * modules are computed by running <code>jdeps</code> over the application jar and all
+ * the jars in the root repository (including the launcher itself), and then
+ * <code>jlink</code> builds the runtime next to the root, with a launch script that uses
+ * it. I.e.
+ *
+ * <pre>
+ * $ mvn package spring-boot-thin:resolve spring-boot-thin:jlink
+ * $ target/thin/root/launch.sh
+ * </pre>
+ *
+ * Everything happens offline, using the tools from the JDK that runs Maven (Java 11 or
+ * better is needed), unless <code>thin.jdk</code> points somewhere else.
+ *
+ * @author Dave Syer
+ *
+ */
+@Mojo(name = "jlink", defaultPhase = LifecyclePhase.PACKAGE, requiresProject = true, threadSafe = true,
+		requiresDependencyResolution = ResolutionScope.NONE, requiresDependencyCollection = ResolutionScope.NONE)
+public class JlinkMojo extends ThinJarMojo {
+
+	private static final Pattern JAVA_VERSION = Pattern.compile("^JAVA_VERSION=\"(?:1\\.)?(\\d+)");
+
+	private static final Pattern VERSIONED_MODULE = Pattern
+			.compile("^META-INF/versions/(\\d+)/module-info\\.class$");
+
+	/**
+	 * Directory containing the resolved archives (the output of the resolve goal).
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/thin/root", required = true,
+			property = "thin.outputDirectory")
+	private File outputDirectory;
+
+	/**
+	 * Name of the directory (relative to the output directory) for the runtime image.
+	 */
+	@Parameter(defaultValue = "jre", required = true, property = "thin.jlink.runtime")
+	private String runtime;
+
+	/**
+	 * Modules to add to the runtime in addition to the ones discovered by jdeps
+	 * (comma-separated). The default depends on the JDK: before Java 22 it is
+	 * <code>jdk.crypto.ec</code>, which allows the launcher to download over HTTPS with
+	 * elliptic curve ciphers that are not visible to static analysis (later they are in
+	 * <code>java.base</code>, and the module is deprecated).
+	 */
+	@Parameter(property = "thin.jlink.modules")
+	private String additionalModules;
+
+	/**
+	 * The JDK to use for jdeps and jlink (defaults to the one running Maven).
+	 */
+	@Parameter(property = "thin.jdk")
+	private File jdk;
+
+	/**
+	 * Name of the launch script created in the output directory.
+	 */
+	@Parameter(defaultValue = "launch.sh", required = true, property = "thin.jlink.script")
+	private String script;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (this.project.getPackaging().equals("pom")) {
+			getLog().debug("Thin jlink goal could not be applied to pom project.");
+			return;
+		}
+		if (skip) {
+			getLog().info("Skipping execution");
+			return;
+		}
+
+		File repository = new File(outputDirectory, "repository");
+		if (!repository.exists()) {
+			throw new MojoExecutionException(
+					"No dependencies resolved in " + outputDirectory + ". Run the 'resolve' goal first.");
+		}
+		File file = this.project.getArtifact().getFile();
+		if (file == null || !new File(outputDirectory, file.getName()).exists()) {
+			throw new MojoExecutionException("No project jar found in " + outputDirectory
+					+ ". You need to run 'mvn package spring-boot-thin:resolve' at the same time.");
+		}
+		File app = new File(outputDirectory, file.getName());
+
+		File home = this.jdk != null ? this.jdk : new File(System.getProperty("java.home"));
+		File jdeps = tool(home, "jdeps");
+		File jlink = tool(home, "jlink");
+		String release = release(home);
+		if (release == null) {
+			release = System.getProperty("java.specification.version");
+			getLog().warn("No release file in " + home + ", assuming Java " + release);
+		}
+
+		List<File> jars = new ArrayList<>();
+		try {
+			for (File jar : FileUtils.getFiles(repository, "**/*.jar", null)) {
+				jars.add(jar);
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot list jars in " + repository, e);
+		}
+
+		Set<String> modules = new LinkedHashSet<>();
+		modules.addAll(jdeps(jdeps, release, app, jars));
+		String additional = additionalModules != null ? additionalModules : additionalModules(release);
+		if (StringUtils.hasText(additional)) {
+			modules.addAll(StringUtils.commaDelimitedListToSet(additional.replace(" ", "")));
+		}
+		getLog().info("Required modules: " + modules);
+
+		File image = new File(outputDirectory, runtime);
+		try {
+			FileUtils.deleteDirectory(image);
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot delete " + image, e);
+		}
+		exec(Arrays.asList(jlink.getAbsolutePath(), "--add-modules",
+				StringUtils.collectionToCommaDelimitedString(modules), "--output", image.getAbsolutePath(),
+				"--strip-debug", "--no-header-files", "--no-man-pages", "--compress=" + compress(release)));
+
+		File launcher = new File(outputDirectory, script);
+		try {
+			String content = "#!/bin/sh\n" + "DIR=$(cd \"$(dirname \"$0\")\" && pwd)\n" + "exec \"$DIR/" + runtime
+					+ "/bin/java\" $JAVA_OPTS -Dthin.root=\"$DIR\" -Dthin.offline=true -jar \"$DIR/" + app.getName()
+					+ "\" \"$@\"\n";
+			Files.write(launcher.toPath(), content.getBytes(StandardCharsets.UTF_8));
+			launcher.setExecutable(true);
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot write launch script " + launcher, e);
+		}
+
+		getLog().info("Runtime image ready in: " + image);
+		getLog().info("Launch script: " + launcher);
+	}
+
+	Set<String> jdeps(File jdeps, String release, File app, List<File> jars) throws MojoExecutionException {
+		List<String> command = new ArrayList<>(Arrays.asList(jdeps.getAbsolutePath(), "--print-module-deps",
+				"--ignore-missing-deps", "--multi-release", release, "-q"));
+		if (!jars.isEmpty()) {
+			command.add("--class-path");
+			command.add(StringUtils.collectionToDelimitedString(jars, File.pathSeparator));
+		}
+		command.add(app.getAbsolutePath());
+		// Analyze all the dependencies too (not just the classes reachable from the app),
+		// except modular jars, which jdeps would resolve as modules and then fail on any
+		// that they require but are not in the JDK. They are still analyzed from the class
+		// path where the app uses them.
+		for (File jar : jars) {
+			if (!modular(jar, release)) {
+				command.add(jar.getAbsolutePath());
+			}
+		}
+		String output = exec(command);
+		Set<String> modules = new LinkedHashSet<>();
+		for (String line : output.split("\n")) {
+			line = line.trim();
+			if (line.length() > 0 && !line.contains(" ")) {
+				modules.addAll(StringUtils.commaDelimitedListToSet(line));
+			}
+		}
+		if (modules.isEmpty()) {
+			modules.add("java.base");
+		}
+		return modules;
+	}
+
+	/**
+	 * The feature version (e.g. "17") of the JDK in the home directory, from its
+	 * <code>release</code> file, or null if it has none.
+	 */
+	static String release(File home) throws MojoExecutionException {
+		File file = new File(home, "release");
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				Matcher matcher = JAVA_VERSION.matcher(line);
+				if (matcher.find()) {
+					return matcher.group(1);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot read " + file, e);
+		}
+		return null;
+	}
+
+	/**
+	 * The extra modules to add by default for a JDK release.
+	 */
+	static String additionalModules(String release) {
+		return Integer.parseInt(release) < 22 ? "jdk.crypto.ec" : "";
+	}
+
+	/**
+	 * The <code>--compress</code> argument for jlink from a JDK release: the numbered
+	 * levels are deprecated from Java 21, which has the zip levels instead.
+	 */
+	static String compress(String release) {
+		return Integer.parseInt(release) < 21 ? "2" : "zip-6";
+	}
+
+	static boolean modular(File jar, String release) throws MojoExecutionException {
+		int version = Integer.parseInt(release);
+		try (ZipFile zip = new ZipFile(jar)) {
+			for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+				String name = entries.nextElement().getName();
+				if (name.equals("module-info.class")) {
+					return true;
+				}
+				Matcher matcher = VERSIONED_MODULE.matcher(name);
+				if (matcher.matches() && Integer.parseInt(matcher.group(1)) <= version) {
+					return true;
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot read " + jar, e);
+		}
+		return false;
+	}
+
+	private String exec(List<String> command) throws MojoExecutionException {
+		getLog().debug("Running: " + command);
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			String output;
+			try (InputStream stream = process.getInputStream()) {
+				output = StreamUtils.copyToString(stream, StandardCharsets.UTF_8);
+			}
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				throw new MojoExecutionException(
+						"Command " + command.get(0) + " failed with exit code " + exitCode + ":\n" + output);
+			}
+			return output;
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot run " + command.get(0), e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted running " + command.get(0), e);
+		}
+	}
+
+	private File tool(File home, String name) throws MojoExecutionException {
+		String executable = name + (File.separatorChar == '\\' ? ".exe" : "");
+		File tool = new File(home, "bin/" + executable);
+		if (!tool.exists() && home.getParentFile() != null) {
+			// Java 8 style layout with a jre directory inside the JDK
+			tool = new File(home.getParentFile(), "bin/" + executable);
+		}
+		if (!tool.exists()) {
+			throw new MojoExecutionException("Cannot find " + name + " in " + home
+					+ ". A JDK (version 11 or better) is needed to build a runtime image.");
+		}
+		return tool;
+	}
+
+}
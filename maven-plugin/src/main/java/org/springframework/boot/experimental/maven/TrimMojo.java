@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Analyzes the bytecode of a thin jar and the dependencies that the launcher resolves
+ * for it, starting from the main class and the Spring configuration entry points
+ * (<code>spring.factories</code>, <code>AutoConfiguration.imports</code> and service
+ * files). Any dependency that cannot be reached is added as a suggested
+ * <code>exclusions.*</code> entry in <code>thin.properties</code>. I.e.
+ *
+ * <pre>
+ * $ mvn package spring-boot-thin:trim
+ * </pre>
+ *
+ * The suggestions are only as good as the static analysis, so check that the app still
+ * starts (and has test coverage for optional features) before committing them.
+ *
+ * @author Dave Syer
+ *
+ */
+@Mojo(name = "trim", defaultPhase = LifecyclePhase.PACKAGE, requiresProject = true, threadSafe = true,
+		requiresDependencyResolution = ResolutionScope.NONE, requiresDependencyCollection = ResolutionScope.NONE)
+public class TrimMojo extends ThinJarMojo {
+
+	private static final String EXCLUSIONS = "exclusions.";
+
+	/**
+	 * Directory containing the thin.properties to update.
+	 */
+	@Parameter(defaultValue = "src/main/resources/META-INF", required = true, property = "thin.output")
+	private File outputDirectory;
+
+	/**
+	 * Directory used as the thin root (local repository cache) for the analysis.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/thin/root", required = true,
+			property = "thin.outputDirectory")
+	private File rootDirectory;
+
+	/**
+	 * A flag to indicate whether to write the suggested exclusions to thin.properties. If
+	 * false only the report is generated.
+	 */
+	@Parameter(property = "thin.trim.apply", defaultValue = "true")
+	private boolean apply = true;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+
+		if (this.project.getPackaging().equals("pom")) {
+			getLog().debug("Thin trim goal could not be applied to pom project.");
+			return;
+		}
+		if (skip) {
+			getLog().info("Skipping execution");
+			return;
+		}
+
+		File file = this.project.getArtifact().getFile();
+		if (file == null) {
+			throw new MojoExecutionException(
+					"No project jar found. You need to run 'mvn package' at the same time.");
+		}
+
+		rootDirectory.mkdirs();
+		File thinJar = downloadThinJar(rootDirectory);
+		File report = new File(this.project.getBuild().getDirectory(), "thin/trim.properties");
+		report.delete();
+		runWithForkedJvm(thinJar, rootDirectory, "--thin.archive=" + file.getAbsolutePath(),
+				"--thin.trim=" + report.getAbsolutePath());
+		if (!report.exists()) {
+			throw new MojoExecutionException("No trim report generated at: " + report);
+		}
+
+		Properties suggested = new Properties();
+		try (InputStream stream = new FileInputStream(report)) {
+			suggested.load(stream);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Cannot read trim report: " + report, e);
+		}
+
+		getLog().info("Reachable classes: " + suggested.getProperty("trim.reachable") + " of "
+				+ suggested.getProperty("trim.classes"));
+		getLog().info("Unreachable dependencies: " + suggested.getProperty("trim.jars") + " ("
+				+ suggested.getProperty("trim.saved.classes") + " classes, "
+				+ suggested.getProperty("trim.saved.bytes") + " bytes)");
+		for (String key : suggested.stringPropertyNames()) {
+			if (key.startsWith(EXCLUSIONS)) {
+				getLog().info("Suggested: " + key + "=" + suggested.getProperty(key));
+			}
+		}
+
+		if (!apply) {
+			getLog().info("Trim report ready in: " + report);
+			return;
+		}
+
+		Properties props = new Properties();
+		outputDirectory.mkdirs();
+		File target = new File(outputDirectory, "thin.properties");
+		try {
+			if (target.exists()) {
+				try (InputStream stream = new FileInputStream(target)) {
+					props.load(stream);
+				}
+			}
+			for (String key : suggested.stringPropertyNames()) {
+				if (key.startsWith(EXCLUSIONS) && !props.containsKey(key)) {
+					props.setProperty(key, suggested.getProperty(key));
+				}
+			}
+			try (OutputStream stream = new FileOutputStream(target)) {
+				props.store(stream, "Enhanced by thin jar maven plugin");
+			}
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Cannot update: " + target, e);
+		}
+
+		getLog().info("Exclusions saved in: " + target);
+
+	}
+
+}
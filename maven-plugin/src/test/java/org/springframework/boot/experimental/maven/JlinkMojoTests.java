@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class JlinkMojoTests {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void releaseOfLinkedJdk() throws Exception {
+		assertThat(JlinkMojo.release(home("17", "JAVA_VERSION=\"17.0.9\""))).isEqualTo("17");
+		assertThat(JlinkMojo.release(home("11", "IMPLEMENTOR=\"Foo\"\nJAVA_VERSION=\"11\""))).isEqualTo("11");
+		assertThat(JlinkMojo.release(home("8", "JAVA_VERSION=\"1.8.0_292\""))).isEqualTo("8");
+		assertThat(JlinkMojo.release(this.dir)).isNull();
+	}
+
+	@Test
+	public void defaultsForRelease() throws Exception {
+		assertThat(JlinkMojo.additionalModules("17")).isEqualTo("jdk.crypto.ec");
+		assertThat(JlinkMojo.additionalModules("22")).isEmpty();
+		assertThat(JlinkMojo.compress("17")).isEqualTo("2");
+		assertThat(JlinkMojo.compress("21")).isEqualTo("zip-6");
+	}
+
+	@Test
+	public void modularJars() throws Exception {
+		File plain = jar("plain.jar", "b/B.class");
+		File modular = jar("modular.jar", "module-info.class", "a/A.class");
+		File versioned = jar("versioned.jar", "META-INF/versions/11/module-info.class", "a/A.class");
+		assertThat(JlinkMojo.modular(plain, "17")).isFalse();
+		assertThat(JlinkMojo.modular(modular, "17")).isTrue();
+		assertThat(JlinkMojo.modular(versioned, "17")).isTrue();
+		assertThat(JlinkMojo.modular(versioned, "9")).isFalse();
+	}
+
+	@Test
+	public void jdepsWithModularDependency() throws Exception {
+		File home = new File(System.getProperty("java.home"));
+		String release = JlinkMojo.release(home);
+		File jdeps = new File(home, "bin/jdeps" + (File.separatorChar == '\\' ? ".exe" : ""));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(release != null && Integer.parseInt(release) >= 11 && jdeps.exists() && compiler != null,
+				"Needs a JDK 11 or better");
+		// A plain jar that needs java.sql, and a modular jar that requires it
+		File b = compile(compiler, "b", null, "b/B.java",
+				"package b; public class B { public static java.sql.Connection c() { return null; } }");
+		File a = compile(compiler, "a", b, "module-info.java",
+				"module a { requires b; requires java.sql; exports a; }", "a/A.java",
+				"package a; public class A { public static Object a() { return b.B.c(); } }");
+		File app = compile(compiler, "app", null, "app/Main.java",
+				"package app; public class Main { public static void main(String[] args) {"
+						+ " java.awt.Toolkit.getDefaultToolkit(); } }");
+		Set<String> modules = new JlinkMojo().jdeps(jdeps, release, app, Arrays.asList(a, b));
+		assertThat(modules).contains("java.desktop", "java.sql");
+	}
+
+	private File home(String name, String release) throws Exception {
+		File home = new File(this.dir, "jdk-" + name);
+		home.mkdirs();
+		Files.write(new File(home, "release").toPath(), release.getBytes(StandardCharsets.UTF_8));
+		return home;
+	}
+
+	private File jar(String name, String... entries) throws Exception {
+		File jar = new File(this.dir, name);
+		try (JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar))) {
+			for (String entry : entries) {
+				stream.putNextEntry(new JarEntry(entry));
+				stream.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	private File compile(JavaCompiler compiler, String name, File modulePath, String... sources) throws Exception {
+		File src = new File(this.dir, name + "/src");
+		File classes = new File(this.dir, name + "/classes");
+		classes.mkdirs();
+		List<String> args = new ArrayList<>(Arrays.asList("-d", classes.getAbsolutePath()));
+		if (modulePath != null) {
+			args.addAll(Arrays.asList("--module-path", modulePath.getAbsolutePath()));
+		}
+		for (int i = 0; i < sources.length; i += 2) {
+			File source = new File(src, sources[i]);
+			source.getParentFile().mkdirs();
+			Files.write(source.toPath(), sources[i + 1].getBytes(StandardCharsets.UTF_8));
+			args.add(source.getAbsolutePath());
+		}
+		assertThat(compiler.run(null, null, null, args.toArray(new String[0]))).isEqualTo(0);
+		File jar = new File(this.dir, name + ".jar");
+		try (JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar))) {
+			for (File file : FileUtils.getFiles(classes, "**/*.class", null)) {
+				String entry = classes.toURI().relativize(file.toURI()).getPath();
+				stream.putNextEntry(new JarEntry(entry));
+				stream.write(Files.readAllBytes(file.toPath()));
+				stream.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+}
@@ -16,14 +16,23 @@
 
 package org.springframework.boot.loader.wrapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -82,6 +91,13 @@ public class ThinJarWrapper {
 	 */
 	public static final String THIN_DEBUG = "thin.debug";
 
+	/**
+	 * Property key for the number of times to resume a download of the launcher jar that
+	 * fails part of the way through (with an HTTP range request for the rest of the
+	 * file). The partial file is kept for the next launch either way. Defaults to 3.
+	 */
+	public static final String THIN_DOWNLOAD_RESUME = "thin.download.resume";
+
 	/**
 	 * Property key to override the location of local Maven cache. If the launcher
 	 * jar is available here it will be used before trying the remote repo. Useful
@@ -320,21 +336,110 @@ public class ThinJarWrapper {
 		if (this.debug) {
 			System.err.println("Downloading launcher from: " + path);
 		}
+		// Only complete files (that match the repository checksum, if there is one) are
+		// moved to the target, so it can be trusted if it exists
+		File part = new File(target.getPath() + ".part");
+		File validator = new File(part.getPath() + ".validator");
+		part.getParentFile().mkdirs();
+		int resumes = resumes();
+		for (int i = 0; i <= resumes; i++) {
+			long offset = part.length();
+			try {
+				download(path, part, validator);
+				verify(path, part, validator);
+				Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				validator.delete();
+				return true;
+			} catch (Exception e) {
+				if (this.debug) {
+					System.err.println("Failed to download: " + path + " (" + e + ")");
+				}
+			}
+			if (part.length() <= offset) {
+				// No progress, so not worth trying again
+				break;
+			}
+			if (this.debug && i < resumes) {
+				System.err.println("Resuming download from byte " + part.length());
+			}
+		}
+		return false;
+	}
+
+	private void download(String path, File part, File validator) throws IOException {
+		URLConnection connection = new URL(path).openConnection();
+		long offset = part.length();
+		if (offset > 0 && connection instanceof HttpURLConnection) {
+			String tag = validator(validator);
+			if (tag == null) {
+				// No way to tell if the remote file has changed, so start again
+				offset = 0;
+				part.delete();
+			} else {
+				connection.setRequestProperty("Range", "bytes=" + offset + "-");
+				// The rest of the file, or all of it if it has changed since the partial
+				// file was started
+				connection.setRequestProperty("If-Range", tag);
+			}
+		}
+		boolean append = false;
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) connection;
+			int status = http.getResponseCode();
+			if (status == 416 && offset > 0) {
+				// Nothing after the offset, so the partial file is already complete (e.g.
+				// the process was killed before it was moved), or it is just wrong
+				long size = size(http.getHeaderField("Content-Range"));
+				http.disconnect();
+				if (size == offset) {
+					return;
+				}
+				part.delete();
+				download(path, part, validator);
+				return;
+			}
+			if (status >= 300) {
+				throw new IOException("HTTP status " + status + " for " + path);
+			}
+			if (status == 206) {
+				String range = connection.getHeaderField("Content-Range");
+				if (range == null || !range.startsWith("bytes " + offset + "-")) {
+					throw new IOException("Invalid Content-Range for " + path + ": " + range);
+				}
+				append = true;
+			} else {
+				// The whole file, so remember what version it is in case it is resumed
+				String tag = connection.getHeaderField("ETag");
+				if (tag == null || tag.startsWith("W/")) {
+					// A weak tag cannot be used in If-Range
+					tag = connection.getHeaderField("Last-Modified");
+				}
+				validator.delete();
+				if (tag != null) {
+					Files.write(validator.toPath(), tag.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		}
+		long length = connection.getContentLengthLong();
+		long total = length < 0 ? -1 : append ? offset + length : length;
 		InputStream input = null;
 		OutputStream output = null;
 		try {
-			input = new URL(path).openStream();
-			output = new FileOutputStream(target);
-			byte[] bytes = new byte[4096];
-			int count = input.read(bytes);
-			while (count > 0) {
-				output.write(bytes, 0, count);
-				count = input.read(bytes);
-			}
-			return true;
-		} catch (Exception e) {
-			if (this.debug) {
-				System.err.println("Failed to download: " + path);
+			input = connection.getInputStream();
+			output = new FileOutputStream(part, append);
+			long count = append ? offset : 0;
+			long reported = 0;
+			byte[] bytes = new byte[8192];
+			int read = input.read(bytes);
+			while (read >= 0) {
+				output.write(bytes, 0, read);
+				count += read;
+				if (this.debug && total > 0 && (count - reported) * 10 >= total) {
+					System.err.println("Downloaded " + (count * 100 / total) + "% (" + count + " of " + total
+							+ " bytes)");
+					reported = count;
+				}
+				read = input.read(bytes);
 			}
 		} finally {
 			if (input != null) {
@@ -350,7 +455,132 @@ public class ThinJarWrapper {
 				}
 			}
 		}
-		return false;
+		if (total >= 0 && part.length() != total) {
+			throw new IOException("Incomplete download (" + part.length() + " of " + total + " bytes): " + path);
+		}
+	}
+
+	/**
+	 * The <code>ETag</code> or <code>Last-Modified</code> sent with the start of a partial
+	 * file, or null if there is none.
+	 */
+	private String validator(File validator) {
+		if (!validator.exists()) {
+			return null;
+		}
+		try {
+			String tag = new String(Files.readAllBytes(validator.toPath()), StandardCharsets.UTF_8).trim();
+			return tag.length() > 0 ? tag : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check a complete download against the <code>.sha1</code> file next to it in the
+	 * repository (if there is one). If they don't match the partial file is deleted, so
+	 * it is not resumed.
+	 */
+	private void verify(String path, File part, File validator) throws IOException {
+		String expected = checksum(path + ".sha1");
+		if (expected == null) {
+			if (this.debug) {
+				System.err.println("No checksum for: " + path);
+			}
+			return;
+		}
+		String actual = sha1(part);
+		if (!expected.equalsIgnoreCase(actual)) {
+			part.delete();
+			validator.delete();
+			throw new IOException("Checksum failed for " + path + " (expected " + expected + " but was " + actual
+					+ ")");
+		}
+	}
+
+	/**
+	 * The hex digest in a checksum file (which might have the file name after it), or
+	 * null if there is no checksum file.
+	 */
+	private String checksum(String path) {
+		InputStream input = null;
+		try {
+			URLConnection connection = new URL(path).openConnection();
+			if (connection instanceof HttpURLConnection
+					&& ((HttpURLConnection) connection).getResponseCode() >= 300) {
+				((HttpURLConnection) connection).disconnect();
+				return null;
+			}
+			input = connection.getInputStream();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] bytes = new byte[1024];
+			int read = input.read(bytes);
+			while (read >= 0 && output.size() < 1024) {
+				output.write(bytes, 0, read);
+				read = input.read(bytes);
+			}
+			String[] tokens = new String(output.toByteArray(), StandardCharsets.UTF_8).trim().split("\\s+");
+			return tokens[0].length() > 0 ? tokens[0] : null;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (Exception e) {
+				}
+			}
+		}
+	}
+
+	private String sha1(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		InputStream input = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[8192];
+			int read = input.read(bytes);
+			while (read >= 0) {
+				digest.update(bytes, 0, read);
+				read = input.read(bytes);
+			}
+		} finally {
+			input.close();
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * The size of the remote file from the <code>Content-Range</code> of a 416 response
+	 * (<code>bytes *&#47;size</code>), or -1 if it is not known.
+	 */
+	private long size(String range) {
+		if (range != null && range.startsWith("bytes */")) {
+			try {
+				return Long.parseLong(range.substring("bytes */".length()).trim());
+			} catch (NumberFormatException e) {
+			}
+		}
+		return -1;
+	}
+
+	private int resumes() {
+		String value = getProperty(THIN_DOWNLOAD_RESUME);
+		if (value != null) {
+			try {
+				return Math.max(0, Integer.parseInt(value.trim()));
+			} catch (NumberFormatException e) {
+			}
+		}
+		return 3;
 	}
 
 	private String getArtifactPath(String coordinates) {
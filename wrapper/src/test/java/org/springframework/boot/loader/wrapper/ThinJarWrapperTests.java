@@ -20,8 +20,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assumptions;
@@ -30,6 +37,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.FileSystemUtils;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * @author Dave Syer
  *
@@ -52,6 +63,7 @@ public class ThinJarWrapperTests {
 		System.clearProperty("thin.repo");
 		System.clearProperty("thin.library");
 		System.clearProperty("thin.launcher");
+		System.clearProperty("thin.download.resume");
 	}
 
 	@Test
@@ -159,6 +171,138 @@ public class ThinJarWrapperTests {
 		assertThat(output).contains("Main Running");
 	}
 
+	@Test
+	public void testResumedDownload() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 300000);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			String file = new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			assertThat(server.ranges).containsExactly(null, "bytes=300000-", "bytes=600000-", "bytes=900000-");
+			assertThat(new File(file + ".part")).doesNotExist();
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testInterruptedDownloadResumedNextTime() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 300000);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			System.setProperty("thin.download.resume", "0");
+			String file = new ThinJarWrapper().download();
+			// A partial download is never mistaken for the launcher
+			assertThat(new File(file)).doesNotExist();
+			assertThat(new File(file + ".part")).hasSize(300000);
+			server.drop = 0;
+			new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			assertThat(server.ranges).containsExactly(null, "bytes=300000-");
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testCompletePartialDownload() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 0);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			// Downloaded, but the process was killed before the file was moved
+			File part = new File("target/repository/big.jar.part");
+			part.getParentFile().mkdirs();
+			Files.write(part.toPath(), server.bytes);
+			Files.write(new File(part + ".validator").toPath(), server.etag.getBytes());
+			String file = new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			assertThat(server.ranges).containsExactly("bytes=1048576-");
+			assertThat(part).doesNotExist();
+			assertThat(new File(part + ".validator")).doesNotExist();
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testOversizedPartialDownload() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 0);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			File part = new File("target/repository/big.jar.part");
+			part.getParentFile().mkdirs();
+			Files.write(part.toPath(), new byte[2 * 1024 * 1024]);
+			Files.write(new File(part + ".validator").toPath(), server.etag.getBytes());
+			String file = new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			// Not the same file, so it starts again
+			assertThat(server.ranges).containsExactly("bytes=2097152-", null);
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testChangedPartialDownload() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 300000);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			System.setProperty("thin.download.resume", "0");
+			String file = new ThinJarWrapper().download();
+			assertThat(new File(file + ".part")).hasSize(300000);
+			// A new version is published before the download is resumed
+			server.etag = "\"v2\"";
+			server.bytes[0] = 42;
+			server.drop = 0;
+			new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			assertThat(server.ranges).containsExactly(null, "bytes=300000-");
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testPartialDownloadWithoutValidator() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 0);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			File part = new File("target/repository/big.jar.part");
+			part.getParentFile().mkdirs();
+			Files.write(part.toPath(), new byte[300000]);
+			String file = new ThinJarWrapper().download();
+			assertThat(Files.readAllBytes(new File(file).toPath())).isEqualTo(server.bytes);
+			// No way to tell if it is the same file, so it starts again
+			assertThat(server.ranges).containsExactly((String) null);
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testChecksumFailed() throws Exception {
+		FlakyServer server = new FlakyServer(1024 * 1024, 0);
+		try {
+			System.setProperty("thin.root", "target");
+			System.setProperty("thin.library", server.getUrl() + "/big.jar");
+			System.setProperty("thin.download.resume", "0");
+			server.sha1 = "0000000000000000000000000000000000000000";
+			String file = new ThinJarWrapper().download();
+			assertThat(new File(file)).doesNotExist();
+			// Not resumed next time either
+			assertThat(new File(file + ".part")).doesNotExist();
+			assertThat(new File(file + ".part.validator")).doesNotExist();
+		} finally {
+			server.stop();
+		}
+	}
+
 	@Test
 	public void testSystemEnvironmentOverride() throws Exception {
 		String key = null;
@@ -180,4 +324,93 @@ public class ThinJarWrapperTests {
 		assertThat(new ThinJarWrapper().getProperty(key)).isEqualTo(value);
 	}
 
+	/**
+	 * Serves the same bytes (and their SHA-1 for a <code>.sha1</code> path) for any path,
+	 * supports range requests, and drops the connection after a fixed number of bytes of
+	 * each response.
+	 */
+	static class FlakyServer implements HttpHandler {
+
+		private final HttpServer server;
+
+		private final byte[] bytes;
+
+		private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+		private volatile int drop;
+
+		private volatile String etag = "\"v1\"";
+
+		private volatile String sha1;
+
+		FlakyServer(int size, int drop) throws IOException {
+			this.bytes = new byte[size];
+			for (int i = 0; i < size; i++) {
+				this.bytes[i] = (byte) i;
+			}
+			this.drop = drop;
+			this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			this.server.createContext("/", this);
+			this.server.start();
+		}
+
+		String getUrl() {
+			return "http://localhost:" + this.server.getAddress().getPort();
+		}
+
+		void stop() {
+			this.server.stop(0);
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (exchange.getRequestURI().getPath().endsWith(".sha1")) {
+					byte[] sha1 = (this.sha1 != null ? this.sha1 : sha1()).getBytes();
+					exchange.sendResponseHeaders(200, sha1.length);
+					exchange.getResponseBody().write(sha1);
+					return;
+				}
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				this.ranges.add(range);
+				if (!this.etag.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+					// Changed, so send the whole file
+					range = null;
+				}
+				exchange.getResponseHeaders().set("ETag", this.etag);
+				int offset = range == null ? 0 : Integer.parseInt(range.substring(6, range.length() - 1));
+				if (offset >= this.bytes.length) {
+					exchange.getResponseHeaders().set("Content-Range", "bytes */" + this.bytes.length);
+					exchange.sendResponseHeaders(416, -1);
+					return;
+				}
+				int length = this.bytes.length - offset;
+				if (offset > 0) {
+					exchange.getResponseHeaders().set("Content-Range",
+							"bytes " + offset + "-" + (this.bytes.length - 1) + "/" + this.bytes.length);
+				}
+				exchange.sendResponseHeaders(offset > 0 ? 206 : 200, length);
+				OutputStream body = exchange.getResponseBody();
+				body.write(this.bytes, offset, this.drop > 0 ? Math.min(this.drop, length) : length);
+				// If it is short, closing the exchange (not the body) drops the connection
+				body.flush();
+			} finally {
+				exchange.close();
+			}
+		}
+
+		private String sha1() {
+			try {
+				StringBuilder hex = new StringBuilder();
+				for (byte b : MessageDigest.getInstance("SHA-1").digest(this.bytes)) {
+					hex.append(String.format("%02x", b));
+				}
+				return hex + "  big.jar";
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
 }